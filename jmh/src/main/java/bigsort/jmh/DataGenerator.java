@@ -0,0 +1,390 @@
+package bigsort.jmh;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * DataGenerator writes seeded, deterministic input files for end-to-end
+ * benchmarks. Every file has its own random generator, so files are written in
+ * parallel and the same options always make the same bytes.
+ *
+ * A line is one of:
+ * <ul>
+ * <li>a copy of a recent line, with probability duplicates</li>
+ * <li>an ascending line, with probability sorted. Ascending lines start with a
+ * fixed width counter, so they are in order within their file</li>
+ * <li>a random line starting with a key of the key vocabulary. Keys are picked
+ * by a Zipf distribution with exponent skew, 0 picks them uniformly. Without
+ * keys the whole line is random</li>
+ * </ul>
+ * Line lengths are drawn between min and max length by the length distribution.
+ */
+public final class DataGenerator {
+    public static final String SPEC_FILE = "dataset.properties";
+    public static final String EXTENSION = ".txt";
+
+    private static final byte[] CHARS = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes();
+    private static final int RECENT_LINES = 4096;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    public enum LengthDistribution {
+        UNIFORM, NORMAL, EXPONENTIAL
+    }
+
+    private long size = 1024L * 1024L * 1024L;
+    private int files = 1;
+    private int minLength = 8;
+    private int maxLength = 120;
+    private LengthDistribution lengths = LengthDistribution.UNIFORM;
+    private int keys = 0;
+    private int keyLength = 8;
+    private double skew = 0;
+    private double duplicates = 0;
+    private double sorted = 0;
+    private long seed = 42;
+
+    private long bytes;
+    private long lines;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: DataGenerator dir " + usage());
+            return;
+        }
+
+        DataGenerator generator = new DataGenerator();
+        Iterator<String> iterator = Arrays.asList(args).subList(1, args.length).iterator();
+        while (iterator.hasNext()) {
+            String name = iterator.next();
+            if (!generator.parse(name, iterator)) {
+                throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+
+        Path dir = Path.of(args[0]);
+        generator.prepare(dir);
+        System.out.println(String.format(Locale.US, "%,d lines, %,d bytes in %s", generator.getLines(),
+                generator.getBytes(), dir));
+    }
+
+    public static String usage() {
+        return "[ --size 1g ] [ --files 1 ] [ --line-length 8-120 ] [ --lengths uniform|normal|exponential ]"
+                + " [ --keys 0 ] [ --key-length 8 ] [ --skew 0 ] [ --duplicates 0 ] [ --sorted 0 ] [ --seed 42 ]";
+    }
+
+    /**
+     * Parses option name, taking its value from args. Returns false if name isn't
+     * an option of the generator.
+     *
+     * @param name
+     * @param args
+     * @return boolean
+     */
+    public boolean parse(String name, Iterator<String> args) {
+        switch (name) {
+        case "--size":
+            size = parseSize(value(name, args));
+            break;
+        case "--files":
+            files = Integer.parseInt(value(name, args));
+            break;
+        case "--line-length":
+            String[] range = value(name, args).split("-");
+            minLength = Integer.parseInt(range[0]);
+            maxLength = Integer.parseInt(range[range.length - 1]);
+            break;
+        case "--lengths":
+            lengths = LengthDistribution.valueOf(value(name, args).toUpperCase(Locale.ROOT));
+            break;
+        case "--keys":
+            keys = Integer.parseInt(value(name, args));
+            break;
+        case "--key-length":
+            keyLength = Integer.parseInt(value(name, args));
+            break;
+        case "--skew":
+            skew = Double.parseDouble(value(name, args));
+            break;
+        case "--duplicates":
+            duplicates = Double.parseDouble(value(name, args));
+            break;
+        case "--sorted":
+            sorted = Double.parseDouble(value(name, args));
+            break;
+        case "--seed":
+            seed = Long.parseLong(value(name, args));
+            break;
+        default:
+            return false;
+        }
+
+        if (size < 1 || files < 1 || minLength < 0 || maxLength < minLength || keys < 0 || keyLength < 1
+                || skew < 0 || duplicates < 0 || duplicates > 1 || sorted < 0 || sorted > 1) {
+            throw new IllegalArgumentException("Invalid value of " + name);
+        }
+        return true;
+    }
+
+    /**
+     * Generates the files in dir, unless dir holds the files of the same options
+     * already.
+     *
+     * @param dir
+     * @throws IOException
+     */
+    public void prepare(Path dir) throws IOException {
+        Path specFile = dir.resolve(SPEC_FILE);
+        if (Files.exists(specFile)) {
+            Properties existing = new Properties();
+            try (InputStream in = Files.newInputStream(specFile)) {
+                existing.load(in);
+            }
+            if (toProperties().equals(withoutStats(existing))) {
+                bytes = Long.parseLong(existing.getProperty("bytes"));
+                lines = Long.parseLong(existing.getProperty("lines"));
+                return;
+            }
+        }
+
+        generate(dir);
+        Properties spec = toProperties();
+        spec.setProperty("bytes", Long.toString(bytes));
+        spec.setProperty("lines", Long.toString(lines));
+        try (OutputStream out = Files.newOutputStream(specFile)) {
+            spec.store(out, "bigsort benchmark dataset");
+        }
+    }
+
+    /**
+     * Writes files part-00000.txt and so on in dir, replacing existing ones.
+     *
+     * @param dir
+     * @throws IOException
+     */
+    public void generate(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Files.deleteIfExists(dir.resolve(SPEC_FILE));
+        try (Stream<Path> existing = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) existing::iterator) {
+                if (path.getFileName().toString().startsWith("part-")) {
+                    Files.delete(path);
+                }
+            }
+        }
+
+        byte[][] vocabulary = vocabulary();
+        double[] weights = zipf();
+        long[] counts = IntStream.range(0, files).parallel().mapToObj(i -> {
+            long fileSize = size / files + (i == files - 1 ? size % files : 0);
+            Path path = dir.resolve(String.format("part-%05d%s", i, EXTENSION));
+            try {
+                return writeFile(path, fileSize, new SplittableRandom(seed * 1_000_003L + i), vocabulary, weights);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).reduce(new long[2], (a, b) -> new long[] { a[0] + b[0], a[1] + b[1] });
+        bytes = counts[0];
+        lines = counts[1];
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the options, which identify the generated bytes.
+     *
+     * @return Properties
+     */
+    public Properties toProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("size", Long.toString(size));
+        properties.setProperty("files", Integer.toString(files));
+        properties.setProperty("minLength", Integer.toString(minLength));
+        properties.setProperty("maxLength", Integer.toString(maxLength));
+        properties.setProperty("lengths", lengths.toString().toLowerCase(Locale.ROOT));
+        properties.setProperty("keys", Integer.toString(keys));
+        properties.setProperty("keyLength", Integer.toString(keyLength));
+        properties.setProperty("skew", Double.toString(skew));
+        properties.setProperty("duplicates", Double.toString(duplicates));
+        properties.setProperty("sorted", Double.toString(sorted));
+        properties.setProperty("seed", Long.toString(seed));
+        return properties;
+    }
+
+    /**
+     * Writes lines until the file reaches size bytes, returns its bytes and lines.
+     */
+    private long[] writeFile(Path path, long size, SplittableRandom random, byte[][] vocabulary,
+            double[] weights) throws IOException {
+        int counterWidth = width(size / (minLength + 1) + 1);
+        byte[][] recent = new byte[RECENT_LINES][];
+        int recentCount = 0;
+        byte[] line = new byte[Math.max(maxLength, counterWidth) + 1];
+        long written = 0;
+        long count = 0;
+        long counter = 0;
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE)) {
+            while (written < size) {
+                int length;
+                if (recentCount > 0 && random.nextDouble() < duplicates) {
+                    byte[] copy = recent[random.nextInt(recentCount)];
+                    length = copy.length;
+                    System.arraycopy(copy, 0, line, 0, length);
+                } else {
+                    length = nextLength(random);
+                    int start = 0;
+                    if (random.nextDouble() < sorted) {
+                        length = Math.max(length, counterWidth);
+                        long value = counter++;
+                        for (int i = counterWidth - 1; i >= 0; i--) {
+                            line[i] = CHARS[(int) (value % CHARS.length)];
+                            value /= CHARS.length;
+                        }
+                        start = counterWidth;
+                    } else if (vocabulary.length > 0) {
+                        byte[] key = vocabulary[pick(weights, random.nextDouble())];
+                        start = Math.min(key.length, length);
+                        System.arraycopy(key, 0, line, 0, start);
+                    }
+                    for (int i = start; i < length; i++) {
+                        line[i] = CHARS[random.nextInt(CHARS.length)];
+                    }
+
+                    // replace a random recent line once all slots are used
+                    byte[] copy = Arrays.copyOf(line, length);
+                    if (recentCount < RECENT_LINES) {
+                        recent[recentCount++] = copy;
+                    } else {
+                        recent[random.nextInt(RECENT_LINES)] = copy;
+                    }
+                }
+
+                line[length] = '\n';
+                out.write(line, 0, length + 1);
+                written += length + 1;
+                count++;
+            }
+        }
+        return new long[] { written, count };
+    }
+
+    private int nextLength(SplittableRandom random) {
+        int range = maxLength - minLength;
+        if (range == 0) {
+            return minLength;
+        }
+
+        double value;
+        switch (lengths) {
+        case NORMAL:
+            // mean in the middle of the range, 3 standard deviations to each end
+            value = 0.5 + nextGaussian(random) / 6;
+            break;
+        case EXPONENTIAL:
+            // mean at a fifth of the range, a long tail of longer lines
+            value = -Math.log(1 - random.nextDouble()) / 5;
+            break;
+        default:
+            value = random.nextDouble();
+        }
+        return minLength + (int) Math.round(Math.max(0, Math.min(1, value)) * range);
+    }
+
+    private static double nextGaussian(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+
+    private byte[][] vocabulary() {
+        SplittableRandom random = new SplittableRandom(seed);
+        byte[][] vocabulary = new byte[keys][keyLength];
+        for (byte[] key : vocabulary) {
+            for (int i = 0; i < keyLength; i++) {
+                key[i] = CHARS[random.nextInt(CHARS.length)];
+            }
+        }
+        return vocabulary;
+    }
+
+    /**
+     * Returns cumulative Zipf weights of the keys, normalized to 1.
+     */
+    private double[] zipf() {
+        double[] weights = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            weights[i] = sum;
+        }
+        for (int i = 0; i < keys; i++) {
+            weights[i] /= sum;
+        }
+        return weights;
+    }
+
+    private static int pick(double[] weights, double value) {
+        int index = Arrays.binarySearch(weights, value);
+        return Math.min(weights.length - 1, index >= 0 ? index : -index - 1);
+    }
+
+    private static int width(long values) {
+        int width = 1;
+        for (long max = CHARS.length; max < values; max *= CHARS.length) {
+            width++;
+        }
+        return width;
+    }
+
+    private static Properties withoutStats(Properties properties) {
+        Properties spec = new Properties();
+        spec.putAll(properties);
+        spec.remove("bytes");
+        spec.remove("lines");
+        return spec;
+    }
+
+    private static String value(String name, Iterator<String> args) {
+        if (!args.hasNext()) {
+            throw new IllegalArgumentException("Missing value of " + name);
+        }
+        return args.next();
+    }
+
+    /**
+     * Parses bytes with an optional k, m or g suffix.
+     *
+     * @param value
+     * @return long
+     */
+    public static long parseSize(String value) {
+        String lower = value.toLowerCase(Locale.ROOT);
+        List<String> suffixes = List.of("k", "m", "g");
+        int unit = suffixes.indexOf(lower.substring(lower.length() - 1)) + 1;
+        long number = Long.parseLong(unit == 0 ? lower : lower.substring(0, lower.length() - 1));
+        return number << (10 * unit);
+    }
+}
@@ -0,0 +1,84 @@
+package bigsort.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import bigsort.util.FastFileWriter;
+import bigsort.util.FastLineReader;
+import bigsort.util.api.LineReader;
+
+/**
+ * FileIoBenchmark writes lines with FastFileWriter and reads them back with
+ * FastLineReader. The file is about 64 MB for every line length, so scores of
+ * different line lengths compare per line costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileIoBenchmark {
+    private static final long FILE_SIZE = 64 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    @Param({ "16", "128", "1024" })
+    public int lineLength;
+
+    private String[] input;
+    private Path dir;
+    private Path written;
+    private Path read;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        input = Lines.generate((int) (FILE_SIZE / (lineLength + 1)), lineLength, Lines.Distribution.RANDOM, 42);
+        dir = Files.createTempDirectory("bigsort-jmh");
+        written = dir.resolve("written.txt");
+        read = new FastFileWriter().write(dir.resolve("read.txt"), input, StandardOpenOption.CREATE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(written);
+        Files.deleteIfExists(read);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public Path write() throws IOException {
+        return new FastFileWriter().write(written, input, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Benchmark
+    public long read(Blackhole blackhole) throws IOException {
+        long count = 0;
+        try (LineReader reader = new FastLineReader(read, BUFFER_SIZE)) {
+            String line;
+            while ((line = reader.nextLine()) != null) {
+                blackhole.consume(line);
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,67 @@
+package bigsort.jmh;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Lines generates benchmark input of a given line length and key distribution.
+ * The same seed always makes the same lines, so runs of a benchmark compare
+ * the code and not the data.
+ */
+public final class Lines {
+    private static final String PREFIX = "https://logs.example.com/2020/01/01/app/";
+    private static final char[] CHARS = "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+    private Lines() {
+    }
+
+    /**
+     * RANDOM lines differ early, SHARED_PREFIX lines share a long prefix like
+     * URLs or log keys, DUPLICATES has about one distinct line per hundred and
+     * SORTED is random lines in ascending order.
+     */
+    public enum Distribution {
+        RANDOM, SHARED_PREFIX, DUPLICATES, SORTED
+    }
+
+    public static String[] generate(int count, int length, Distribution distribution, long seed) {
+        Random random = new Random(seed);
+        String[] lines = new String[count];
+        switch (distribution) {
+        case SHARED_PREFIX:
+            String prefix = PREFIX.repeat(length / PREFIX.length() + 1).substring(0, Math.max(0, length - 8));
+            for (int i = 0; i < count; i++) {
+                lines[i] = prefix + randomChars(random, length - prefix.length());
+            }
+            break;
+        case DUPLICATES:
+            String[] distinct = new String[Math.max(1, count / 100)];
+            for (int i = 0; i < distinct.length; i++) {
+                distinct[i] = randomChars(random, length);
+            }
+            for (int i = 0; i < count; i++) {
+                lines[i] = distinct[random.nextInt(distinct.length)];
+            }
+            break;
+        case SORTED:
+            for (int i = 0; i < count; i++) {
+                lines[i] = randomChars(random, length);
+            }
+            Arrays.sort(lines);
+            break;
+        default:
+            for (int i = 0; i < count; i++) {
+                lines[i] = randomChars(random, length);
+            }
+        }
+        return lines;
+    }
+
+    private static String randomChars(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = CHARS[random.nextInt(CHARS.length)];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,283 @@
+package bigsort.jmh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import bigsort.App;
+import bigsort.BigSort;
+import bigsort.Params;
+import bigsort.util.Metrics;
+
+/**
+ * SortRunner sorts a generated dataset end-to-end and reports every run as
+ * JSON, so results can be compared across versions. Every run is a fresh JVM,
+ * which sorts in-process and reports its phase times, temp bytes written and
+ * peak RSS and heap.
+ *
+ * Temp bytes are the bytes written by the JVM minus the output file, they are
+ * read from /proc/self/io like peak RSS from /proc/self/status. Both are null
+ * where /proc isn't available. Peak heap is the largest heap use seen by
+ * Metrics, which samples it before every GC.
+ */
+public final class SortRunner {
+    private static final String FORK = "--fork";
+
+    private SortRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(FORK)) {
+            fork(Path.of(args[1]), Arrays.copyOfRange(args, 2, args.length));
+            return;
+        }
+
+        DataGenerator generator = new DataGenerator();
+        Path dataDir = Path.of("bigsort-bench-data");
+        Path tempDir = Path.of(System.getProperty("java.io.tmpdir"));
+        Path output = Path.of("bigsort-bench.json");
+        String label = "bigsort";
+        List<String> jvmArgs = new ArrayList<>();
+        List<String> sortArgs = new ArrayList<>(List.of("1000000"));
+        int runs = 3;
+
+        Iterator<String> iterator = Arrays.asList(args).iterator();
+        while (iterator.hasNext()) {
+            String name = iterator.next();
+            if (generator.parse(name, iterator)) {
+                continue;
+            }
+            switch (name) {
+            case "--data":
+                dataDir = Path.of(iterator.next());
+                break;
+            case "--temp-dir":
+                tempDir = Path.of(iterator.next());
+                break;
+            case "--output":
+                output = Path.of(iterator.next());
+                break;
+            case "--label":
+                label = iterator.next();
+                break;
+            case "--jvm-args":
+                jvmArgs.addAll(Arrays.asList(iterator.next().trim().split("\\s+")));
+                break;
+            case "--runs":
+                runs = Integer.parseInt(iterator.next());
+                break;
+            case "--":
+                sortArgs.clear();
+                iterator.forEachRemaining(sortArgs::add);
+                break;
+            default:
+                System.out.println("Usage: SortRunner [ --data dir ] [ --temp-dir dir ] [ --output file ]"
+                        + " [ --label name ] [ --jvm-args \"-Xmx2g\" ] [ --runs 3 ] " + DataGenerator.usage()
+                        + " [ -- k [ bigsort options ] ]");
+                throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+
+        System.out.println("Preparing dataset in " + dataDir);
+        generator.prepare(dataDir);
+
+        List<String> results = new ArrayList<>();
+        for (int run = 1; run <= runs; run++) {
+            Path dest = tempDir.resolve(String.format("bigsort-bench-%d.txt", run));
+            Path resultFile = Files.createTempFile(tempDir, "bigsort-bench", ".properties");
+            try {
+                Files.deleteIfExists(dest);
+                List<String> command = new ArrayList<>();
+                command.add(ProcessHandle.current().info().command().orElse("java"));
+                command.addAll(jvmArgs);
+                command.add("-DtempDir=" + tempDir);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(SortRunner.class.getName());
+                command.add(FORK);
+                command.add(resultFile.toString());
+                command.add(dataDir.toString());
+                command.add(dest.toString());
+                command.add(sortArgs.get(0));
+                command.add(DataGenerator.EXTENSION);
+                command.addAll(sortArgs.subList(1, sortArgs.size()));
+
+                int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+                if (exitCode != 0) {
+                    throw new IllegalStateException(String.format("Run %d failed with exit code %d", run, exitCode));
+                }
+
+                Properties result = new Properties();
+                try (InputStream in = Files.newInputStream(resultFile)) {
+                    result.load(in);
+                }
+                results.add(runJson(result, generator));
+                System.out.println(String.format(Locale.US, "Run %d: %,d ms", run,
+                        Long.parseLong(result.getProperty("elapsedMs"))));
+            } finally {
+                Files.deleteIfExists(dest);
+                Files.deleteIfExists(resultFile);
+            }
+        }
+
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"label\": ").append(string(label)).append(",\n");
+        json.append("  \"timestamp\": ").append(string(Instant.now().toString())).append(",\n");
+        json.append("  \"java\": ").append(string(System.getProperty("java.version"))).append(",\n");
+        json.append("  \"jvmArgs\": ").append(strings(jvmArgs)).append(",\n");
+        json.append("  \"args\": ").append(strings(sortArgs)).append(",\n");
+        json.append("  \"dataset\": {");
+        Properties spec = generator.toProperties();
+        for (String name : spec.stringPropertyNames().stream().sorted().toArray(String[]::new)) {
+            String value = spec.getProperty(name);
+            json.append("\n    ").append(string(name)).append(": ")
+                    .append(name.equals("lengths") ? string(value) : value).append(",");
+        }
+        json.append(String.format(Locale.US, "\n    \"bytes\": %d,\n    \"lines\": %d\n  },\n",
+                generator.getBytes(), generator.getLines()));
+        json.append("  \"runs\": [\n    ").append(String.join(",\n    ", results)).append("\n  ]\n}\n");
+        Files.writeString(output, json);
+        System.out.println("Results saved to " + output);
+    }
+
+    /**
+     * Sorts in this JVM and saves the measurements to resultFile.
+     */
+    private static void fork(Path resultFile, String[] args) throws IOException {
+        Params params = new Params(args);
+        BigSort bigSort = App.buildBigSort(params);
+        long writtenBefore = proc("io", "wchar:");
+
+        bigSort.sort();
+
+        long written = proc("io", "wchar:");
+        long peakRss = proc("status", "VmHWM:");
+        long peakHeap = Metrics.global().getPeakHeapBytes();
+        if (!Files.exists(params.getDestPath())) {
+            System.exit(1);
+        }
+
+        long outputBytes = Files.size(params.getDestPath());
+        Properties result = new Properties();
+        result.setProperty("elapsedMs", Long.toString(bigSort.getMeasurement().getElapsedMillis()));
+        Map<String, Long> phaseTimes = bigSort.getMeasurement().getPhaseTimes();
+        result.setProperty("phases", String.join(",", phaseTimes.keySet()));
+        for (Map.Entry<String, Long> phase : phaseTimes.entrySet()) {
+            result.setProperty("phase." + phase.getKey(), phase.getValue().toString());
+        }
+        result.setProperty("outputBytes", Long.toString(outputBytes));
+        result.setProperty("outputLines", Long.toString(countLines(params.getDestPath())));
+        result.setProperty("tempBytesWritten",
+                Long.toString(written < 0 ? -1 : Math.max(0, written - writtenBefore - outputBytes)));
+        result.setProperty("peakRssBytes", Long.toString(peakRss < 0 ? -1 : peakRss * 1024));
+        result.setProperty("peakHeapBytes", Long.toString(peakHeap));
+        try (OutputStream out = Files.newOutputStream(resultFile)) {
+            result.store(out, null);
+        }
+    }
+
+    /**
+     * Returns throughput of the run and its phases. Phases before the merge read
+     * the input, the merge writes the output.
+     */
+    private static String runJson(Properties result, DataGenerator generator) {
+        long outputBytes = Long.parseLong(result.getProperty("outputBytes"));
+        long outputLines = Long.parseLong(result.getProperty("outputLines"));
+        long elapsed = Long.parseLong(result.getProperty("elapsedMs"));
+
+        List<String> phases = new ArrayList<>();
+        for (String phase : result.getProperty("phases").split(",")) {
+            long millis = Long.parseLong(result.getProperty("phase." + phase));
+            boolean merge = phase.equals("merge");
+            phases.add(string(phase) + ": " + throughput(millis, merge ? outputBytes : generator.getBytes(),
+                    merge ? outputLines : generator.getLines()));
+        }
+
+        return String.format(Locale.US,
+                "{\"elapsedMs\": %d, \"mbPerSec\": %s, \"linesPerSec\": %s, \"outputBytes\": %d, \"outputLines\": %d,"
+                        + " \"tempBytesWritten\": %s, \"peakRssBytes\": %s, \"peakHeapBytes\": %s, \"phases\": {%s}}",
+                elapsed, rate(generator.getBytes() / 1e6, elapsed), rate(generator.getLines(), elapsed),
+                outputBytes, outputLines, orNull(result.getProperty("tempBytesWritten")),
+                orNull(result.getProperty("peakRssBytes")), result.getProperty("peakHeapBytes"),
+                String.join(", ", phases));
+    }
+
+    private static String throughput(long millis, long bytes, long lines) {
+        return String.format(Locale.US, "{\"ms\": %d, \"mbPerSec\": %s, \"linesPerSec\": %s}", millis,
+                rate(bytes / 1e6, millis), rate(lines, millis));
+    }
+
+    private static String rate(double amount, long millis) {
+        return millis == 0 ? "null" : String.format(Locale.US, "%.1f", amount * 1000 / millis);
+    }
+
+    private static String orNull(String value) {
+        return value.equals("-1") ? "null" : value;
+    }
+
+    private static String strings(List<String> values) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < values.size(); i++) {
+            json.append(i == 0 ? "" : ", ").append(string(values.get(i)));
+        }
+        return json.append("]").toString();
+    }
+
+    private static String string(String value) {
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Returns the number of a "name: value" line of /proc/self/file, or -1.
+     */
+    private static long proc(String file, String name) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self", file))) {
+                if (line.startsWith(name)) {
+                    return Long.parseLong(line.substring(name.length()).trim().split("\\s+")[0]);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+        }
+        return -1;
+    }
+
+    private static long countLines(Path path) throws IOException {
+        long lines = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        try (FileChannel channel = FileChannel.open(path)) {
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    if (buffer.get() == '\n') {
+                        lines++;
+                    }
+                }
+                buffer.clear();
+            }
+        }
+        return lines;
+    }
+}
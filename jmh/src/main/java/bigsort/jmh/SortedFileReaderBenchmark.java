@@ -0,0 +1,121 @@
+package bigsort.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import bigsort.util.FastFileWriter;
+import bigsort.util.FastLineReader;
+import bigsort.util.FastSortedFileReader;
+import bigsort.util.LoserTreeSortedFileReader;
+import bigsort.util.RunFileReader;
+import bigsort.util.RunFileWriter;
+import bigsort.util.api.FileWriter;
+import bigsort.util.api.SortedFileReader;
+
+/**
+ * SortedFileReaderBenchmark merges the same number of lines from 2 to 4096
+ * sorted runs, so the score shows the cost of the fan-in. "fast" is
+ * FastSortedFileReader over text runs, "losertree" and "losertree-runs" are
+ * LoserTreeSortedFileReader over text and binary runs. High fan-ins need an
+ * open file limit above 4096.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SortedFileReaderBenchmark {
+    private static final int READ_MEMORY = 64 * 1024 * 1024;
+    private static final int MIN_BUFFER_SIZE = 16 * 1024;
+
+    @Param({ "fast", "losertree", "losertree-runs" })
+    public String reader;
+
+    @Param({ "2", "16", "128", "1024", "4096" })
+    public int fanIn;
+
+    @Param({ "16", "128" })
+    public int lineLength;
+
+    @Param({ "RANDOM", "SHARED_PREFIX" })
+    public Lines.Distribution distribution;
+
+    @Param({ "1048576" })
+    public int lines;
+
+    private Path dir;
+    private List<Path> runs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("bigsort-jmh");
+        String[] input = Lines.generate(lines, lineLength, distribution, 42);
+        FileWriter writer = reader.equals("losertree-runs") ? new RunFileWriter() : new FastFileWriter();
+        runs = new ArrayList<>(fanIn);
+        int size = (lines + fanIn - 1) / fanIn;
+        for (int i = 0; i < fanIn; i++) {
+            String[] run = Arrays.copyOfRange(input, Math.min(i * size, lines), Math.min((i + 1) * size, lines));
+            Arrays.sort(run);
+            runs.add(writer.write(dir.resolve(i + ".txt"), run, StandardOpenOption.CREATE));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long merge(Blackhole blackhole) throws IOException {
+        SortedFileReader sortedReader;
+        switch (reader) {
+        case "losertree":
+            sortedReader = new LoserTreeSortedFileReader(new FastLineReader());
+            break;
+        case "losertree-runs":
+            sortedReader = new LoserTreeSortedFileReader(new RunFileReader());
+            break;
+        default:
+            sortedReader = new FastSortedFileReader(new FastLineReader());
+        }
+
+        long count = 0;
+        try {
+            sortedReader.initialize(runs, fanIn, Math.max(MIN_BUFFER_SIZE, READ_MEMORY / fanIn));
+            var iterator = sortedReader.readAllSortedLines().iterator();
+            while (iterator.hasNext()) {
+                blackhole.consume(iterator.next());
+                count++;
+            }
+        } finally {
+            sortedReader.close();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,75 @@
+package bigsort.jmh;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bigsort.util.FastSorter;
+import bigsort.util.MultikeyQuickSorter;
+import bigsort.util.api.Sorter;
+
+/**
+ * SorterBenchmark sorts one split chunk with FastSorter and its alternatives.
+ * Every invocation sorts a fresh copy of the same lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SorterBenchmark {
+    @Param({ "timsort", "multikey", "parallel" })
+    public String sorter;
+
+    @Param({ "16", "64", "256" })
+    public int lineLength;
+
+    @Param({ "RANDOM", "SHARED_PREFIX", "DUPLICATES", "SORTED" })
+    public Lines.Distribution distribution;
+
+    @Param({ "100000" })
+    public int lines;
+
+    private Sorter instance;
+    private String[] input;
+    private String[] chunk;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        input = Lines.generate(lines, lineLength, distribution, 42);
+        switch (sorter) {
+        case "multikey":
+            instance = new MultikeyQuickSorter();
+            break;
+        case "parallel":
+            instance = Arrays::parallelSort;
+            break;
+        default:
+            instance = new FastSorter();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        chunk = input.clone();
+    }
+
+    @Benchmark
+    public String[] sort() {
+        instance.sort(chunk);
+        return chunk;
+    }
+}
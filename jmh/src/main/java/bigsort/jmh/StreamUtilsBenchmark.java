@@ -0,0 +1,59 @@
+package bigsort.jmh;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import bigsort.util.StreamUtils;
+
+/**
+ * StreamUtilsBenchmark measures the overhead of StreamUtils.processInBatch
+ * against a plain forEach over the same stream of lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamUtilsBenchmark {
+    @Param({ "1024", "65536" })
+    public int batchSize;
+
+    @Param({ "16", "256" })
+    public int lineLength;
+
+    @Param({ "1000000" })
+    public int lines;
+
+    private String[] input;
+    private final StreamUtils streamUtils = new StreamUtils();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        input = Lines.generate(lines, lineLength, Lines.Distribution.RANDOM, 42);
+    }
+
+    @Benchmark
+    public void forEach(Blackhole blackhole) {
+        Arrays.stream(input).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void processInBatch(Blackhole blackhole) {
+        streamUtils.processInBatch(Arrays.stream(input), batchSize, (batch, id) -> blackhole.consume(batch));
+    }
+}
@@ -2,21 +2,39 @@ package bigsort;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.security.InvalidParameterException;
 import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+
+import bigsort.Params.SorterType;
+import bigsort.util.AsyncOutputSink;
+import bigsort.util.ConcurrentDirectoryReader;
+import bigsort.util.DirectoryWalker;
 import bigsort.util.FastFileReader;
 import bigsort.util.FastFileWriter;
 import bigsort.util.FastLineReader;
-import bigsort.util.FastSortedFileReader;
 import bigsort.util.FastSorter;
-import bigsort.util.StreamUtils;
+import bigsort.util.FileChannelOutputSink;
+import bigsort.util.LoserTreeSortedFileReader;
+import bigsort.util.MappedFileReader;
+import bigsort.util.Metrics;
+import bigsort.util.MultikeyQuickSorter;
+import bigsort.util.PartitionedRunMerger;
+import bigsort.util.PrefetchLineReader;
+import bigsort.util.RunFileReader;
+import bigsort.util.RunFileWriter;
+import bigsort.util.TextRunReader;
 import bigsort.util.api.FileReader;
 import bigsort.util.api.FileWriter;
 import bigsort.util.api.LineReader;
+import bigsort.util.api.OutputSink;
 import bigsort.util.api.SortedFileReader;
 import bigsort.util.api.Sorter;
 
@@ -27,6 +45,7 @@ public final class App {
         Params params;
         try {
             configureLogger();
+            registerMetrics();
             params = new Params(args);
             printParams(params);
             var bigSort = buildBigSort(params);
@@ -36,7 +55,13 @@ public final class App {
             System.out.println(e.getMessage());
             System.out.println("");
             System.out.println("Please provide right arguments like following,");
-            System.out.println("srcPath destPath k [ .txt,.log ]");
+            System.out.println("srcPath destPath k [ .txt,.log ] [ --memory 512m ] [ --threads 4 ] [ --readers 4 ]"
+                    + " [ --merge-threads 4 ]"
+                    + " [ --include **/*.log ] [ --exclude tmp/** ]"
+                    + " [ --split sort|replacement ] [ --sorter timsort|multikey ] [ --bytes ] [ --async-write ]"
+                    + " [ --mmap ] [ --prefetch ] [ --key 3nr,1 ] [ --delimiter tab ]"
+                    + " [ --unique ] [ --limit 1000 ] [ --checkpoint 1g ] [ --resume workDir ]"
+                    + " [ --incremental ] [ --natural-runs ]");
             System.out.println("");
         } catch (Exception e) {
             System.out.println("Unknown error occured.");
@@ -44,18 +69,51 @@ public final class App {
         }
     }
 
-    private static BigSort buildBigSort(Params params) {
+    /**
+     * Wires BigSort with the readers, writers and sorter selected by params, as
+     * the command line does.
+     * 
+     * @param params
+     * @return BigSort
+     */
+    public static BigSort buildBigSort(Params params) {
         FileWriter fileWriter = new FastFileWriter();
-        FileReader fileReader = new FastFileReader();
-        LineReader lineReader = new FastLineReader();
-        Sorter sorter = new FastSorter();
-        StreamUtils streamUtils = new StreamUtils();
-        SortedFileReader sortedFileReader = new FastSortedFileReader(lineReader);
-        Splitter spliter = new Splitter(fileReader, fileWriter, sorter, streamUtils);
-        Merger merger = new Merger(sortedFileReader, fileWriter, streamUtils);
+        FileReader fileReader = new ConcurrentDirectoryReader(
+                params.isMmap() ? new MappedFileReader() : new FastFileReader(), params.getReaders());
+        FileWriter runWriter = new RunFileWriter();
+        LineReader runReader = params.isPrefetch() ? new PrefetchLineReader(new RunFileReader(), params.getThreads())
+                : new RunFileReader();
+        // sorted text files which are merged as they are, found by the split phase too
+        Set<Path> textRuns = ConcurrentHashMap.newKeySet();
+        if (params.isIncremental()) {
+            textRuns.add(params.getDestPath());
+        }
+        if (params.isIncremental() || params.isNaturalRuns()) {
+            runReader = new TextRunReader(runReader, new FastLineReader(), textRuns,
+                    params.getKeySpec().orElse(null));
+        }
+        Sorter sorter = params.getSorterType() == SorterType.MULTIKEY ? new MultikeyQuickSorter()
+                : new FastSorter();
+        OutputSink outputSink = params.isAsyncWrite() ? new AsyncOutputSink(new FileChannelOutputSink())
+                : new FileChannelOutputSink();
+        SortedFileReader sortedFileReader = params.getKeySpec().isPresent()
+                ? new LoserTreeSortedFileReader(runReader, params.getKeySpec().get())
+                : new LoserTreeSortedFileReader(runReader);
+        Splitter spliter = new Splitter(fileReader, runWriter, sorter, new DirectoryWalker(params.getThreads()),
+                textRuns);
+        PartitionedRunMerger partitionedMerger = new PartitionedRunMerger(params.getKeySpec().orElse(null));
+        Merger merger = new Merger(sortedFileReader, runWriter, outputSink, partitionedMerger);
         return new BigSort(params, fileWriter, spliter, merger);
     }
 
+    private static void registerMetrics() {
+        try {
+            Metrics.register();
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Unable to register metrics MBean " + Metrics.OBJECT_NAME, e);
+        }
+    }
+
     private static void configureLogger() {
         try (var file = new FileInputStream("./logger.properties")) {
             LogManager.getLogManager().readConfiguration(file);
@@ -75,9 +133,38 @@ public final class App {
         if (params.getFileExtensions().isPresent()) {
             logger.info("fileExtensions: " + Arrays.toString(params.getFileExtensions().get()));
         }
+        if (params.isRecursive()) {
+            logger.info("includes: " + Arrays.toString(params.getIncludes()));
+            logger.info("excludes: " + Arrays.toString(params.getExcludes()));
+        }
         logger.info("destPath: " + params.getDestPath().toString());
         logger.info(String.format("k: %s (using: %d)", params.getKOriginal(), params.getK()));
         logger.info("tempDir: " + params.getTempDir().toString());
+        logger.info(String.format("memory: %,d bytes", params.getMemory()));
+        logger.info("threads: " + params.getThreads());
+        logger.info("readers: " + params.getReaders());
+        logger.info("mergeThreads: " + params.getMergeThreads());
+        logger.info("split: " + params.getSplitStrategy().toString().toLowerCase());
+        logger.info("sorter: " + params.getSorterType().toString().toLowerCase());
+        logger.info("bytes: " + params.isBytes());
+        logger.info("asyncWrite: " + params.isAsyncWrite());
+        logger.info("mmap: " + params.isMmap());
+        logger.info("prefetch: " + params.isPrefetch());
+        logger.info("unique: " + params.isUnique());
+        logger.info("incremental: " + params.isIncremental());
+        logger.info("naturalRuns: " + params.isNaturalRuns());
+        if (params.getLimit().isPresent()) {
+            logger.info("limit: " + params.getLimit().get());
+        }
+        if (params.getKeySpec().isPresent()) {
+            logger.info("key: " + params.getKeySpec().get());
+        }
+        if (params.getCheckpointSize().isPresent()) {
+            logger.info(String.format("checkpoint: %,d bytes", params.getCheckpointSize().get()));
+        }
+        if (params.getResumeDir().isPresent()) {
+            logger.info("resume: " + params.getResumeDir().get().toString());
+        }
         logger.info("======================================================================================");
     }
 }
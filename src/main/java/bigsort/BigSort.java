@@ -3,16 +3,24 @@ package bigsort;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import bigsort.exceptions.BigSortException;
+import bigsort.util.Manifest;
 import bigsort.util.Measurement;
+import bigsort.util.Metrics;
 import bigsort.util.api.FileWriter;
 
 /**
  * BigSort will use Merger and Splitter to read the input files and will sort
- * this large number of data using external merge technique.
+ * this large number of data using external merge technique. If only the first
+ * lines are required and they fit in memory, Splitter keeps them and Merger
+ * writes them without any split file. A checkpointed sort keeps its work
+ * directory until the sorted file is saved, so it can be resumed.
  */
 public class BigSort {
     private final Params params;
@@ -20,6 +28,8 @@ public class BigSort {
     private final Splitter spliter;
     private final Merger merger;
     private final Measurement measurement;
+    private Path workDir;
+    private List<Path> splitFiles;
     private static final Logger logger = Logger.getLogger(App.class.getName());
 
     public BigSort(Params params, FileWriter fileWriter, Splitter spliter, Merger merger) {
@@ -33,32 +43,119 @@ public class BigSort {
     public void sort() {
         try {
             measurement.startMeasurement();
+            workDir = null;
+            splitFiles = null;
             logger.info("======================================================================================");
             logger.info("Process ID: " + measurement.getProcessId());
             logger.info("======================================================================================");
 
-            // create temp work directory
-            Path workDir = createWorkDir(params.getTempDir(), params.getWorkDirPrefix());
-            logger.info("workDir: " + workDir.toString());
+            // top lines of the new input alone aren't the top lines of an incremental sort
+            if (params.getLimit().isPresent() && !params.isIncremental()) {
+                measurement.startPhase("top");
+                if (writeTop()) {
+                    finish();
+                    return;
+                }
+            }
 
-            List<Path> splitFiles = spliter.split(params, workDir);
-            logger.log(Level.INFO, "{0} splited files created", new Object[] { splitFiles.size() });
-            logger.info("======================================================================================");
+            // the top phase may have split the input already
+            if (splitFiles == null) {
+                // create temp work directory, or continue in the one of a checkpoint
+                workDir = params.getResumeDir().orElseGet(
+                        () -> createWorkDir(params.getTempDir(), params.getWorkDirPrefix()));
+                logger.info("workDir: " + workDir.toString());
 
-            // read every split files and append lines in sorted order to destPath file
-            merger.merge(splitFiles, params);
-            logger.log(Level.INFO, "Completed. Sorted file saved to {0}",
-                    new Object[] { params.getDestPath().toString() });
-            measurement.finishMeasurement();
-            logger.info("======================================================================================");
-            logger.info("Required Time: " + measurement.getElapsedTime());
-            logger.info("Used Memory: " + measurement.getMemoryUsage());
-            logger.info("======================================================================================");
+                measurement.startPhase("split");
+                splitFiles = spliter.split(params, workDir);
+                logSplitFiles();
+            }
 
+            // read every split files and append lines in sorted order to destPath file
+            measurement.startPhase("merge");
+            merger.merge(splitFiles, params, workDir);
+            if (params.isCheckpoint()) {
+                deleteCheckpoint(workDir);
+            }
+            finish();
         } catch (BigSortException e) {
+            measurement.finishPhase();
             logger.log(Level.SEVERE, "Error occured while sorting");
             logger.log(Level.SEVERE, e.toString());
+            if (params.isCheckpoint()) {
+                logger.log(Level.SEVERE, "Sort can be continued with --resume <workDir>");
+            }
+        }
+    }
+
+    /**
+     * Runs are deleted by the merge already, only the manifest is left.
+     */
+    private void deleteCheckpoint(Path workDir) {
+        try {
+            fileWriter.delete(workDir.resolve(Manifest.FILE_NAME));
+            fileWriter.delete(workDir);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to delete work directory {0}", new Object[] { workDir.toString() });
+        }
+    }
+
+    private boolean writeTop() {
+        Optional<List<String>> lines = spliter.top(params, this::splitOverflow);
+        if (lines.isEmpty()) {
+            return false;
         }
+
+        merger.write(lines.get(), params);
+        return true;
+    }
+
+    /**
+     * Splits the lines which didn't fit in memory in the top phase and the rest
+     * of its input stream.
+     */
+    private void splitOverflow(Stream<String> stream) {
+        workDir = createWorkDir(params.getTempDir(), params.getWorkDirPrefix());
+        logger.info("workDir: " + workDir.toString());
+
+        measurement.startPhase("split");
+        splitFiles = spliter.split(stream, params, workDir);
+        logSplitFiles();
+    }
+
+    private void logSplitFiles() {
+        logger.log(Level.INFO, "{0} splited files created", new Object[] { splitFiles.size() });
+        logger.info("======================================================================================");
+    }
+
+    private void finish() {
+        logger.log(Level.INFO, "Completed. Sorted file saved to {0}", new Object[] { params.getDestPath().toString() });
+        measurement.finishMeasurement();
+        logger.info("======================================================================================");
+        logger.info("Required Time: " + measurement.getElapsedTime());
+        for (String phase : measurement.getPhaseTimes().keySet()) {
+            logger.info(String.format("%s Time: %s", capitalize(phase), measurement.getPhaseTime(phase)));
+        }
+        logger.info("Peak Heap: " + measurement.getPeakHeap());
+        Metrics metrics = measurement.getMetrics();
+        logger.info(String.format(Locale.US, "Lines Read: %,d (%,d bytes)", metrics.getLinesRead(),
+                metrics.getBytesRead()));
+        logger.info(String.format(Locale.US, "Runs: %,d (%,d bytes, %,d merged)", metrics.getRunsWritten(),
+                metrics.getRunBytesWritten(), metrics.getMergedRunsWritten()));
+        logger.info(String.format(Locale.US, "Sort Time: %,d ms (max %,d ms per run)", metrics.getSortMillis(),
+                metrics.getMaxSortMillis()));
+        logger.info(String.format(Locale.US, "Merge Comparisons: %,d", metrics.getMergeComparisons()));
+        logger.info(String.format(Locale.US, "Output: %,d bytes", metrics.getOutputBytes()));
+        logger.info(String.format(Locale.US, "I/O Wait: %,d ms read, %,d ms write", metrics.getReadWaitMillis(),
+                metrics.getWriteWaitMillis()));
+        logger.info("======================================================================================");
+    }
+
+    public Measurement getMeasurement() {
+        return measurement;
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
     }
 
     private Path createWorkDir(Path tempDir, String prefix) {
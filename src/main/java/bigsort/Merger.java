@@ -1,75 +1,397 @@
 package bigsort;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
-import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 import bigsort.exceptions.BigSortException;
-import bigsort.util.StreamUtils;
+import bigsort.util.ByteRunMerger;
+import bigsort.util.FileChannelOutputSink;
+import bigsort.util.Manifest;
+import bigsort.util.Metrics;
+import bigsort.util.PartitionedRunMerger;
+import bigsort.util.UniqueLines;
 import bigsort.util.api.FileWriter;
+import bigsort.util.api.OutputSink;
 import bigsort.util.api.SortedFileReader;
 
 /**
- * Merger is responsible for reading all the split files and append chunk of
- * sorted lines to output file specified by "destPath". It will use
- * SortedFileReader to get ascending ordered line stream from sorted split
- * files. StreamUtils will be used to buffer the stream and FileWrite will be
- * used to append the lines to output file.
+ * Merger is responsible for reading all the split files and write sorted lines
+ * to output file specified by "destPath". It will use SortedFileReader to get
+ * ascending ordered line stream from sorted split files. The stream is written
+ * to an OutputSink which is opened once for the whole output and committed at
+ * the end.
+ *
+ * If there are more split files than the fan-in, groups of at most fan-in
+ * files are merged into intermediate runs inside "workDir" first, until the
+ * final pass can open all remaining runs at once.
+ *
+ * Half of the memory budget is shared by the read buffers of the runs, which
+ * also limits the fan-in, and the rest is used to buffer output lines.
+ *
+ * Runs may be kept in a different format than the output, i.e binary runs of
+ * RunFileWriter, so FileWriter is only used for intermediate runs.
+ *
+ * In unique mode equal lines of different runs are written once, both to
+ * intermediate runs and to the output. With a limit every pass stops after
+ * "limit" lines.
+ *
+ * If a PartitionedRunMerger is provided and more than one merge thread is
+ * requested, the final pass is split into key ranges merged in parallel.
+ * Unique and limit passes stay on a single thread, as the output offset of a
+ * range isn't known before it's merged then.
+ *
+ * In incremental mode the existing destPath is merged as one more sorted text
+ * run in the final pass, and the output replaces it once it's committed.
+ *
+ * A checkpointed sort records every intermediate merge in the Manifest of
+ * "workDir" before its input runs are deleted, and merges recorded by an
+ * interrupted sort are not done again.
  */
 public class Merger {
     private final SortedFileReader sortedFileReader;
     private final FileWriter fileWriter;
-    private final StreamUtils streamUtils;
+    private final OutputSink outputSink;
+    private final PartitionedRunMerger partitionedMerger;
+    private final String mergeFileExtension = ".run";
+    private final int MAX_FAN_IN = 512;
+    private final int MIN_READ_BUFFER_SIZE = 64 * 1024;
+    private final int MAX_READ_BUFFER_SIZE = 8 * 1024 * 1024;
+    private final int WRITE_BUFFER_SIZE = 1024 * 1024;
+    private final int MAX_OUTPUT_BUFFER_SIZE = 8 * 1024 * 1024;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private long readMemory;
+    private boolean bytes;
+    private boolean unique;
+    private long limit;
+    private boolean checkpoint;
+    private boolean incremental;
+    private int writeBufferSize;
     private Path destPath;
     private static final Logger logger = Logger.getLogger(App.class.getName());
+    private static final Metrics metrics = Metrics.global();
 
-    public Merger(SortedFileReader sortedFileReader, FileWriter fileWriter, StreamUtils streamUtils) {
+    public Merger(SortedFileReader sortedFileReader, FileWriter fileWriter, OutputSink outputSink) {
+        this(sortedFileReader, fileWriter, outputSink, null);
+    }
+
+    public Merger(SortedFileReader sortedFileReader, FileWriter fileWriter, OutputSink outputSink,
+            PartitionedRunMerger partitionedMerger) {
         this.sortedFileReader = sortedFileReader;
         this.fileWriter = fileWriter;
-        this.streamUtils = streamUtils;
+        this.outputSink = outputSink;
+        this.partitionedMerger = partitionedMerger;
     }
 
-    public void merge(List<Path> splitFiles, Params params) {
+    public void merge(List<Path> splitFiles, Params params, Path workDir) {
         this.destPath = params.getDestPath();
-        // read every split files and append lines in sorted order to destPath file
-        openSortedLineStream(splitFiles, params.getK(), onSortedData);
+        this.bytes = params.isBytes();
+        this.unique = params.isUnique();
+        this.limit = params.getLimit().orElse(Long.MAX_VALUE);
+        this.checkpoint = params.isCheckpoint();
+        this.incremental = params.isIncremental();
+        this.readMemory = params.getMemory() / 2;
+        int fanIn = (int) Math.max(2,
+                Math.min(Math.min(params.getK(), MAX_FAN_IN), readMemory / MIN_READ_BUFFER_SIZE));
+        long outputMemory = params.getMemory() - readMemory;
+        this.writeBufferSize = (int) Math.min(WRITE_BUFFER_SIZE, outputMemory);
+        logger.log(Level.INFO, "Merge fan-in: {0}", new Object[] { fanIn });
+
+        // merge groups of split files until a single pass is left
+        List<Path> runs;
+        if (incremental) {
+            // existing output is the largest run, it's only read by the final pass, so
+            // one run less is left for it. Intermediate merges still use the full fan-in.
+            runs = new ArrayList<>(mergeIntermediateRuns(splitFiles, fanIn, fanIn - 1, workDir));
+            runs.add(destPath);
+            logger.log(Level.INFO, "Merge into existing output {0}", new Object[] { destPath.toString() });
+        } else {
+            runs = mergeIntermediateRuns(splitFiles, fanIn, fanIn, workDir);
+        }
+
+        // read every remaining run and write lines in sorted order to destPath file
+        int partitions = getPartitions(params, runs, workDir);
+        if (bytes) {
+            mergeBytes(runs, destPath);
+        } else if (partitions > 1) {
+            mergePartitions(runs, partitions, outputMemory);
+        } else {
+            writeOutput(runs, params.getK(), (int) Math.min(outputMemory, MAX_OUTPUT_BUFFER_SIZE));
+        }
+        deleteRuns(runs, workDir);
+    }
+
+    /**
+     * Runs are merged in FIFO order, so older (smaller) runs are merged first. The
+     * first step only merges as many runs as needed to make every following step
+     * use the full fan-in and the last one leave exactly maxRuns, which keeps the
+     * number of times a line gets rewritten minimal.
+     */
+    private List<Path> mergeIntermediateRuns(List<Path> splitFiles, int fanIn, int maxRuns, Path workDir) {
+        if (splitFiles.size() <= maxRuns) {
+            return splitFiles;
+        }
 
-        // close readers
-        sortedFileReader.close();
+        Deque<Path> queue = new ArrayDeque<>(splitFiles);
+        int mergeId = 0;
+        Manifest manifest = checkpoint ? loadManifest(queue, workDir) : null;
+        if (manifest != null && !manifest.getMerges().isEmpty()) {
+            List<Manifest.Merge> merges = manifest.getMerges();
+            mergeId = merges.get(merges.size() - 1).getId() + 1;
+        }
+
+        // every merge of g runs removes g - 1 runs, so the first one removes the
+        // remainder of what full merges can't
+        int groupSize = queue.size() > maxRuns ? (queue.size() - maxRuns - 1) % (fanIn - 1) + 2 : fanIn;
+
+        try {
+            while (queue.size() > maxRuns) {
+                List<Path> group = new ArrayList<>(groupSize);
+                for (int i = 0; i < groupSize; i++) {
+                    group.add(queue.poll());
+                }
+
+                Path path = workDir.resolve(String.format("merge-%d%s", mergeId, mergeFileExtension));
+                mergeToRun(group, path, fanIn, mergeId);
+                if (manifest != null) {
+                    checkpoint(manifest, mergeId, group, path);
+                }
+                mergeId++;
+                deleteRuns(group, workDir);
+                queue.add(path);
+                groupSize = fanIn;
+            }
+        } finally {
+            closeManifest(manifest);
+        }
+
+        logger.log(Level.INFO, "{0} intermediate runs merged, {1} runs left for final pass",
+                new Object[] { mergeId, queue.size() });
+        return new ArrayList<>(queue);
     }
 
-    BiConsumer<String[], Integer> onSortedData = (data, batchId) -> {
-        appendToOutput(destPath, data, batchId);
-    };
+    /**
+     * Replays the merges recorded in the manifest of workDir on the queue of
+     * runs, so only the merges which were not done yet are left.
+     */
+    private Manifest loadManifest(Deque<Path> queue, Path workDir) {
+        Manifest manifest = null;
+        try {
+            manifest = Manifest.load(workDir);
+            for (Manifest.Merge merge : manifest.getMerges()) {
+                queue.removeIf(run -> merge.getInputs().contains(run.getFileName().toString()));
+                queue.add(workDir.resolve(merge.getOutput()));
+            }
 
-    private void openSortedLineStream(List<Path> paths, int batchSize, BiConsumer<String[], Integer> onSortedData) {
-        logger.log(Level.INFO, "Open sorted line stream for {0} files", new Object[] { paths.size() });
+            for (Path run : queue) {
+                if (!Files.isRegularFile(run)) {
+                    throw new NoSuchFileException(run.toString(), null, "run of the checkpoint is missing");
+                }
+            }
+        } catch (IOException e) {
+            closeManifest(manifest);
+            throw new BigSortException(String.format("Error occured while loading checkpoint of %s",
+                    workDir.toString()), e);
+        }
+
+        if (!manifest.getMerges().isEmpty()) {
+            logger.log(Level.INFO, "{0} intermediate merges done already",
+                    new Object[] { manifest.getMerges().size() });
+        }
+        return manifest;
+    }
+
+    private void checkpoint(Manifest manifest, int mergeId, List<Path> group, Path path) {
+        try {
+            manifest.merged(mergeId, group, path);
+        } catch (IOException e) {
+            throw new BigSortException(String.format("Error occured while checkpointing merge %d", mergeId), e);
+        }
+    }
+
+    private void closeManifest(Manifest manifest) {
+        if (manifest == null) {
+            return;
+        }
+        try {
+            manifest.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to close checkpoint manifest");
+        }
+    }
+
+    private void mergeToRun(List<Path> runs, Path path, int fanIn, int mergeId) {
+        if (bytes) {
+            mergeBytes(runs, path);
+            path.toFile().deleteOnExit();
+            return;
+        }
 
         try {
-            sortedFileReader.initialize(paths, batchSize);
+            sortedFileReader.initialize(runs, fanIn, getBufferSize(runs.size()));
         } catch (IOException e) {
             throw new BigSortException("Error occured while initializing sortedFileReader", e);
         }
 
-        try (Stream<String> stream = sortedFileReader.readAllSortedLines()) {
-            streamUtils.processInBatch(stream, batchSize, (buffer, batchId) -> {
-                onSortedData.accept(buffer, batchId);
-            });
+        try (Stream<String> stream = sortedLines()) {
+            fileWriter.write(path, stream::iterator, StandardOpenOption.CREATE);
+            metrics.mergedRunWritten(path.toFile().length());
+            if (!checkpoint) {
+                path.toFile().deleteOnExit();
+            }
+            logger.log(Level.FINE, "Merge {0}: {1} runs merged to {2}",
+                    new Object[] { mergeId, runs.size(), path.toString() });
+        } catch (IOException e) {
+            throw new BigSortException(String.format("Error occured while creating merge file %s", path.toString()),
+                    e);
+        } finally {
+            sortedFileReader.close();
         }
     }
 
-    private void appendToOutput(Path path, String[] data, int batchId) {
+    /**
+     * Merges raw byte lines of runs to path without decoding them. The output
+     * is written to a temporary file and moved to destPath once it's synced, so
+     * a failed merge doesn't leave a truncated output behind.
+     */
+    private void mergeBytes(List<Path> runs, Path path) {
+        logger.log(Level.INFO, "Merge bytes of {0} files to {1}", new Object[] { runs.size(), path.toString() });
+
+        boolean output = path.equals(destPath);
+        Path target = output ? FileChannelOutputSink.tempPath(path) : path;
+        boolean committed = false;
+        try {
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                new ByteRunMerger().merge(runs, getBufferSize(runs.size()), channel,
+                        ByteBuffer.allocateDirect(writeBufferSize), LINE_SEPARATOR);
+                if (output) {
+                    channel.force(false);
+                    metrics.outputWritten(channel.size());
+                } else {
+                    metrics.mergedRunWritten(channel.size());
+                }
+            }
+            if (output) {
+                FileChannelOutputSink.move(target, path);
+            }
+            committed = true;
+        } catch (IOException e) {
+            throw new BigSortException(String.format("Error occured while merging bytes to %s", path.toString()), e);
+        } finally {
+            if (output && !committed) {
+                target.toFile().delete();
+            }
+        }
+    }
+
+    /**
+     * Every partition opens its own range of every run, so the read memory
+     * bounds the number of partitions too. Runs outside workDir, i.e the
+     * existing output or sorted input files, are text without a run index.
+     */
+    private int getPartitions(Params params, List<Path> runs, Path workDir) {
+        if (partitionedMerger == null || unique || limit < Long.MAX_VALUE
+                || !runs.stream().allMatch(run -> run.startsWith(workDir))) {
+            return 1;
+        }
+        long maxPartitions = readMemory / ((long) Math.max(runs.size(), 1) * MIN_READ_BUFFER_SIZE);
+        return (int) Math.max(1, Math.min(params.getMergeThreads(), maxPartitions));
+    }
+
+    private void mergePartitions(List<Path> runs, int partitions, long outputMemory) {
+        logger.log(Level.INFO, "Merge {0} files in {1} partitions", new Object[] { runs.size(), partitions });
+
+        try {
+            long writeMemory = Math.min(outputMemory, (long) partitions * MAX_OUTPUT_BUFFER_SIZE);
+            int merged = partitionedMerger.merge(runs, destPath, partitions, readMemory, writeMemory,
+                    LINE_SEPARATOR);
+            logger.log(Level.INFO, "{0} partitions merged", new Object[] { merged });
+        } catch (IOException e) {
+            throw new BigSortException(String.format("Error occured while merging to %s", destPath.toString()), e);
+        }
+    }
+
+    private void writeOutput(List<Path> runs, int batchSize, int bufferSize) {
+        logger.log(Level.INFO, "Open sorted line stream for {0} files", new Object[] { runs.size() });
+
         try {
-            fileWriter.write(path, data, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-            logger.log(Level.FINE, "Batch {0}: {1} lines appended to path: {2}",
-                    new Object[] { batchId, data.length, path.toString() });
+            sortedFileReader.initialize(runs, batchSize, getBufferSize(runs.size()));
         } catch (IOException e) {
-            throw new BigSortException(String.format("Error occured while appending to %s", path.toString()), e);
+            throw new BigSortException("Error occured while initializing sortedFileReader", e);
+        }
+
+        try (OutputSink sink = outputSink.create(destPath, bufferSize);
+                Stream<String> stream = sortedLines()) {
+            Iterator<String> lines = stream.iterator();
+            while (lines.hasNext()) {
+                sink.write(lines.next());
+            }
+            sink.commit();
+        } catch (IOException e) {
+            throw new BigSortException(String.format("Error occured while writing to %s", destPath.toString()), e);
+        } finally {
+            sortedFileReader.close();
+        }
+    }
+
+    private Stream<String> sortedLines() {
+        Stream<String> stream = sortedFileReader.readAllSortedLines();
+        stream = unique ? UniqueLines.filter(stream) : stream;
+        return limit < Long.MAX_VALUE ? stream.limit(limit) : stream;
+    }
+
+    /**
+     * Writes lines which are sorted already, i.e top lines kept in memory, to
+     * destPath without any run.
+     */
+    public void write(List<String> lines, Params params) {
+        this.destPath = params.getDestPath();
+        int bufferSize = (int) Math.min(params.getMemory() / 2, MAX_OUTPUT_BUFFER_SIZE);
+        try (OutputSink sink = outputSink.create(destPath, bufferSize)) {
+            for (String line : lines) {
+                sink.write(line);
+            }
+            sink.commit();
+        } catch (IOException e) {
+            throw new BigSortException(String.format("Error occured while writing to %s", destPath.toString()), e);
+        }
+    }
+
+    /**
+     * Read memory is shared by the runs opened together.
+     */
+    private int getBufferSize(int runs) {
+        return (int) Math.min(readMemory / Math.max(runs, 1), MAX_READ_BUFFER_SIZE);
+    }
+
+    /**
+     * Only runs inside workDir are deleted, source files are never touched.
+     */
+    private void deleteRuns(List<Path> runs, Path workDir) {
+        for (Path run : runs) {
+            if (!run.startsWith(workDir)) {
+                continue;
+            }
+
+            try {
+                fileWriter.delete(run);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to delete run {0}", new Object[] { run.toString() });
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -6,12 +6,24 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
+import bigsort.util.KeySpec;
+import bigsort.util.Manifest;
+
 /**
  * Params validates and parse CLI arguments. It provides srcPath, destPath, k,
- * fileExtensions, tempDir, charset and workDirPrefix across the solution.
+ * fileExtensions, tempDir, charset, workDirPrefix and memory across the
+ * solution. Positional arguments are followed by optional "--name value"
+ * options.
  */
 public class Params {
     /**
@@ -27,7 +39,22 @@ public class Params {
     private Optional<String[]> fileExtensions;
 
     /**
-     * A valid non-esists file path, will be used to save the sorted file.
+     * Comma separated glob patterns i.e "--include **&#47;*.log". If include or
+     * exclude patterns are provided, "srcPath" directory is walked recursively
+     * and files are matched by their path relative to it. File extensions are
+     * optional then.
+     */
+    private String[] includes;
+
+    /**
+     * Comma separated glob patterns i.e "--exclude tmp&#47;**". Matching files
+     * are skipped and matching directories are not walked.
+     */
+    private String[] excludes;
+
+    /**
+     * A valid non-esists file path, will be used to save the sorted file. May
+     * be an existing sorted file in incremental mode.
      */
     private Path destPath;
 
@@ -57,20 +84,172 @@ public class Params {
      */
     private String workDirPrefix;
 
+    /**
+     * Memory budget in bytes i.e "--memory 512m". Splitter cuts a run when the
+     * estimated retained size of its lines reaches this budget and Merger splits
+     * it across read buffers and fan-in. Half of the max heap size will be used
+     * if not provided.
+     */
+    private long memory;
+
+    /**
+     * Number of sorter workers used while splitting i.e "--threads 4". Number of
+     * available processors will be used if not provided.
+     */
+    private int threads;
+
+    /**
+     * Number of files read at the same time when srcPath is a directory i.e
+     * "--readers 4". Files are read one after another if not provided.
+     */
+    private int readers;
+
+    /**
+     * Number of threads of the final merge i.e "--merge-threads 4". Sorted runs
+     * are cut into key ranges which are merged in parallel and written to
+     * their own region of the output file. A single merge thread is used if
+     * not provided.
+     */
+    private int mergeThreads;
+
+    /**
+     * How split files are generated i.e "--split replacement". "sort" sorts
+     * memory sized chunks in parallel, "replacement" uses replacement selection
+     * which makes about half as many, longer split files on a single thread.
+     * Default is "sort".
+     */
+    private SplitStrategy splitStrategy;
+
+    /**
+     * Algorithm used to sort split chunks i.e "--sorter multikey". "timsort" uses
+     * Arrays.sort(), "multikey" uses three-way radix quicksort which compares
+     * every char of a shared prefix only once, that pays off on lines with long
+     * common prefixes like URLs or log keys. Default is "timsort".
+     */
+    private SorterType sorterType;
+
+    /**
+     * Sorts raw UTF-8 bytes without decoding lines to String i.e "--bytes".
+     * Unsigned byte order of UTF-8 is the code point order of lines. Only real
+     * files are supported and lines are ended by "\n".
+     */
+    private boolean bytes;
+
+    /**
+     * Writes the merge output on a separate writer thread i.e "--async-write".
+     * The merge fills one buffer while the other one is written, so merging
+     * and disk writes overlap.
+     */
+    private boolean asyncWrite;
+
+    /**
+     * Reads source files through memory mapped byte ranges scanned by several
+     * threads i.e "--mmap". Only UTF-8 and single byte charsets are mapped.
+     */
+    private boolean mmap;
+
+    /**
+     * Reads the next block of every run on background threads while the
+     * current one is merged i.e "--prefetch". Blocks are sized by the merge read
+     * memory divided by the fan-in.
+     */
+    private boolean prefetch;
+
+    /**
+     * Sorts lines by delimited fields instead of the whole line i.e "--key 3nr,1
+     * --delimiter ,". Fields are numbered from 1, "n" compares a field as a
+     * number and "r" in descending order. Delimiter is tab if not provided.
+     * Lines are compared as a whole if no key is provided.
+     */
+    private Optional<KeySpec> keySpec;
+
+    /**
+     * Writes every distinct line only once i.e "--unique". Duplicates are
+     * dropped from sorted split files already and again while merging.
+     */
+    private boolean unique;
+
+    /**
+     * Writes only the first N sorted lines i.e "--limit 1000". If N lines fit
+     * in the memory budget, they are kept in a bounded heap and no split file is
+     * written, otherwise every split file and merge stops after N lines.
+     */
+    private Optional<Long> limit;
+
+    /**
+     * Checkpoints the sort every N input bytes i.e "--checkpoint 1g". Input is
+     * split in segments of about N bytes and every split segment and merge pass
+     * is recorded in the manifest of the work directory, which is kept if the
+     * sort fails. Sorts are not checkpointed if not provided.
+     */
+    private Optional<Long> checkpointSize;
+
+    /**
+     * Continues a checkpointed sort from the manifest of its work directory i.e
+     * "--resume /tmp/8c1f...". Split segments and merges which are recorded are
+     * not done again. Implies checkpointing, segments of the manifest are used.
+     */
+    private Optional<Path> resumeDir;
+
+    /**
+     * Merges the new input into an existing sorted destPath i.e
+     * "--incremental". Only the new input is split and sorted, destPath is
+     * merged as one more sorted run and replaced atomically by the new output.
+     * A normal sort is done if destPath doesn't exist yet.
+     */
+    private boolean incremental;
+
+    /**
+     * Uses input files which are sorted already as merge runs without splitting
+     * them i.e "--natural-runs". Every input file is checked by streaming its
+     * lines until one is out of order, only unsorted files are split.
+     */
+    private boolean naturalRuns;
+
     private String kOriginal;
+    private final Map<String, String> options = new HashMap<>();
     private final BigInteger K_MAX = BigInteger.valueOf(Integer.MAX_VALUE);
     private final String defTempDir = System.getProperty("java.io.tmpdir");
-
-    public Params(String[] args) {
+    private final long maxMemory = Runtime.getRuntime().maxMemory();
+    private final int defThreads = Runtime.getRuntime().availableProcessors();
+    private final long MIN_MEMORY = 1024L * 1024L;
+    private final long DEFAULT_CHECKPOINT_SIZE = 1024L * 1024L * 1024L;
+    private static final Set<String> OPTIONS = Set.of("memory", "threads", "readers", "split", "sorter", "include",
+            "exclude", "key", "delimiter", "limit",
+            "merge-threads", "checkpoint", "resume");
+    private static final Set<String> FLAGS = Set.of("bytes", "async-write", "mmap", "unique", "prefetch",
+            "incremental", "natural-runs");
+
+    public Params(String[] arguments) {
+        String[] args = parseOptions(arguments);
         validateParams(args);
         this.fileExtensions = getFileExtensions(args);
+        this.includes = parsePatterns(options.get("include"));
+        this.excludes = parsePatterns(options.get("exclude"));
         this.srcPath = parseSrcPath(args[0], this.fileExtensions);
         this.destPath = parseDestPath(args[1]);
+        this.incremental = parseIncremental(this.destPath);
         this.k = parseK(args[2]).min(K_MAX).intValue();
         this.kOriginal = args[2];
         this.tempDir = parseTempDir(System.getProperty("tempDir", defTempDir));
         this.charset = StandardCharsets.UTF_8;
         this.workDirPrefix = UUID.randomUUID().toString();
+        this.memory = parseMemory(options.getOrDefault("memory", Long.toString(maxMemory / 2)));
+        this.threads = parseThreads(options.getOrDefault("threads", Integer.toString(defThreads)));
+        this.readers = parseReaders(options.getOrDefault("readers", "1"));
+        this.mergeThreads = parseMergeThreads(options.getOrDefault("merge-threads", "1"));
+        this.splitStrategy = parseSplitStrategy(options.getOrDefault("split", "sort"));
+        this.sorterType = parseSorterType(options.getOrDefault("sorter", "timsort"));
+        this.bytes = options.containsKey("bytes");
+        this.asyncWrite = options.containsKey("async-write");
+        this.mmap = options.containsKey("mmap");
+        this.prefetch = options.containsKey("prefetch");
+        this.unique = parseUnique();
+        this.limit = parseLimit(options.get("limit"));
+        this.keySpec = parseKeySpec(options.get("key"), options.getOrDefault("delimiter", "tab"));
+        this.resumeDir = parseResumeDir(options.get("resume"));
+        this.checkpointSize = parseCheckpointSize(options.get("checkpoint"));
+        this.naturalRuns = parseNaturalRuns();
     }
 
     public Params(Path src, Optional<String[]> fileExtensions, Path dest, int k) {
@@ -78,9 +257,21 @@ public class Params {
         this.destPath = dest;
         this.k = k;
         this.fileExtensions = fileExtensions;
+        this.includes = new String[0];
+        this.excludes = new String[0];
         this.tempDir = Path.of(defTempDir);
         this.charset = StandardCharsets.UTF_8;
         this.workDirPrefix = UUID.randomUUID().toString();
+        this.memory = maxMemory / 2;
+        this.threads = defThreads;
+        this.readers = 1;
+        this.mergeThreads = 1;
+        this.splitStrategy = SplitStrategy.SORT;
+        this.sorterType = SorterType.TIMSORT;
+        this.keySpec = Optional.empty();
+        this.limit = Optional.empty();
+        this.checkpointSize = Optional.empty();
+        this.resumeDir = Optional.empty();
     }
 
     public Params(Path src, Optional<String[]> fileExtensions, Path dest, int k, Path tempDir) {
@@ -104,6 +295,30 @@ public class Params {
         return fileExtensions;
     }
 
+    public String[] getIncludes() {
+        return includes;
+    }
+
+    public void setIncludes(String[] includes) {
+        this.includes = includes;
+    }
+
+    public String[] getExcludes() {
+        return excludes;
+    }
+
+    public void setExcludes(String[] excludes) {
+        this.excludes = excludes;
+    }
+
+    /**
+     * Source directory is walked recursively if any include or exclude pattern
+     * is provided.
+     */
+    public boolean isRecursive() {
+        return includes.length > 0 || excludes.length > 0;
+    }
+
     public Path getDestPath() {
         return destPath;
     }
@@ -120,6 +335,176 @@ public class Params {
         return workDirPrefix;
     }
 
+    public long getMemory() {
+        return memory;
+    }
+
+    public void setMemory(long memory) {
+        this.memory = memory;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getReaders() {
+        return readers;
+    }
+
+    public void setReaders(int readers) {
+        this.readers = readers;
+    }
+
+    public int getMergeThreads() {
+        return mergeThreads;
+    }
+
+    public void setMergeThreads(int mergeThreads) {
+        this.mergeThreads = mergeThreads;
+    }
+
+    public SplitStrategy getSplitStrategy() {
+        return splitStrategy;
+    }
+
+    public void setSplitStrategy(SplitStrategy splitStrategy) {
+        this.splitStrategy = splitStrategy;
+    }
+
+    public SorterType getSorterType() {
+        return sorterType;
+    }
+
+    public void setSorterType(SorterType sorterType) {
+        this.sorterType = sorterType;
+    }
+
+    public boolean isBytes() {
+        return bytes;
+    }
+
+    public void setBytes(boolean bytes) {
+        this.bytes = bytes;
+    }
+
+    public boolean isAsyncWrite() {
+        return asyncWrite;
+    }
+
+    public void setAsyncWrite(boolean asyncWrite) {
+        this.asyncWrite = asyncWrite;
+    }
+
+    public boolean isMmap() {
+        return mmap;
+    }
+
+    public void setMmap(boolean mmap) {
+        this.mmap = mmap;
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    public Optional<KeySpec> getKeySpec() {
+        return keySpec;
+    }
+
+    public void setKeySpec(Optional<KeySpec> keySpec) {
+        this.keySpec = keySpec;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    public void setUnique(boolean unique) {
+        this.unique = unique;
+    }
+
+    public Optional<Long> getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Optional<Long> limit) {
+        this.limit = limit;
+    }
+
+    public Optional<Long> getCheckpointSize() {
+        return checkpointSize;
+    }
+
+    public void setCheckpointSize(Optional<Long> checkpointSize) {
+        this.checkpointSize = checkpointSize;
+    }
+
+    public boolean isCheckpoint() {
+        return checkpointSize.isPresent();
+    }
+
+    public Optional<Path> getResumeDir() {
+        return resumeDir;
+    }
+
+    public void setResumeDir(Optional<Path> resumeDir) {
+        this.resumeDir = resumeDir;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isNaturalRuns() {
+        return naturalRuns;
+    }
+
+    public void setNaturalRuns(boolean naturalRuns) {
+        this.naturalRuns = naturalRuns;
+    }
+
+    /**
+     * Removes "--name value" options and "--flag" flags from args and keeps them
+     * in options map. Returns the remaining positional arguments.
+     */
+    private String[] parseOptions(String[] args) {
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                positional.add(args[i]);
+                continue;
+            }
+
+            String name = args[i].substring(2);
+            if (FLAGS.contains(name)) {
+                options.put(name, "true");
+                continue;
+            }
+
+            if (!OPTIONS.contains(name)) {
+                throw new InvalidParameterException(String.format("Unknown option %s.", args[i]));
+            }
+
+            if (i + 1 >= args.length) {
+                throw new InvalidParameterException(String.format("%s requires a value.", args[i]));
+            }
+            options.put(name, args[++i]);
+        }
+        return positional.toArray(new String[0]);
+    }
+
     private void validateParams(String[] args) {
         if (args.length < 3) {
             throw new InvalidParameterException("Insufficient arguments");
@@ -129,8 +514,9 @@ public class Params {
     private Path parseSrcPath(String src, Optional<String[]> fileExtensions) {
         Path path = Path.of(src);
 
-        if (Files.isDirectory(path) && fileExtensions.isEmpty()) {
-            throw new InvalidParameterException("srcPath is a directory but file extensions are missing.");
+        if (Files.isDirectory(path) && fileExtensions.isEmpty() && !isRecursive()) {
+            throw new InvalidParameterException(
+                    "srcPath is a directory but file extensions or include patterns are missing.");
         }
 
         if (!Files.isDirectory(path) && !Files.isRegularFile(path)) {
@@ -148,6 +534,14 @@ public class Params {
         return Optional.of(extensions.split(","));
     }
 
+    private String[] parsePatterns(String patterns) {
+        if (patterns == null) {
+            return new String[0];
+        }
+        return Arrays.stream(patterns.split(",")).map(String::trim).filter(pattern -> !pattern.isEmpty())
+                .toArray(String[]::new);
+    }
+
     private Path parseDestPath(String dest) {
         Path path = Path.of(dest);
 
@@ -155,7 +549,7 @@ public class Params {
             throw new InvalidParameterException("destPath is a directory but a file path is required.");
         }
 
-        if (Files.isRegularFile(path)) {
+        if (Files.isRegularFile(path) && !options.containsKey("incremental")) {
             throw new InvalidParameterException("destPath: file is already exists.");
         }
 
@@ -181,6 +575,239 @@ public class Params {
         return k;
     }
 
+    /**
+     * Parses a size in bytes. Suffix k, m or g can be used i.e "64k", "512m",
+     * "2g".
+     */
+    private long parseMemory(String value) {
+        long memory = parseSize(value, "memory");
+        if (memory < MIN_MEMORY) {
+            throw new InvalidParameterException("memory must be >= 1m.");
+        }
+
+        if (memory > maxMemory) {
+            throw new InvalidParameterException(
+                    String.format("memory must be <= max heap size %dm, use -Xmx to increase it.",
+                            maxMemory / (1024L * 1024L)));
+        }
+
+        return memory;
+    }
+
+    private long parseSize(String value, String name) {
+        String size = value.trim().toLowerCase(Locale.US);
+        long unit = 1;
+        if (size.endsWith("k")) {
+            unit = 1024L;
+        } else if (size.endsWith("m")) {
+            unit = 1024L * 1024L;
+        } else if (size.endsWith("g")) {
+            unit = 1024L * 1024L * 1024L;
+        }
+        if (unit > 1) {
+            size = size.substring(0, size.length() - 1);
+        }
+
+        try {
+            return Math.multiplyExact(Long.parseLong(size), unit);
+        } catch (NumberFormatException | ArithmeticException ex) {
+            throw new InvalidParameterException(String.format("%s is not a valid size.", name));
+        }
+    }
+
+    private int parseThreads(String value) {
+        int threads;
+        try {
+            threads = Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new InvalidParameterException("threads is not a valid number.");
+        }
+
+        if (threads < 1) {
+            throw new InvalidParameterException("threads must be >= 1.");
+        }
+
+        return threads;
+    }
+
+    private int parseReaders(String value) {
+        int readers;
+        try {
+            readers = Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new InvalidParameterException("readers is not a valid number.");
+        }
+
+        if (readers < 1) {
+            throw new InvalidParameterException("readers must be >= 1.");
+        }
+
+        return readers;
+    }
+
+    private int parseMergeThreads(String value) {
+        int mergeThreads;
+        try {
+            mergeThreads = Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new InvalidParameterException("merge-threads is not a valid number.");
+        }
+
+        if (mergeThreads < 1) {
+            throw new InvalidParameterException("merge-threads must be >= 1.");
+        }
+
+        return mergeThreads;
+    }
+
+    private SplitStrategy parseSplitStrategy(String value) {
+        try {
+            return SplitStrategy.valueOf(value.trim().toUpperCase(Locale.US));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidParameterException("split must be one of \"sort\" or \"replacement\".");
+        }
+    }
+
+    private SorterType parseSorterType(String value) {
+        try {
+            return SorterType.valueOf(value.trim().toUpperCase(Locale.US));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidParameterException("sorter must be one of \"timsort\" or \"multikey\".");
+        }
+    }
+
+    private boolean parseUnique() {
+        if (!options.containsKey("unique")) {
+            return false;
+        }
+
+        if (options.containsKey("bytes")) {
+            throw new InvalidParameterException("unique can't be used with --bytes.");
+        }
+        return true;
+    }
+
+    /**
+     * Raw byte runs are merged without a line reader, so a text run can't be
+     * checked and read among them.
+     */
+    private boolean parseIncremental(Path dest) {
+        if (!options.containsKey("incremental")) {
+            return false;
+        }
+
+        if (options.containsKey("bytes")) {
+            throw new InvalidParameterException("incremental can't be used with --bytes.");
+        }
+        return Files.isRegularFile(dest);
+    }
+
+    /**
+     * Checkpoints are made of input segments, which are always split.
+     */
+    private boolean parseNaturalRuns() {
+        if (!options.containsKey("natural-runs")) {
+            return false;
+        }
+
+        if (options.containsKey("bytes") || checkpointSize.isPresent()) {
+            throw new InvalidParameterException("natural-runs can't be used with --bytes, --checkpoint or --resume.");
+        }
+        return true;
+    }
+
+    private Optional<Long> parseLimit(String value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+
+        if (options.containsKey("bytes")) {
+            throw new InvalidParameterException("limit can't be used with --bytes.");
+        }
+
+        long limit;
+        try {
+            limit = Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new InvalidParameterException("limit is not a valid number.");
+        }
+
+        if (limit < 1) {
+            throw new InvalidParameterException("limit must be >= 1.");
+        }
+
+        return Optional.of(limit);
+    }
+
+    /**
+     * Keys are only supported by sorted chunks, replacement selection and raw
+     * bytes compare whole lines.
+     */
+    private Optional<KeySpec> parseKeySpec(String spec, String delimiter) {
+        if (spec == null) {
+            if (options.containsKey("delimiter")) {
+                throw new InvalidParameterException("delimiter requires a key.");
+            }
+            return Optional.empty();
+        }
+
+        if (options.containsKey("bytes") || splitStrategy == SplitStrategy.REPLACEMENT) {
+            throw new InvalidParameterException("key can't be used with --bytes or --split replacement.");
+        }
+
+        char separator;
+        if (delimiter.equals("tab") || delimiter.equals("\\t")) {
+            separator = '\t';
+        } else if (delimiter.length() == 1) {
+            separator = delimiter.charAt(0);
+        } else {
+            throw new InvalidParameterException("delimiter must be a single char or \"tab\".");
+        }
+
+        try {
+            return Optional.of(KeySpec.parse(spec, separator));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidParameterException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Only sorted chunks of decoded lines are checkpointed. A resumed sort is
+     * checkpointed too, with the default size if not provided.
+     */
+    private Optional<Long> parseCheckpointSize(String value) {
+        if (value == null && resumeDir.isEmpty()) {
+            return Optional.empty();
+        }
+
+        if (options.containsKey("bytes") || splitStrategy == SplitStrategy.REPLACEMENT) {
+            throw new InvalidParameterException(
+                    "checkpoint and resume can't be used with --bytes or --split replacement.");
+        }
+
+        if (value == null) {
+            return Optional.of(DEFAULT_CHECKPOINT_SIZE);
+        }
+
+        long size = parseSize(value, "checkpoint");
+        if (size < MIN_MEMORY) {
+            throw new InvalidParameterException("checkpoint must be >= 1m.");
+        }
+        return Optional.of(size);
+    }
+
+    private Optional<Path> parseResumeDir(String value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+
+        Path path = Path.of(value);
+        if (!Files.isRegularFile(path.resolve(Manifest.FILE_NAME))) {
+            throw new InvalidParameterException("resume directory has no checkpoint manifest.");
+        }
+        return Optional.of(path);
+    }
+
     private Path parseTempDir(String temp) {
         Path path = Path.of(temp);
 
@@ -190,4 +817,12 @@ public class Params {
 
         return path;
     }
+
+    public enum SplitStrategy {
+        SORT, REPLACEMENT
+    }
+
+    public enum SorterType {
+        TIMSORT, MULTIKEY
+    }
 }
\ No newline at end of file
@@ -1,106 +1,660 @@
 package bigsort;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.function.BiConsumer;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import bigsort.Params.SplitStrategy;
 import bigsort.exceptions.BigSortException;
 import bigsort.util.api.FileReader;
 import bigsort.util.api.FileWriter;
 import bigsort.util.api.Sorter;
-import bigsort.util.StreamUtils;
+import bigsort.util.BoundedHeap;
+import bigsort.util.ByteArena;
+import bigsort.util.Chunk;
+import bigsort.util.DirectoryWalker;
+import bigsort.util.InputSegment;
+import bigsort.util.KeySpec;
+import bigsort.util.Manifest;
+import bigsort.util.MemoryUtils;
+import bigsort.util.Metrics;
+import bigsort.util.ReplacementSelection;
+import bigsort.util.SourceFile;
+import bigsort.util.SplitPipeline;
+import bigsort.util.UniqueLines;
 
 /**
  * Spliter is reponsible for reading the source file or files and to split them
  * to small chunk of sorted files. It will use FileReader to produce a single
  * stream of Strings(lines) regardless of if srcPath is a file or directory. And
- * StreamUtils will help to chunk the stream data into a buffer of "k" length.
- * Then each chunk of k lines will be sorted in ascending order and will be
- * saved as split files inside the "workDir" folder.
+ * SplitPipeline will help to chunk the stream data into buffers of at most "k"
+ * lines whose estimated heap size fits in the memory budget. Then each chunk
+ * will be sorted in ascending order by one of the sorter workers and will be
+ * saved as split files inside the "workDir" folder by the writer thread.
+ * Alternatively, ReplacementSelection can be used to generate fewer and longer
+ * split files, or ByteArena to sort raw bytes of real files without decoding
+ * them. If a KeySpec is provided, chunks are sorted by keys which are parsed
+ * once per line instead of by the Sorter. In unique mode duplicates are dropped
+ * from every sorted chunk before it's written, and with a limit only the first
+ * "limit" lines of every chunk are written. Small limits are served by top()
+ * without any split file. A checkpointed sort splits the input in segments
+ * which are recorded in the Manifest of "workDir" one after another. Input
+ * files which are sorted already can be used as runs without being split.
  */
 public class Splitter {
     private final FileReader fileReader;
     private final FileWriter fileWriter;
-    private final StreamUtils streamUtils;
-    private final String splitFileExtension = ".txt";
-    private final int MAX_SPLIT_SIZE = 1_000_000;
+    private final DirectoryWalker directoryWalker;
+    private final String splitFileExtension = ".run";
+    private final int WRITE_BUFFER_SIZE = 1024 * 1024;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
     private Sorter sorter;
+    private KeySpec keySpec;
+    private boolean unique;
+    private long limit;
+    private boolean checkpoint;
     private Path workDir;
-    private List<Path> splitFiles;
+    private Map<Integer, Path> splitFiles;
+    private final Collection<Path> naturalRuns;
     final Logger logger = Logger.getLogger(App.class.getName());
+    private static final Metrics metrics = Metrics.global();
 
-    public Splitter(FileReader fileReader, FileWriter fileWriter, Sorter sorter, StreamUtils streamUtils) {
+    public Splitter(FileReader fileReader, FileWriter fileWriter, Sorter sorter) {
+        this(fileReader, fileWriter, sorter, new DirectoryWalker(Runtime.getRuntime().availableProcessors()));
+    }
+
+    public Splitter(FileReader fileReader, FileWriter fileWriter, Sorter sorter, DirectoryWalker directoryWalker) {
+        this(fileReader, fileWriter, sorter, directoryWalker, new HashSet<>());
+    }
+
+    /**
+     * @param naturalRuns receives the input files which are sorted already,
+     *                    they need to be read as text runs by the merge
+     */
+    public Splitter(FileReader fileReader, FileWriter fileWriter, Sorter sorter, DirectoryWalker directoryWalker,
+            Collection<Path> naturalRuns) {
+        this.naturalRuns = naturalRuns;
         this.fileReader = fileReader;
         this.fileWriter = fileWriter;
+        this.directoryWalker = directoryWalker;
         this.sorter = sorter;
-        this.streamUtils = streamUtils;
-        this.splitFiles = new ArrayList<>();
+        this.splitFiles = new ConcurrentSkipListMap<>();
     }
 
     public List<Path> split(Params params, Path workDir) {
+        Consumer<Stream<String>> onStream = prepareSplit(params, workDir);
+
+        if (params.isBytes()) {
+            splitBytes(params);
+            logger.log(Level.INFO, "All split files saved to {0}", new Object[] { workDir.toString() });
+            return new ArrayList<>(splitFiles.values());
+        }
+
+        if (params.isCheckpoint()) {
+            splitCheckpointed(params);
+            logger.log(Level.INFO, "All split files saved to {0}", new Object[] { workDir.toString() });
+            return new ArrayList<>(splitFiles.values());
+        }
+
+        if (params.isNaturalRuns()) {
+            List<Path> sorted = splitNaturalRuns(params, onStream);
+            logger.log(Level.INFO, "All split files saved to {0}", new Object[] { workDir.toString() });
+            List<Path> runs = new ArrayList<>(splitFiles.values());
+            runs.addAll(sorted);
+            return runs;
+        }
+
+        // open input data stream and create sorted split files of k lines at most
+        openInput(params, onStream);
+
+        logger.log(Level.INFO, "All split files saved to {0}", new Object[] { workDir.toString() });
+        return new ArrayList<>(splitFiles.values());
+    }
+
+    /**
+     * Splits the given stream instead of opening the input, i.e the lines top()
+     * couldn't keep in memory.
+     *
+     * @param stream
+     * @param params
+     * @param workDir
+     * @return List<Path>
+     */
+    public List<Path> split(Stream<String> stream, Params params, Path workDir) {
+        prepareSplit(params, workDir).accept(stream);
+        logger.log(Level.INFO, "All split files saved to {0}", new Object[] { workDir.toString() });
+        return new ArrayList<>(splitFiles.values());
+    }
+
+    private Consumer<Stream<String>> prepareSplit(Params params, Path workDir) {
         this.workDir = workDir;
+        this.keySpec = params.getKeySpec().orElse(null);
+        this.unique = params.isUnique();
+        this.limit = params.getLimit().orElse(Long.MAX_VALUE);
+        this.checkpoint = params.isCheckpoint();
+        return params.getSplitStrategy() == SplitStrategy.REPLACEMENT
+                ? stream -> replacementSelection(stream, params)
+                : stream -> sortInPipeline(stream, params);
+    }
+
+    /**
+     * Input files which are sorted already are used as runs as they are, only
+     * the other files are split. A file is checked by streaming its lines until
+     * one is smaller than the line before, so most unsorted files are rejected
+     * after a few lines. Sorted runs are returned, they go after split files
+     * which keeps them out of intermediate merges as long as possible.
+     */
+    private List<Path> splitNaturalRuns(Params params, Consumer<Stream<String>> onStream) {
+        List<Path> sorted = new ArrayList<>();
+        List<Path> unsorted = new ArrayList<>();
+        long sortedBytes = 0;
+        for (Path file : listFiles(params)) {
+            try {
+                long size = Files.size(file);
+                if (size == 0) {
+                    continue;
+                }
+                if (isSorted(file, params.getCharset())) {
+                    sorted.add(file);
+                    sortedBytes += size;
+                } else {
+                    unsorted.add(file);
+                }
+            } catch (IOException e) {
+                throw new BigSortException(String.format("Error occured while checking order of %s", file.toString()),
+                        e);
+            }
+        }
+
+        logger.log(Level.INFO, "{0} input files are sorted already, {1} bytes are used as runs",
+                new Object[] { sorted.size(), sortedBytes });
+        naturalRuns.addAll(sorted);
+        if (!unsorted.isEmpty()) {
+            openSplitStream(unsorted, params.getCharset(), onStream);
+        }
+        return sorted;
+    }
+
+    private boolean isSorted(Path file, Charset charset) throws IOException {
+        try (Stream<String> stream = fileReader.lines(file, charset)) {
+            Iterator<String> lines = stream.iterator();
+            String previous = null;
+            KeySpec.Key previousKey = null;
+            while (lines.hasNext()) {
+                String line = lines.next();
+                if (keySpec != null) {
+                    KeySpec.Key key = keySpec.key(line);
+                    if (previousKey != null && keySpec.compare(previousKey, key) > 0) {
+                        return false;
+                    }
+                    previousKey = key;
+                } else if (previous != null && previous.compareTo(line) > 0) {
+                    return false;
+                }
+                previous = line;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Streams the input through a BoundedHeap which keeps the first
+     * params.getLimit() lines in sorted order, no split file is written. Returns
+     * empty if the limit can't fit in the memory budget, then the input needs to
+     * be split and merged. Once the kept lines outgrow the budget they are
+     * handed to onOverflow along with the rest of the input stream, so the
+     * input isn't read again. A checkpointed sort or one with natural runs
+     * splits the input its own way, then the stream is dropped and split() has
+     * to read the input.
+     *
+     * @param params
+     * @param onOverflow receives the kept and the remaining lines, may be null
+     * @return Optional<List<String>>
+     */
+    public Optional<List<String>> top(Params params, Consumer<Stream<String>> onOverflow) {
+        long limit = params.getLimit().orElseThrow();
+        if (limit > Integer.MAX_VALUE || limit > params.getMemory() / MemoryUtils.minLineSize()) {
+            return Optional.empty();
+        }
+
+        var keySpec = params.getKeySpec();
+        if (keySpec.isPresent()) {
+            return top(params, (int) limit, keySpec.get()::key, keySpec.get(), KeySpec.Key::line,
+                    line -> 2 * MemoryUtils.estimateLineSize(line), onOverflow);
+        }
+        return top(params, (int) limit, Function.identity(), Comparator.naturalOrder(), Function.identity(),
+                MemoryUtils::estimateLineSize, onOverflow);
+    }
+
+    private <T> Optional<List<String>> top(Params params, int limit, Function<String, T> toItem,
+            Comparator<? super T> comparator, Function<T, String> toLine, ToLongFunction<String> sizeOf,
+            Consumer<Stream<String>> onOverflow) {
+        var heap = new BoundedHeap<T>(limit, comparator);
+        Set<String> kept = params.isUnique() ? new HashSet<>() : null;
+        long[] bytes = { 0 };
+        boolean[] fits = { true };
+        boolean handOff = onOverflow != null && !params.isCheckpoint() && !params.isNaturalRuns();
+
+        openInput(params, stream -> {
+            Iterator<String> lines = stream.iterator();
+            while (lines.hasNext()) {
+                String line = lines.next();
+                if (kept != null && kept.contains(line)) {
+                    continue;
+                }
+
+                T item = toItem.apply(line);
+                T dropped = heap.offer(item);
+                if (dropped == item) {
+                    continue;
+                }
+
+                bytes[0] += sizeOf.applyAsLong(line);
+                if (kept != null) {
+                    kept.add(line);
+                }
+                if (dropped != null) {
+                    String droppedLine = toLine.apply(dropped);
+                    bytes[0] -= sizeOf.applyAsLong(droppedLine);
+                    if (kept != null) {
+                        kept.remove(droppedLine);
+                    }
+                }
+
+                if (bytes[0] > params.getMemory()) {
+                    fits[0] = false;
+                    break;
+                }
+            }
+
+            if (fits[0] || !handOff) {
+                return;
+            }
+
+            // kept lines go first, their order doesn't matter to the split
+            logger.log(Level.INFO, "{0} lines don''t fit in memory, the rest of the input is split and merged",
+                    new Object[] { limit });
+            if (kept != null) {
+                kept.clear();
+            }
+            Stream<String> keptLines = heap.drainSorted().stream().map(toLine);
+            Stream<String> rest = StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(lines, Spliterator.ORDERED | Spliterator.NONNULL), false);
+            onOverflow.accept(Stream.concat(keptLines, rest));
+        });
+
+        if (!fits[0]) {
+            if (!handOff) {
+                logger.log(Level.INFO, "{0} lines don''t fit in memory, input will be split and merged",
+                        new Object[] { limit });
+            }
+            return Optional.empty();
+        }
+
+        List<String> lines = new ArrayList<>(heap.size());
+        for (T item : heap.drainSorted()) {
+            lines.add(toLine.apply(item));
+        }
+        logger.log(Level.INFO, "{0} top lines kept in memory", new Object[] { lines.size() });
+        return Optional.of(lines);
+    }
+
+    private void openInput(Params params, Consumer<Stream<String>> onStream) {
         var path = params.getSrcPath();
         var charset = params.getCharset();
-        var k = Math.min(params.getK(), MAX_SPLIT_SIZE);
-
-        // open input data stream and create sorted split files of k lines
-        if (params.getFileExtensions().isPresent()) {
-            openSplitStream(path, params.getFileExtensions().get(), charset, k, onSplitData);
+        if (params.isRecursive()) {
+            openSplitStream(walkSourceFiles(params), charset, onStream);
+        } else if (params.getFileExtensions().isPresent()) {
+            openSplitStream(path, params.getFileExtensions().get(), charset, onStream);
         } else {
-            openSplitStream(path, charset, k, onSplitData);
+            openSplitStream(path, charset, onStream);
         }
+    }
 
-        logger.log(Level.INFO, "All split files saved to {0}", new Object[] { workDir.toString() });
-        return splitFiles;
+    private void sortInPipeline(Stream<String> stream, Params params) {
+        createPipeline(params).process(stream);
+    }
+
+    private SplitPipeline createPipeline(Params params) {
+        // a parsed key costs about as much as its line while the chunk is sorted
+        ToLongFunction<String> sizeOf = keySpec == null ? MemoryUtils::estimateLineSize
+                : line -> 2 * MemoryUtils.estimateLineSize(line);
+        return new SplitPipeline(params.getThreads(), params.getK(), params.getMemory(), sizeOf, this::sortChunk,
+                this::writeChunk);
+    }
+
+    private void replacementSelection(Stream<String> stream, Params params) {
+        var selection = new ReplacementSelection(params.getK(), params.getMemory(), MemoryUtils::estimateLineSize);
+        selection.process(stream, (lines, splitId) -> {
+            Path path = getFilePath(workDir, splitId);
+            Iterable<String> data = unique ? () -> UniqueLines.filter(lines.iterator()) : lines;
+            createSplitFile(path, limit < Long.MAX_VALUE ? () -> limit(data.iterator()) : data, splitId);
+            splitFiles.put(splitId, path);
+        });
+    }
+
+    /**
+     * Reads input files straight into a ByteArena and writes a sorted split file
+     * whenever the arena is full, lines are never decoded.
+     */
+    private void splitBytes(Params params) {
+        int writeBufferSize = (int) Math.min(WRITE_BUFFER_SIZE, params.getMemory() / 8);
+        var arena = new ByteArena(params.getMemory() - writeBufferSize);
+        var out = ByteBuffer.allocateDirect(writeBufferSize);
+        List<Path> files = listFiles(params);
+
+        int splitId = 0;
+        for (Path file : files) {
+            logger.log(Level.INFO, "Open input bytes of file {0}", new Object[] { file.toString() });
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (arena.read(channel)) {
+                    createSplitFile(arena, out, splitId++);
+                }
+                arena.endOfInput();
+            } catch (IOException e) {
+                throw new BigSortException(String.format("Error occured in split bytes of file %s", file.toString()),
+                        e);
+            }
+        }
+
+        if (arena.lines() > 0) {
+            createSplitFile(arena, out, splitId);
+        }
+    }
+
+    private List<Path> listFiles(Params params) {
+        var path = params.getSrcPath();
+        if (params.isRecursive()) {
+            return walkSourceFiles(params);
+        }
+        try {
+            return params.getFileExtensions().isPresent()
+                    ? fileReader.files(path, params.getFileExtensions().get()).collect(Collectors.toList())
+                    : List.of(path);
+        } catch (IOException e) {
+            throw new BigSortException(String.format("Error occured while listing files of %s", path.toString()), e);
+        }
+    }
+
+    /**
+     * Splits the input segment by segment and records the runs of every
+     * segment in the manifest of workDir, once they are on disk. Segments which
+     * are done already by an interrupted sort of the same input are not read
+     * again, their runs are reused. Files of workDir which the manifest doesn't
+     * refer to are left over by the interrupted segment and deleted.
+     */
+    private void splitCheckpointed(Params params) {
+        List<Path> files = new ArrayList<>(listFiles(params));
+        files.sort(Comparator.naturalOrder());
+        try (Manifest manifest = openManifest(params, files)) {
+            List<InputSegment> segments = manifest.getSegments();
+            int nextId = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                for (Path run : manifest.getSplitRuns(i)) {
+                    nextId = Math.max(nextId, getSplitId(run) + 1);
+                }
+            }
+
+            List<Integer> pending = new ArrayList<>();
+            for (int i = 0; i < segments.size(); i++) {
+                if (!manifest.isDone(i)) {
+                    // runs of a segment which is split again are replaced
+                    for (Path run : manifest.getSplitRuns(i)) {
+                        fileWriter.delete(run);
+                    }
+                    pending.add(i);
+                    continue;
+                }
+                for (Path run : manifest.getSplitRuns(i)) {
+                    splitFiles.put(getSplitId(run), run);
+                }
+            }
+            deleteUnknownFiles(manifest);
+            logger.log(Level.INFO, "{0} of {1} input segments split already",
+                    new Object[] { segments.size() - pending.size(), segments.size() });
+
+            var pipeline = createPipeline(params);
+            for (int segment : pending) {
+                int firstId = nextId;
+                try (Stream<String> stream = segments.get(segment).lines(fileReader, params.getCharset())) {
+                    nextId = pipeline.process(stream.peek(line -> metrics.lineRead()), firstId);
+                }
+
+                List<Path> runs = new ArrayList<>();
+                for (int id = firstId; id < nextId; id++) {
+                    if (splitFiles.containsKey(id)) {
+                        runs.add(splitFiles.get(id));
+                    }
+                }
+                manifest.segmentDone(segment, runs);
+                logger.log(Level.INFO, "Segment {0}: {1} split files checkpointed",
+                        new Object[] { segment, runs.size() });
+            }
+        } catch (IOException e) {
+            throw new BigSortException(String.format("Error occured while checkpointing to %s", workDir.toString()),
+                    e);
+        }
+    }
+
+    private Manifest openManifest(Params params, List<Path> files) throws IOException {
+        String options = describeOptions(params);
+        if (!Manifest.exists(workDir)) {
+            List<SourceFile> sources = new ArrayList<>(files.size());
+            for (Path file : files) {
+                sources.add(new SourceFile(file, Files.size(file)));
+            }
+            return Manifest.create(workDir, options, files,
+                    InputSegment.plan(sources, params.getCheckpointSize().orElseThrow()));
+        }
+
+        Manifest manifest = Manifest.load(workDir);
+        if (!manifest.getOptions().equals(options) || !manifest.sameInputs(files)) {
+            manifest.close();
+            throw new IOException("Input files or options have changed since the checkpoint");
+        }
+        logger.log(Level.INFO, "Resume from checkpoint {0}", new Object[] { workDir.toString() });
+        return manifest;
+    }
+
+    /**
+     * Options which change the content of split files.
+     */
+    private String describeOptions(Params params) {
+        return String.format("key=%s unique=%b limit=%s", params.getKeySpec().map(KeySpec::toString).orElse(""),
+                params.isUnique(), params.getLimit().map(String::valueOf).orElse(""));
+    }
+
+    private void deleteUnknownFiles(Manifest manifest) throws IOException {
+        List<String> runs = manifest.getLiveRuns();
+        List<Path> unknown;
+        try (Stream<Path> files = Files.list(workDir)) {
+            unknown = files.filter(file -> {
+                String name = file.getFileName().toString();
+                return !name.equals(Manifest.FILE_NAME) && !runs.contains(name);
+            }).collect(Collectors.toList());
+        }
+        for (Path file : unknown) {
+            fileWriter.delete(file);
+        }
+    }
+
+    private int getSplitId(Path run) {
+        String name = run.getFileName().toString();
+        return Integer.parseInt(name.substring(0, name.length() - splitFileExtension.length()));
+    }
+
+    private void createSplitFile(ByteArena arena, ByteBuffer out, int splitId) {
+        Path path = getFilePath(workDir, splitId);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            metrics.read(arena.lines(), 0);
+            long start = System.nanoTime();
+            arena.sort();
+            metrics.sorted(System.nanoTime() - start);
+            arena.writeTo(channel, out, LINE_SEPARATOR);
+            metrics.runWritten(channel.size());
+            arena.reset();
+            path.toFile().deleteOnExit();
+            splitFiles.put(splitId, path);
+            logger.log(Level.FINE, "Split {0}: file created at {1}", new Object[] { splitId, path.toString() });
+        } catch (IOException e) {
+            throw new BigSortException(String.format("Error occured while creating split file %s", path.toString()),
+                    e);
+        }
     }
 
-    private BiConsumer<String[], Integer> onSplitData = (data, splitId) -> {
+    private void sortChunk(Chunk chunk) {
         // sort input chunk data
-        sorter.sort(data);
-        logger.log(Level.FINE, "Split {0}: {1} lines sorting done.", new Object[] { splitId, data.length });
+        long start = System.nanoTime();
+        if (keySpec != null) {
+            sortChunkByKey(chunk);
+        } else {
+            sorter.sort(chunk.lines(), 0, chunk.size());
+        }
+        if (unique) {
+            chunk.truncate(UniqueLines.compact(chunk.lines(), chunk.size()));
+        }
+        if (limit < chunk.size()) {
+            // lines after the limit can't be in the output
+            chunk.truncate((int) limit);
+        }
+        metrics.sorted(System.nanoTime() - start);
+        logger.log(Level.FINE, "Split {0}: {1} lines sorting done.", new Object[] { chunk.id(), chunk.size() });
+    }
+
+    private void sortChunkByKey(Chunk chunk) {
+        String[] lines = chunk.lines();
+        KeySpec.Key[] keys = new KeySpec.Key[chunk.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keySpec.key(lines[i]);
+        }
+        Arrays.sort(keys, keySpec);
+        for (int i = 0; i < keys.length; i++) {
+            lines[i] = keys[i].line();
+        }
+    }
+
+    private Iterator<String> limit(Iterator<String> lines) {
+        return new Iterator<String>() {
+            private long count = 0;
+
+            @Override
+            public boolean hasNext() {
+                return count < limit && lines.hasNext();
+            }
 
+            @Override
+            public String next() {
+                count++;
+                return lines.next();
+            }
+        };
+    }
+
+    private void writeChunk(Chunk chunk) {
         // save this chunk to a file
-        Path path = getFilePath(workDir, splitId);
-        splitFiles.add(path);
-        createSplitFile(path, data, splitId);
-    };
+        Path path = getFilePath(workDir, chunk.id());
+        createSplitFile(path, chunk.asList(), chunk.id());
+        splitFiles.put(chunk.id(), path);
+    }
 
-    private void openSplitStream(Path path, String[] fileExtensions, Charset charset, int splitSize,
-            BiConsumer<String[], Integer> onStreamData) {
+    private void openSplitStream(Path path, String[] fileExtensions, Charset charset,
+            Consumer<Stream<String>> onStream) {
         logger.log(Level.INFO, "Open input split stream for directory {0}", new Object[] { path.toString() });
 
         try (Stream<String> stream = fileReader.lines(path, fileExtensions, charset)) {
-            streamUtils.processInBatch(stream, splitSize, onStreamData);
+            onStream.accept(stream.peek(line -> metrics.lineRead()));
         } catch (IOException e) {
             throw new BigSortException(String.format("Error occured in split stream directory %s", path.toString()), e);
         }
     }
 
-    private void openSplitStream(Path path, Charset charset, int splitSize,
-            BiConsumer<String[], Integer> onStreamData) {
+    /**
+     * Walks srcPath recursively with include and exclude patterns, file
+     * extensions are applied too if provided. Sizes are recorded by the walk, so
+     * the total input size is known before any line is read.
+     */
+    private List<Path> walkSourceFiles(Params params) {
+        var path = params.getSrcPath();
+        String[] extensions = params.getFileExtensions().orElse(new String[0]);
+        List<SourceFile> sourceFiles;
+        try {
+            sourceFiles = directoryWalker.walk(path, params.getIncludes(), params.getExcludes());
+        } catch (IOException e) {
+            throw new BigSortException(String.format("Error occured while walking directory %s", path.toString()), e);
+        }
+
+        List<Path> files = new ArrayList<>();
+        long totalSize = 0;
+        for (SourceFile file : sourceFiles) {
+            String name = file.getPath().toString();
+            if (extensions.length == 0 || Arrays.stream(extensions).anyMatch(name::endsWith)) {
+                files.add(file.getPath());
+                totalSize += file.getSize();
+            }
+        }
+
+        logger.log(Level.INFO, "{0} source files found, {1} bytes in total",
+                new Object[] { files.size(), totalSize });
+        return files;
+    }
+
+    private void openSplitStream(List<Path> files, Charset charset, Consumer<Stream<String>> onStream) {
+        logger.log(Level.INFO, "Open input split stream for {0} files", new Object[] { files.size() });
+
+        try (Stream<String> stream = fileReader.lines(files, charset)) {
+            onStream.accept(stream.peek(line -> metrics.lineRead()));
+        } catch (IOException e) {
+            throw new BigSortException("Error occured in split stream of source files", e);
+        }
+    }
+
+    private void openSplitStream(Path path, Charset charset, Consumer<Stream<String>> onStream) {
         logger.log(Level.INFO, "Open input split stream file {0}", new Object[] { path.toString() });
 
         try (Stream<String> stream = fileReader.lines(path, charset)) {
-            streamUtils.processInBatch(stream, splitSize, onStreamData);
+            onStream.accept(stream.peek(line -> metrics.lineRead()));
         } catch (IOException e) {
             throw new BigSortException(String.format("Error occured in split stream file %s", path.toString()), e);
         }
     }
 
-    private void createSplitFile(Path path, String[] data, int splitId) {
+    private void createSplitFile(Path path, Iterable<String> data, int splitId) {
         try {
             fileWriter.write(path, data, StandardOpenOption.CREATE);
-            path.toFile().deleteOnExit();
+            metrics.runWritten(path.toFile().length());
+            if (!checkpoint) {
+                path.toFile().deleteOnExit();
+            }
             logger.log(Level.FINE, "Split {0}: file created at {1}", new Object[] { splitId, path.toString() });
         } catch (IOException e) {
-            throw new BigSortException(String.format("Error occured while creating split file {0}", path.toString()),
+            throw new BigSortException(String.format("Error occured while creating split file %s", path.toString()),
                     e);
         }
     }
@@ -109,4 +663,4 @@ public class Splitter {
         String fileName = String.format("%d%s", splitId, splitFileExtension);
         return dir.resolve(fileName);
     }
-}
\ No newline at end of file
+}
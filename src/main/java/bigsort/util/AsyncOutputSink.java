@@ -0,0 +1,150 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import bigsort.util.api.OutputSink;
+
+/**
+ * AsyncOutputSink is a write-behind decorator of another OutputSink. Lines are
+ * collected into one of two chunks on the calling thread, while a dedicated
+ * writer thread drains the other one into the wrapped sink. When both chunks
+ * are full the caller blocks until the writer hands one back, so merging and
+ * writing overlap without unbounded buffering.
+ *
+ * Half of the buffer size is given to the wrapped sink and the other half is
+ * shared by the two chunks. A failure of the writer is rethrown on the calling
+ * thread by the next write() or by commit().
+ */
+public class AsyncOutputSink implements OutputSink {
+    private static final int BUFFERS = 2;
+    private static final int MAX_LINES = 64 * 1024;
+    private final OutputSink sink;
+    private OutputSink delegate;
+    private BlockingQueue<Chunk> freeChunks;
+    private ExecutorService writer;
+    private AtomicReference<Throwable> failure;
+    private Chunk current;
+    private long maxBytes;
+
+    public AsyncOutputSink(OutputSink sink) {
+        this.sink = sink;
+    }
+
+    private AsyncOutputSink(OutputSink delegate, int bufferSize) {
+        this.sink = null;
+        this.delegate = delegate;
+        this.maxBytes = bufferSize / (2 * BUFFERS);
+        this.failure = new AtomicReference<>();
+        this.freeChunks = new ArrayBlockingQueue<>(BUFFERS);
+        for (int i = 0; i < BUFFERS; i++) {
+            freeChunks.add(new Chunk(MAX_LINES));
+        }
+        this.writer = Executors.newSingleThreadExecutor(SplitPipeline.threadFactory("bigsort-output"));
+        this.current = freeChunks.poll();
+    }
+
+    @Override
+    public OutputSink create(Path path, int bufferSize) throws IOException {
+        return new AsyncOutputSink(sink.create(path, bufferSize / 2), bufferSize);
+    }
+
+    @Override
+    public void write(String line) throws IOException {
+        long size = MemoryUtils.estimateLineSize(line);
+        if (current.size() == MAX_LINES || (!current.isEmpty() && current.bytes() + size > maxBytes)) {
+            submit(current);
+            current = takeChunk();
+        }
+        current.add(line, size, MAX_LINES);
+    }
+
+    /**
+     * Waits until every line is written by the writer thread, then commits the
+     * wrapped sink.
+     */
+    @Override
+    public void commit() throws IOException {
+        if (!current.isEmpty()) {
+            submit(current);
+        }
+        current = null;
+
+        writer.shutdown();
+        try {
+            while (!writer.awaitTermination(1, TimeUnit.MINUTES)) {
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+
+        rethrowFailure();
+        delegate.commit();
+    }
+
+    @Override
+    public void close() {
+        writer.shutdownNow();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    private void submit(Chunk chunk) {
+        writer.execute(() -> {
+            try {
+                if (failure.get() != null) {
+                    return;
+                }
+
+                String[] lines = chunk.lines();
+                for (int i = 0; i < chunk.size(); i++) {
+                    delegate.write(lines[i]);
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                freeChunks.add(chunk);
+            }
+        });
+    }
+
+    private Chunk takeChunk() throws IOException {
+        try {
+            Chunk chunk = freeChunks.take();
+            rethrowFailure();
+            chunk.reset(0);
+            return chunk;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private void rethrowFailure() throws IOException {
+        Throwable e = failure.get();
+        if (e == null) {
+            return;
+        }
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new IOException(e);
+    }
+}
@@ -0,0 +1,109 @@
+package bigsort.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * BoundedHeap keeps the smallest "limit" items offered to it in a max-heap, so
+ * the largest kept item is at the root. Once the heap is full an offered item
+ * only costs one comparison with the root unless it's smaller, then it
+ * replaces the root which sifts down.
+ *
+ * @param <T> item type, ordered by the comparator
+ */
+public class BoundedHeap<T> {
+    private static final int INITIAL_CAPACITY = 1024;
+    private final int limit;
+    private final Comparator<? super T> comparator;
+    private Object[] items;
+    private int size = 0;
+
+    public BoundedHeap(int limit, Comparator<? super T> comparator) {
+        this.limit = limit;
+        this.comparator = comparator;
+        this.items = new Object[Math.min(limit, INITIAL_CAPACITY)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds item if the heap isn't full or item is smaller than the largest kept
+     * one.
+     *
+     * @param item
+     * @return the item dropped from the heap, item itself if it's not kept or
+     *         null if nothing is dropped
+     */
+    public T offer(T item) {
+        if (size < limit) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, (int) Math.min(limit, 2L * size));
+            }
+            items[size] = item;
+            siftUp(size++);
+            return null;
+        }
+
+        if (limit == 0 || comparator.compare(item, get(0)) >= 0) {
+            return item;
+        }
+
+        T dropped = get(0);
+        items[0] = item;
+        siftDown(0);
+        return dropped;
+    }
+
+    /**
+     * Kept items in ascending order, the heap is emptied.
+     *
+     * @return List<T>
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> drainSorted() {
+        T[] sorted = (T[]) Arrays.copyOf(items, size);
+        Arrays.sort(sorted, comparator);
+        items = new Object[0];
+        size = 0;
+        return Arrays.asList(sorted);
+    }
+
+    private void siftUp(int index) {
+        T item = get(index);
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (comparator.compare(item, get(parent)) <= 0) {
+                break;
+            }
+            items[index] = items[parent];
+            index = parent;
+        }
+        items[index] = item;
+    }
+
+    private void siftDown(int index) {
+        T item = get(index);
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && comparator.compare(get(right), get(child)) > 0) {
+                child = right;
+            }
+            if (comparator.compare(item, get(child)) >= 0) {
+                break;
+            }
+            items[index] = items[child];
+            index = child;
+        }
+        items[index] = item;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T get(int index) {
+        return (T) items[index];
+    }
+}
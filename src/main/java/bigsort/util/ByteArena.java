@@ -0,0 +1,250 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * ByteArena keeps raw line bytes of a split in an off-heap buffer, next to an
+ * index of (offset, length) entries. Sorting only moves the index entries and
+ * lines are compared as unsigned bytes, which is the code point order for
+ * UTF-8. Lines are never decoded to String.
+ *
+ * Bytes are read from a channel straight into the arena. A line is ended by
+ * '\n' and an optional '\r' before it is dropped. The unfinished line at the
+ * end of the arena is moved to the beginning when the arena is reset.
+ */
+public class ByteArena {
+    private static final int INITIAL_LINES = 1024;
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final Metrics metrics = Metrics.global();
+    private final ByteBuffer arena;
+    private final ByteBuffer left;
+    private final ByteBuffer right;
+    private final int maxLines;
+    private long[] index = new long[INITIAL_LINES];
+    private long[] temp = new long[0];
+    private int lines = 0;
+    private int lineStart = 0;
+    private int scanned = 0;
+
+    /**
+     * Arena gets half of the memory, but at most 1 GB, the other half is left for
+     * the index and the space to sort it, 16 bytes per line.
+     *
+     * @param memory
+     */
+    public ByteArena(long memory) {
+        int capacity = (int) Math.min(memory / 2, 1L << 30);
+        this.arena = ByteBuffer.allocateDirect(capacity);
+        this.left = arena.duplicate();
+        this.right = arena.duplicate();
+        this.maxLines = (int) Math.min((memory - capacity) / 16, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * Reads from channel until the arena or its index is full or channel has
+     * ended.
+     *
+     * @param channel
+     * @return false if channel has ended
+     * @throws IOException
+     */
+    public boolean read(ReadableByteChannel channel) throws IOException {
+        while (true) {
+            scanLines();
+            if (isFull()) {
+                return true;
+            }
+            long start = System.nanoTime();
+            int count = channel.read(arena);
+            metrics.readWaited(System.nanoTime() - start);
+            if (count < 0) {
+                return false;
+            }
+            metrics.read(0, count);
+        }
+    }
+
+    /**
+     * Arena can't take more lines, it needs to be sorted, written and reset.
+     *
+     * @return boolean
+     */
+    public boolean isFull() {
+        return !arena.hasRemaining() || lines >= maxLines;
+    }
+
+    public int lines() {
+        return lines;
+    }
+
+    /**
+     * Adds the unfinished line as a complete one, should be called at the end of
+     * every input file.
+     */
+    public void endOfInput() {
+        if (arena.position() > lineStart) {
+            addLine(lineStart, arena.position());
+            lineStart = arena.position();
+        }
+    }
+
+    public void sort() {
+        if (temp.length < lines) {
+            temp = new long[index.length];
+        }
+        System.arraycopy(index, 0, temp, 0, lines);
+        mergeSort(temp, index, 0, lines);
+    }
+
+    /**
+     * Writes lines in index order, each followed by the line separator.
+     *
+     * @param channel
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(WritableByteChannel channel, ByteBuffer out, byte[] separator) throws IOException {
+        out.clear();
+        for (int i = 0; i < lines; i++) {
+            int offset = offset(index[i]);
+            int length = length(index[i]);
+            if (out.remaining() < length + separator.length) {
+                flush(channel, out);
+            }
+
+            if (out.remaining() < length + separator.length) {
+                // longer than the out buffer
+                left.limit(offset + length).position(offset);
+                while (left.hasRemaining()) {
+                    channel.write(left);
+                }
+                out.put(separator);
+                continue;
+            }
+
+            left.limit(offset + length).position(offset);
+            out.put(left).put(separator);
+        }
+        flush(channel, out);
+    }
+
+    /**
+     * Drops all complete lines, the unfinished one is kept at the beginning.
+     *
+     * @throws IOException
+     */
+    public void reset() throws IOException {
+        int pending = arena.position() - lineStart;
+        if (pending == arena.capacity()) {
+            throw new IOException(String.format("A line is longer than the arena size %d bytes", arena.capacity()));
+        }
+
+        byte[] bytes = new byte[pending];
+        left.limit(arena.position()).position(lineStart);
+        left.get(bytes);
+        arena.clear();
+        arena.put(bytes);
+        scanned -= lineStart;
+        lines = 0;
+        lineStart = 0;
+    }
+
+    private void scanLines() {
+        int end = arena.position();
+        for (int i = scanned; i < end; i++) {
+            if (arena.get(i) == LF) {
+                int lineEnd = i > lineStart && arena.get(i - 1) == CR ? i - 1 : i;
+                addLine(lineStart, lineEnd);
+                lineStart = i + 1;
+                if (isFull()) {
+                    scanned = i + 1;
+                    return;
+                }
+            }
+        }
+        scanned = end;
+    }
+
+    /**
+     * When the index gets full before all read bytes are scanned, the rest is
+     * scanned by the next read after reset.
+     */
+    private void addLine(int start, int end) {
+        if (lines == index.length) {
+            index = Arrays.copyOf(index, (int) Math.min(maxLines, 2L * lines));
+        }
+        index[lines++] = ((long) start << 32) | (end - start);
+    }
+
+    private void mergeSort(long[] src, long[] dest, int from, int to) {
+        int length = to - from;
+        if (length < 16) {
+            for (int i = from + 1; i < to; i++) {
+                long entry = dest[i];
+                int j = i - 1;
+                while (j >= from && compare(dest[j], entry) > 0) {
+                    dest[j + 1] = dest[j];
+                    j--;
+                }
+                dest[j + 1] = entry;
+            }
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        mergeSort(dest, src, from, mid);
+        mergeSort(dest, src, mid, to);
+
+        if (compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, from, dest, from, length);
+            return;
+        }
+
+        for (int i = from, p = from, q = mid; i < to; i++) {
+            if (q >= to || (p < mid && compare(src[p], src[q]) <= 0)) {
+                dest[i] = src[p++];
+            } else {
+                dest[i] = src[q++];
+            }
+        }
+    }
+
+    private int compare(long entry1, long entry2) {
+        int offset1 = offset(entry1);
+        int length1 = length(entry1);
+        int offset2 = offset(entry2);
+        int length2 = length(entry2);
+        left.limit(offset1 + length1).position(offset1);
+        right.limit(offset2 + length2).position(offset2);
+
+        int i = left.mismatch(right);
+        if (i < 0) {
+            return 0;
+        }
+        if (i == length1 || i == length2) {
+            return length1 - length2;
+        }
+        return Byte.toUnsignedInt(arena.get(offset1 + i)) - Byte.toUnsignedInt(arena.get(offset2 + i));
+    }
+
+    private static int offset(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int length(long entry) {
+        return (int) entry;
+    }
+
+    private static void flush(WritableByteChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+}
@@ -0,0 +1,110 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * ByteLineReader reads a file line by line as raw bytes. Current line is a
+ * slice of buffer() from start() with length(), which stays valid until next()
+ * is called. Lines are ended like ByteArena does.
+ */
+public class ByteLineReader implements AutoCloseable {
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private final ReadableByteChannel channel;
+    private byte[] buffer;
+    private int limit = 0;
+    private int next = 0;
+    private int scanned = 0;
+    private int start = 0;
+    private int length = 0;
+    private boolean eof = false;
+
+    public ByteLineReader(Path path, int bufferSize) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), bufferSize);
+    }
+
+    public ByteLineReader(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = new byte[Math.max(bufferSize, 1024)];
+    }
+
+    /**
+     * Moves to the next line.
+     *
+     * @return false if there is no more line
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            for (int i = scanned; i < limit; i++) {
+                if (buffer[i] == LF) {
+                    start = next;
+                    length = i > next && buffer[i - 1] == CR ? i - 1 - next : i - next;
+                    next = i + 1;
+                    scanned = next;
+                    return true;
+                }
+            }
+            scanned = limit;
+
+            if (eof) {
+                if (next == limit) {
+                    return false;
+                }
+                start = next;
+                length = limit - next;
+                next = limit;
+                return true;
+            }
+            fill();
+        }
+    }
+
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    private void fill() throws IOException {
+        int pending = limit - next;
+        if (next > 0) {
+            System.arraycopy(buffer, next, buffer, 0, pending);
+        } else if (pending == buffer.length) {
+            // a line longer than the buffer
+            byte[] larger = new byte[2 * buffer.length];
+            System.arraycopy(buffer, 0, larger, 0, pending);
+            buffer = larger;
+        }
+        scanned -= next;
+        next = 0;
+        limit = pending;
+
+        int count = channel.read(ByteBuffer.wrap(buffer, limit, buffer.length - limit));
+        if (count < 0) {
+            eof = true;
+        } else {
+            limit += count;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+
+        }
+    }
+}
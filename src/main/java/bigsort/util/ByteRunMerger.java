@@ -0,0 +1,96 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ByteRunMerger merges sorted runs of raw byte lines with the same LoserTree as
+ * LoserTreeSortedFileReader, comparing lines as unsigned byte slices. Merged
+ * lines are copied to the output channel without being decoded.
+ */
+public class ByteRunMerger {
+    private static final Metrics metrics = Metrics.global();
+    private ByteLineReader[] readers;
+
+    /**
+     * Merges given runs to channel, each line followed by the separator.
+     *
+     * @param runs
+     * @param bufferSize read buffer size of each run
+     * @param channel
+     * @param out
+     * @param separator
+     * @throws IOException
+     */
+    public void merge(List<Path> runs, int bufferSize, WritableByteChannel channel, ByteBuffer out, byte[] separator)
+            throws IOException {
+        this.readers = new ByteLineReader[runs.size()];
+        var tree = new LoserTree(runs.size(), this::compare);
+        boolean[] live = new boolean[runs.size()];
+
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                readers[i] = new ByteLineReader(runs.get(i), bufferSize);
+                live[i] = readers[i].next();
+            }
+            tree.build(run -> live[run]);
+
+            out.clear();
+            while (!tree.isEmpty()) {
+                int winner = tree.winner();
+                write(readers[winner], channel, out, separator);
+                tree.replay(readers[winner].next());
+            }
+            flush(channel, out);
+        } finally {
+            tree.flushComparisons();
+            for (var reader : readers) {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+        }
+    }
+
+    private int compare(int a, int b) {
+        ByteLineReader x = readers[a];
+        ByteLineReader y = readers[b];
+        return Arrays.compareUnsigned(x.buffer(), x.start(), x.start() + x.length(), y.buffer(), y.start(),
+                y.start() + y.length());
+    }
+
+    private static void write(ByteLineReader reader, WritableByteChannel channel, ByteBuffer out, byte[] separator)
+            throws IOException {
+        int length = reader.length();
+        if (out.remaining() < length + separator.length) {
+            flush(channel, out);
+        }
+
+        if (out.remaining() < length + separator.length) {
+            // longer than the out buffer
+            write(channel, ByteBuffer.wrap(reader.buffer(), reader.start(), length));
+            out.put(separator);
+            return;
+        }
+
+        out.put(reader.buffer(), reader.start(), length).put(separator);
+    }
+
+    private static void flush(WritableByteChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        write(channel, out);
+        out.clear();
+    }
+
+    private static void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        long start = System.nanoTime();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        metrics.writeWaited(System.nanoTime() - start);
+    }
+}
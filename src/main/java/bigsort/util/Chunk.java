@@ -0,0 +1,86 @@
+package bigsort.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Chunk is a buffer of lines owned by exactly one stage of SplitPipeline or
+ * AsyncOutputSink at a time. Its array grows on demand and is reused after the
+ * chunk is written, so only "lines" up to "size" are valid.
+ */
+public class Chunk {
+    private static final int INITIAL_CAPACITY = 1024;
+    private String[] lines;
+    private int size = 0;
+    private long bytes = 0;
+    private int id = -1;
+
+    Chunk(int maxLines) {
+        this.lines = new String[Math.min(maxLines, INITIAL_CAPACITY)];
+    }
+
+    public String[] lines() {
+        return lines;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+
+    /**
+     * A view of valid lines without copying them.
+     *
+     * @return List<String>
+     */
+    public List<String> asList() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return lines[index];
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Keeps the first size lines, i.e after duplicates are removed.
+     *
+     * @param size
+     */
+    public void truncate(int size) {
+        Arrays.fill(lines, size, this.size, null);
+        this.size = size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void add(String line, long lineBytes, int maxLines) {
+        if (size == lines.length) {
+            lines = Arrays.copyOf(lines, (int) Math.min(maxLines, 2L * size));
+        }
+        lines[size++] = line;
+        bytes += lineBytes;
+    }
+
+    void reset(int id) {
+        Arrays.fill(lines, 0, size, null);
+        this.size = 0;
+        this.bytes = 0;
+        this.id = id;
+    }
+}
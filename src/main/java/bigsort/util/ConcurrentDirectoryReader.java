@@ -0,0 +1,259 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import bigsort.util.api.FileReader;
+
+/**
+ * ConcurrentDirectoryReader reads the files of a directory, or any list of
+ * files, on several reader threads instead of one after another. Every reader hands batches of lines to
+ * a bounded queue, which is drained by the returned stream, so readers block
+ * when the split phase can't keep up. Lines of a file keep their order, but
+ * lines of different files are interleaved.
+ *
+ * Files smaller than SMALL_FILE_SIZE are coalesced into groups of about
+ * GROUP_SIZE bytes, which are read one after another by a single task, so they
+ * don't cost a task each. Every file is read by the wrapped FileReader, so
+ * malformed input fails the same way whatever the size of its file. Time the
+ * stream waits for the readers is added to the read wait of Metrics.
+ */
+public class ConcurrentDirectoryReader implements FileReader {
+    private static final long SMALL_FILE_SIZE = 64 * 1024;
+    private static final long GROUP_SIZE = 1024 * 1024;
+    private static final int BATCH_LINES = 4096;
+    private static final int BATCHES_PER_READER = 4;
+    private static final String[] END = new String[0];
+    private static final Metrics metrics = Metrics.global();
+    private final FileReader reader;
+    private final int readers;
+
+    public ConcurrentDirectoryReader(FileReader reader, int readers) {
+        this.reader = reader;
+        this.readers = Math.max(readers, 1);
+    }
+
+    @Override
+    public Stream<String> lines(Path filePath) throws IOException {
+        return reader.lines(filePath);
+    }
+
+    @Override
+    public Stream<String> lines(Path filePath, Charset charset) throws IOException {
+        return reader.lines(filePath, charset);
+    }
+
+    @Override
+    public Stream<String> lines(Path dirPath, String[] fileExtensions) throws IOException {
+        return lines(dirPath, fileExtensions, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Stream<String> lines(Path dirPath, String[] fileExtensions, Charset charset) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = files(dirPath, fileExtensions)) {
+            files = stream.collect(Collectors.toList());
+        }
+        return lines(files, charset);
+    }
+
+    @Override
+    public Stream<String> lines(List<Path> files, Charset charset) throws IOException {
+        var ingest = new Ingest(groupFiles(files), charset);
+        var spliterator = Spliterators.spliteratorUnknownSize(ingest, Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(ingest::close);
+    }
+
+    @Override
+    public Stream<Path> files(Path dirPath, String[] fileExtensions) throws IOException {
+        return reader.files(dirPath, fileExtensions);
+    }
+
+    /**
+     * Consecutive small files are put in the same group, every other file is a
+     * group on its own.
+     */
+    private List<List<Path>> groupFiles(List<Path> files) throws IOException {
+        List<List<Path>> groups = new ArrayList<>();
+        List<Path> small = new ArrayList<>();
+        long smallSize = 0;
+        for (Path file : files) {
+            long size = Files.size(file);
+            if (size >= SMALL_FILE_SIZE) {
+                groups.add(List.of(file));
+                continue;
+            }
+
+            small.add(file);
+            smallSize += size;
+            if (smallSize >= GROUP_SIZE) {
+                groups.add(small);
+                small = new ArrayList<>();
+                smallSize = 0;
+            }
+        }
+
+        if (!small.isEmpty()) {
+            groups.add(small);
+        }
+        return groups;
+    }
+
+    /**
+     * Runs the reader tasks and iterates over the lines they produce. The last
+     * task to finish puts END to the queue.
+     */
+    private class Ingest implements Iterator<String> {
+        private final ExecutorService pool;
+        private final BlockingQueue<String[]> queue;
+        private final AtomicInteger pending;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final Charset charset;
+        private String[] batch = new String[0];
+        private int index = 0;
+        private boolean ended = false;
+
+        Ingest(List<List<Path>> groups, Charset charset) {
+            this.charset = charset;
+            this.pending = new AtomicInteger(groups.size());
+            this.queue = new ArrayBlockingQueue<>(readers * BATCHES_PER_READER);
+            this.pool = Executors.newFixedThreadPool(readers, SplitPipeline.threadFactory("bigsort-reader"));
+            if (groups.isEmpty()) {
+                ended = true;
+            }
+            for (List<Path> group : groups) {
+                pool.execute(() -> read(group));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (index == batch.length) {
+                if (ended) {
+                    rethrowFailure();
+                    return false;
+                }
+                long start = System.nanoTime();
+                try {
+                    batch = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } finally {
+                    metrics.readWaited(System.nanoTime() - start);
+                }
+                index = 0;
+                ended = batch == END;
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = batch[index];
+            batch[index++] = null;
+            return line;
+        }
+
+        void close() {
+            pool.shutdownNow();
+        }
+
+        private void read(List<Path> group) {
+            var lines = new Batch();
+            try {
+                if (failure.get() != null) {
+                    return;
+                }
+
+                for (Path file : group) {
+                    try (Stream<String> stream = reader.lines(file, charset)) {
+                        Iterator<String> iterator = stream.iterator();
+                        while (iterator.hasNext()) {
+                            lines.add(iterator.next());
+                        }
+                    }
+                }
+                lines.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                end();
+            }
+        }
+
+        private void end() {
+            boolean last = pending.decrementAndGet() == 0;
+            if (last) {
+                pool.shutdown();
+            }
+            if (!last && failure.get() == null) {
+                return;
+            }
+
+            try {
+                queue.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void rethrowFailure() {
+            Throwable e = failure.get();
+            if (e == null) {
+                return;
+            }
+            if (e instanceof IOException) {
+                throw new UncheckedIOException((IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+
+        private class Batch {
+            private String[] lines = new String[BATCH_LINES];
+            private int size = 0;
+
+            void add(String line) throws InterruptedException {
+                lines[size++] = line;
+                if (size == lines.length) {
+                    flush();
+                }
+            }
+
+            void flush() throws InterruptedException {
+                if (size == 0) {
+                    return;
+                }
+                queue.put(size == lines.length ? lines : Arrays.copyOf(lines, size));
+                lines = new String[BATCH_LINES];
+                size = 0;
+            }
+        }
+    }
+}
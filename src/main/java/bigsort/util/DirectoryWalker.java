@@ -0,0 +1,135 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * DirectoryWalker lists a directory tree in parallel. Every directory is
+ * listed by its own fork/join task, so wide date/hour layouts are listed by
+ * all workers at once. Files are matched by glob patterns against their path
+ * relative to the root, i.e "**&#47;*.log" or "2020-01-*&#47;**". A leading
+ * "**&#47;" matches no directory too, so "**&#47;*.log" takes top level files
+ * as well, which a plain glob doesn't. A file is taken if it matches any
+ * include pattern and no exclude pattern, directories matching an exclude
+ * pattern are not entered at all.
+ *
+ * Size of every file is read along with the listing, so the total input size
+ * is known before splitting starts. Symbolic links are not followed.
+ */
+public class DirectoryWalker {
+    private static final String ANY_DIRS = "**/";
+    private final int parallelism;
+
+    public DirectoryWalker(int parallelism) {
+        this.parallelism = Math.max(parallelism, 1);
+    }
+
+    /**
+     * Returns matching files of the tree under root ordered by path.
+     *
+     * @param root
+     * @param includes glob patterns, every file is included if empty
+     * @param excludes glob patterns
+     * @return List<SourceFile>
+     * @throws IOException
+     */
+    public List<SourceFile> walk(Path root, String[] includes, String[] excludes) throws IOException {
+        FileSystem fileSystem = root.getFileSystem();
+        var filter = new Filter(matchers(fileSystem, includes), matchers(fileSystem, excludes));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<SourceFile> files = pool.invoke(new ListTask(root, root, filter));
+            files.sort(Comparator.comparing(SourceFile::getPath));
+            return files;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<PathMatcher> matchers(FileSystem fileSystem, String[] patterns) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String pattern : patterns) {
+            matchers.add(fileSystem.getPathMatcher("glob:" + pattern));
+            if (pattern.startsWith(ANY_DIRS)) {
+                matchers.add(fileSystem.getPathMatcher("glob:" + pattern.substring(ANY_DIRS.length())));
+            }
+        }
+        return matchers;
+    }
+
+    private static class Filter {
+        private final List<PathMatcher> includes;
+        private final List<PathMatcher> excludes;
+
+        Filter(List<PathMatcher> includes, List<PathMatcher> excludes) {
+            this.includes = includes;
+            this.excludes = excludes;
+        }
+
+        boolean isExcluded(Path relative) {
+            return excludes.stream().anyMatch(matcher -> matcher.matches(relative));
+        }
+
+        boolean isIncluded(Path relative) {
+            return includes.isEmpty() || includes.stream().anyMatch(matcher -> matcher.matches(relative));
+        }
+    }
+
+    private static class ListTask extends RecursiveTask<List<SourceFile>> {
+        private static final long serialVersionUID = 1L;
+        private final Path root;
+        private final Path dir;
+        private final transient Filter filter;
+
+        ListTask(Path root, Path dir, Filter filter) {
+            this.root = root;
+            this.dir = dir;
+            this.filter = filter;
+        }
+
+        @Override
+        protected List<SourceFile> compute() {
+            List<SourceFile> files = new ArrayList<>();
+            List<ListTask> subtasks = new ArrayList<>();
+
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    var attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    Path relative = root.relativize(entry);
+                    if (filter.isExcluded(relative)) {
+                        continue;
+                    }
+
+                    if (attributes.isDirectory()) {
+                        var subtask = new ListTask(root, entry, filter);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    } else if (attributes.isRegularFile() && filter.isIncluded(relative)) {
+                        files.add(new SourceFile(entry, attributes.size()));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            for (ListTask subtask : subtasks) {
+                files.addAll(subtask.join());
+            }
+            return files;
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package bigsort.util;
 
+import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -15,6 +20,7 @@ import bigsort.util.api.FileReader;
  * A wrapper of java.nio.file.Files
  */
 public class FastFileReader implements FileReader {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
 
     @Override
     public Stream<String> lines(Path filePath) throws IOException {
@@ -67,10 +73,22 @@ public class FastFileReader implements FileReader {
             return false;
         };
 
-        return Files.list(dirPath).filter(Files::isRegularFile).filter(hasExtentionMatch);
+        return Files.list(dirPath).filter(Files::isRegularFile).filter(hasExtentionMatch).sorted();
     }
 
-    private Stream<String> readLines(Path path, Charset charset) throws IOException {
-        return Files.lines(path, charset);
+    /**
+     * Reads lines like Files.lines does, through a MeteredChannel, so the bytes
+     * read and the time the reads block are added to Metrics.
+     */
+    protected Stream<String> readLines(Path path, Charset charset) throws IOException {
+        var channel = new MeteredChannel(FileChannel.open(path, StandardOpenOption.READ));
+        var reader = new BufferedReader(Channels.newReader(channel, charset.newDecoder(), -1), READ_BUFFER_SIZE);
+        return reader.lines().onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 }
\ No newline at end of file
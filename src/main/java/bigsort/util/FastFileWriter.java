@@ -41,4 +41,9 @@ public class FastFileWriter implements FileWriter {
     public Path createTempDirectory(Path dir, String prefix, FileAttribute<?>... attrs) throws IOException {
         return Files.createTempDirectory(dir, prefix, attrs);
     }
+
+    @Override
+    public void delete(Path path) throws IOException {
+        Files.deleteIfExists(path);
+    }
 }
\ No newline at end of file
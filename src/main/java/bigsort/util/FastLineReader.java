@@ -2,6 +2,8 @@ package bigsort.util;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
@@ -13,7 +15,9 @@ import bigsort.util.api.LineReader;
  */
 public class FastLineReader implements LineReader {
     private BufferedReader reader = null;
-    private Optional<String> line = null;
+    private String line = null;
+    private boolean started = false;
+    private static final int MIN_BUFFER_SIZE = 8192;
 
     public FastLineReader() {
 
@@ -23,19 +27,40 @@ public class FastLineReader implements LineReader {
         this.reader = Files.newBufferedReader(path);
     }
 
+    /**
+     * Half of bufferSize is used to read bytes from the file and the other half
+     * to keep decoded chars.
+     */
+    public FastLineReader(Path path, int bufferSize) throws IOException {
+        int size = Math.max(bufferSize / 2, MIN_BUFFER_SIZE);
+        var decoder = StandardCharsets.UTF_8.newDecoder();
+        this.reader = new BufferedReader(Channels.newReader(Files.newByteChannel(path), decoder, size), size / 2);
+    }
+
     @Override
     public LineReader create(Path path) throws IOException {
         return new FastLineReader(path);
     }
 
+    @Override
+    public LineReader create(Path path, int bufferSize) throws IOException {
+        return new FastLineReader(path, bufferSize);
+    }
+
     @Override
     public synchronized Optional<String> line() throws IOException {
-        return line != null ? line : next();
+        return started ? Optional.ofNullable(line) : next();
     }
 
     @Override
     public Optional<String> next() throws IOException {
-        line = Optional.ofNullable(reader.readLine());
+        return Optional.ofNullable(nextLine());
+    }
+
+    @Override
+    public String nextLine() throws IOException {
+        line = reader.readLine();
+        started = true;
         return line;
     }
 
@@ -27,13 +27,13 @@ public class FastSortedFileReader implements SortedFileReader {
     private Line minLine = null;
 
     /**
-     * This comparator is used to sort 2 line
+     * This comparator is used to sort 2 line, prefixes are compared first
      */
     private static final Comparator<Line> comparator = (l1, l2) -> {
         if (l1.value().isEmpty() || l2.value().isEmpty()) {
             return 0;
         }
-        return l1.value().get().compareTo(l2.value().get());
+        return KeyPrefix.compare(l1.prefix(), l1.value().get(), l2.prefix(), l2.value().get());
     };
 
     public FastSortedFileReader(LineReader lineReader) {
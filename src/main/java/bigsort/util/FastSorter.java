@@ -14,4 +14,9 @@ public class FastSorter implements Sorter {
     public void sort(String[] data) {
         Arrays.sort(data);
     }
+
+    @Override
+    public void sort(String[] data, int fromIndex, int toIndex) {
+        Arrays.sort(data, fromIndex, toIndex);
+    }
 }
\ No newline at end of file
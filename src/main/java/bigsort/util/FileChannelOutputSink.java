@@ -0,0 +1,123 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import bigsort.util.api.OutputSink;
+
+/**
+ * FileChannelOutputSink copies UTF-8 bytes of lines into a large direct buffer
+ * and writes it to a single FileChannel whenever it gets full. Output is
+ * written to a temporary file next to the destination, commit() forces it to
+ * the disk and renames it to the destination, so a failed sort never leaves a
+ * partial output behind.
+ */
+public class FileChannelOutputSink implements OutputSink {
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+    private static final String TEMP_SUFFIX = ".part";
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final Metrics metrics = Metrics.global();
+    private Path path;
+    private Path tempPath;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private boolean committed = false;
+
+    public FileChannelOutputSink() {
+
+    }
+
+    public FileChannelOutputSink(Path path, int bufferSize) throws IOException {
+        this.path = path;
+        this.tempPath = tempPath(path);
+        this.channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, MIN_BUFFER_SIZE));
+    }
+
+    @Override
+    public OutputSink create(Path path, int bufferSize) throws IOException {
+        return new FileChannelOutputSink(path, bufferSize);
+    }
+
+    @Override
+    public void write(String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < bytes.length + LINE_SEPARATOR.length) {
+            flush();
+        }
+
+        if (buffer.remaining() < bytes.length + LINE_SEPARATOR.length) {
+            // longer than the buffer
+            write(ByteBuffer.wrap(bytes));
+            buffer.put(LINE_SEPARATOR);
+            return;
+        }
+        buffer.put(bytes).put(LINE_SEPARATOR);
+    }
+
+    @Override
+    public void commit() throws IOException {
+        flush();
+        channel.force(false);
+        channel.close();
+        move(tempPath, path);
+        committed = true;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+            if (!committed) {
+                Files.deleteIfExists(tempPath);
+            }
+        } catch (IOException e) {
+
+        }
+    }
+
+    /**
+     * Returns the sibling of path that output is written to before it's moved
+     * to path.
+     */
+    public static Path tempPath(Path path) {
+        return path.resolveSibling(path.getFileName().toString() + TEMP_SUFFIX);
+    }
+
+    /**
+     * Renames the temporary file atomically if the file system supports it. An
+     * existing file at path, i.e the output merged by an incremental sort, is
+     * replaced.
+     */
+    public static void move(Path tempPath, Path path) throws IOException {
+        try {
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        long start = System.nanoTime();
+        int count = bytes.remaining();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        metrics.writeWaited(System.nanoTime() - start);
+        metrics.outputWritten(count);
+    }
+}
@@ -0,0 +1,221 @@
+package bigsort.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import bigsort.util.api.FileReader;
+
+/**
+ * InputSegment is a unit of checkpointed split work, a list of byte ranges of
+ * input files which are split together. Small files are grouped into one
+ * segment and large files are cut into several segments right after a '\n',
+ * so every segment holds whole lines only.
+ *
+ * Segments made of whole files are read by the FileReader, ranges of a file
+ * are read by a BufferedReader limited to the range.
+ */
+public class InputSegment {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private final List<Range> ranges = new ArrayList<>();
+
+    public List<Range> getRanges() {
+        return ranges;
+    }
+
+    public void add(Range range) {
+        ranges.add(range);
+    }
+
+    /**
+     * Cuts files into segments of about segmentSize bytes.
+     *
+     * @param files
+     * @param segmentSize
+     * @return List<InputSegment>
+     * @throws IOException
+     */
+    public static List<InputSegment> plan(List<SourceFile> files, long segmentSize) throws IOException {
+        List<InputSegment> segments = new ArrayList<>();
+        InputSegment current = new InputSegment();
+        long currentSize = 0;
+        for (SourceFile file : files) {
+            long size = file.getSize();
+            long start = 0;
+            do {
+                // a segment always has room left, it's added once it's full
+                long room = segmentSize - currentSize;
+                long end = size - start > room ? nextLineStart(file.getPath(), start + room - 1, size) : size;
+                current.add(new Range(file.getPath(), start, end, start == 0 && end == size));
+                currentSize += end - start;
+                if (currentSize >= segmentSize) {
+                    segments.add(current);
+                    current = new InputSegment();
+                    currentSize = 0;
+                }
+                start = end;
+            } while (start < size);
+        }
+
+        if (!current.ranges.isEmpty()) {
+            segments.add(current);
+        }
+        return segments;
+    }
+
+    /**
+     * Lines of every range in order, whole files are read together by reader.
+     *
+     * @param reader
+     * @param charset
+     * @return Stream<String>
+     * @throws IOException
+     */
+    public Stream<String> lines(FileReader reader, Charset charset) throws IOException {
+        List<Path> wholeFiles = new ArrayList<>();
+        List<Range> partial = new ArrayList<>();
+        for (Range range : ranges) {
+            if (range.isWhole()) {
+                wholeFiles.add(range.getPath());
+            } else {
+                partial.add(range);
+            }
+        }
+
+        Stream<String> stream = wholeFiles.isEmpty() ? Stream.empty() : reader.lines(wholeFiles, charset);
+        for (Range range : partial) {
+            stream = Stream.concat(stream, Stream.of(range).flatMap(r -> {
+                try {
+                    return r.lines(charset);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        return stream;
+    }
+
+    /**
+     * Returns the position right after the first '\n' at or after from, or size.
+     */
+    private static long nextLineStart(Path path, long from, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long offset = from;
+            while (offset < size) {
+                buffer.clear();
+                int count = channel.read(buffer, offset);
+                if (count < 0) {
+                    break;
+                }
+                for (int i = 0; i < count; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return Math.min(offset + i + 1, size);
+                    }
+                }
+                offset += count;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Range is [start, end) of a file, whole means the range is the file.
+     */
+    public static class Range {
+        private final Path path;
+        private final long start;
+        private final long end;
+        private final boolean whole;
+
+        public Range(Path path, long start, long end, boolean whole) {
+            this.path = path;
+            this.start = start;
+            this.end = end;
+            this.whole = whole;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public boolean isWhole() {
+            return whole;
+        }
+
+        Stream<String> lines(Charset charset) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            channel.position(start);
+            var limited = new MeteredChannel(new LimitedChannel(channel, end));
+            var reader = new BufferedReader(Channels.newReader(limited, charset.newDecoder(), -1),
+                    READ_BUFFER_SIZE);
+            return reader.lines().onClose(() -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads a FileChannel up to end only.
+     */
+    private static class LimitedChannel implements ReadableByteChannel {
+        private final FileChannel channel;
+        private final long end;
+
+        LimitedChannel(FileChannel channel, long end) {
+            this.channel = channel;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            long left = end - channel.position();
+            if (left <= 0) {
+                return -1;
+            }
+            if (dst.remaining() <= left) {
+                return channel.read(dst);
+            }
+
+            ByteBuffer slice = dst.duplicate();
+            slice.limit(slice.position() + (int) left);
+            int count = channel.read(slice);
+            if (count > 0) {
+                dst.position(dst.position() + count);
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
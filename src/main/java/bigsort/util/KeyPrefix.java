@@ -0,0 +1,33 @@
+package bigsort.util;
+
+/**
+ * KeyPrefix packs the first four chars of a line into a long, first char in
+ * the highest 16 bits and missing chars as 0. Compared as unsigned longs,
+ * prefixes keep the order of String.compareTo(), so two lines only need a full
+ * comparison when their prefixes are equal. Lines which differ in the first
+ * four chars are ordered by a single long comparison without touching their
+ * char arrays.
+ */
+public final class KeyPrefix {
+    private static final int CHARS = Long.SIZE / Character.SIZE;
+
+    private KeyPrefix() {
+    }
+
+    public static long of(String line) {
+        long prefix = 0;
+        int length = Math.min(line.length(), CHARS);
+        for (int i = 0; i < length; i++) {
+            prefix |= (long) line.charAt(i) << (Character.SIZE * (CHARS - 1 - i));
+        }
+        return prefix;
+    }
+
+    /**
+     * Compares prefixes first and the lines only on a tie.
+     */
+    public static int compare(long prefixA, String a, long prefixB, String b) {
+        int result = Long.compareUnsigned(prefixA, prefixB);
+        return result != 0 ? result : a.compareTo(b);
+    }
+}
@@ -0,0 +1,203 @@
+package bigsort.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * KeySpec orders lines by one or more delimited fields instead of the whole
+ * line, like "sort -t, -k3nr -k1". Fields are numbered from 1, every key field
+ * is compared either as a string or as a number and either ascending or
+ * descending. Lines with equal keys are ordered by the whole line.
+ *
+ * Keys are parsed once per line by key() and kept in a Key next to the line,
+ * so comparisons never split or parse a line again. A missing field is an
+ * empty string, and a field which is not a number sorts before all numbers.
+ */
+public class KeySpec implements Comparator<KeySpec.Key> {
+    public static final int MAX_FIELD = 4096;
+    private final char delimiter;
+    private final int[] fields;
+    private final boolean[] numeric;
+    private final boolean[] reverse;
+    private final int maxField;
+    private final int numericFields;
+
+    private KeySpec(char delimiter, int[] fields, boolean[] numeric, boolean[] reverse) {
+        this.delimiter = delimiter;
+        this.fields = fields;
+        this.numeric = numeric;
+        this.reverse = reverse;
+
+        int max = 0;
+        int count = 0;
+        for (int i = 0; i < fields.length; i++) {
+            max = Math.max(max, fields[i]);
+            count += numeric[i] ? 1 : 0;
+        }
+        this.maxField = max;
+        this.numericFields = count;
+    }
+
+    /**
+     * Parses comma separated key fields like "3nr,1". Every key field is a field
+     * number optionally followed by "n" for numeric and "r" for reverse order.
+     *
+     * @param spec
+     * @param delimiter
+     * @return KeySpec
+     * @throws IllegalArgumentException if spec is not valid
+     */
+    public static KeySpec parse(String spec, char delimiter) {
+        List<String> keys = new ArrayList<>();
+        for (String key : spec.split(",")) {
+            if (!key.trim().isEmpty()) {
+                keys.add(key.trim());
+            }
+        }
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("key must have at least one field.");
+        }
+
+        int[] fields = new int[keys.size()];
+        boolean[] numeric = new boolean[keys.size()];
+        boolean[] reverse = new boolean[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            int end = 0;
+            while (end < key.length() && Character.isDigit(key.charAt(end))) {
+                end++;
+            }
+
+            if (end == 0) {
+                throw new IllegalArgumentException(String.format("key field \"%s\" must start with a number.", key));
+            }
+            // digits beyond the limit are rejected before they can overflow
+            String number = key.substring(0, end).replaceFirst("^0+(?=.)", "");
+            if (number.length() > String.valueOf(MAX_FIELD).length() || Integer.parseInt(number) > MAX_FIELD) {
+                throw new IllegalArgumentException(
+                        String.format("key field \"%s\" is too large, field numbers go up to %d.", key, MAX_FIELD));
+            }
+            fields[i] = Integer.parseInt(number) - 1;
+            if (fields[i] < 0) {
+                throw new IllegalArgumentException("key field numbers start at 1.");
+            }
+
+            for (char option : key.substring(end).toCharArray()) {
+                if (option == 'n') {
+                    numeric[i] = true;
+                } else if (option == 'r') {
+                    reverse[i] = true;
+                } else {
+                    throw new IllegalArgumentException(
+                            String.format("key field \"%s\" has unknown option '%c'.", key, option));
+                }
+            }
+        }
+
+        return new KeySpec(delimiter, fields, numeric, reverse);
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * Splits the line once and parses every key field. The scan stops after the
+     * last key field, only the key fields are kept.
+     *
+     * @param line
+     * @return Key
+     */
+    public Key key(String line) {
+        String[] strings = new String[fields.length];
+        double[] numbers = numericFields > 0 ? new double[fields.length] : null;
+        int field = 0;
+        int start = 0;
+        int length = line.length();
+        for (int i = 0; i <= length && field <= maxField; i++) {
+            if (i == length || line.charAt(i) == delimiter) {
+                for (int k = 0; k < fields.length; k++) {
+                    if (fields[k] == field) {
+                        parseField(line, start, i, k, strings, numbers);
+                    }
+                }
+                field++;
+                start = i + 1;
+            }
+        }
+        // fields after the last one are missing, they are empty at the line end
+        for (int k = 0; k < fields.length; k++) {
+            if (fields[k] >= field) {
+                parseField(line, length, length, k, strings, numbers);
+            }
+        }
+        return new Key(line, strings, numbers);
+    }
+
+    private void parseField(String line, int from, int to, int k, String[] strings, double[] numbers) {
+        if (numeric[k]) {
+            numbers[k] = parseNumber(line, from, to);
+        } else {
+            strings[k] = line.substring(from, to);
+        }
+    }
+
+    /**
+     * Compares keys field by field, the whole lines break ties.
+     */
+    @Override
+    public int compare(Key a, Key b) {
+        for (int i = 0; i < fields.length; i++) {
+            int result = numeric[i] ? Double.compare(a.numbers[i], b.numbers[i])
+                    : a.strings[i].compareTo(b.strings[i]);
+            if (result != 0) {
+                return reverse[i] ? -result : result;
+            }
+        }
+        return a.line.compareTo(b.line);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            builder.append(i > 0 ? "," : "").append(fields[i] + 1).append(numeric[i] ? "n" : "")
+                    .append(reverse[i] ? "r" : "");
+        }
+        String separator = delimiter == '\t' ? "tab" : String.valueOf(delimiter);
+        return builder.append(" (delimiter: ").append(separator).append(")").toString();
+    }
+
+    private static double parseNumber(String line, int from, int to) {
+        String value = line.substring(from, to).trim();
+        if (value.isEmpty()) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Key is a line with its parsed key fields. Only one of strings[i] and
+     * numbers[i] is used for a key field.
+     */
+    public static final class Key {
+        private final String line;
+        private final String[] strings;
+        private final double[] numbers;
+
+        private Key(String line, String[] strings, double[] numbers) {
+            this.line = line;
+            this.strings = strings;
+            this.numbers = numbers;
+        }
+
+        public String line() {
+            return line;
+        }
+    }
+}
@@ -4,21 +4,28 @@ import java.util.Optional;
 
 /**
  * This class is used by FastSortedFileReader to track which line has been read
- * out form the Priority Queue.
+ * out form the Priority Queue. The KeyPrefix of the value is computed once,
+ * so the queue compares it before the strings.
  */
 class Line {
     private int fileNo;
     private Optional<String> value;
+    private long prefix;
 
     public Line(int fileNo, Optional<String> value) {
         this.fileNo = fileNo;
         this.value = value;
+        this.prefix = value.isPresent() ? KeyPrefix.of(value.get()) : 0;
     }
 
     public int fileNo() {
         return this.fileNo;
     }
 
+    public long prefix() {
+        return this.prefix;
+    }
+
     public Optional<String> value() {
         return this.value;
     }
@@ -0,0 +1,138 @@
+package bigsort.util;
+
+import java.util.function.IntPredicate;
+
+/**
+ * LoserTree is the tournament tree of the run merges. Every internal node of
+ * the tree keeps the index of the run which lost the match at that node and
+ * tree[0] keeps the overall winner. After the winner's head is taken, only the
+ * path from its leaf to the root is replayed, so getting the next winner costs
+ * about log2(runs) comparisons and no allocation.
+ *
+ * The tree only knows run indexes, the merge keeps the head of every run and
+ * compares two runs by their heads. Exhausted runs lose against everything,
+ * ties are broken by run index to keep the merge stable. Comparisons are
+ * counted in a field and added to Metrics in bulk.
+ */
+final class LoserTree {
+    private static final long FLUSH_COMPARISONS = 1 << 20;
+    private static final Metrics metrics = Metrics.global();
+    private final int size;
+    private final RunComparator comparator;
+    private final int[] tree;
+    private final boolean[] live;
+    private int liveRuns;
+    private long comparisons;
+
+    /**
+     * @param size       number of runs
+     * @param comparator compares the heads of two live runs
+     */
+    LoserTree(int size, RunComparator comparator) {
+        this.size = size;
+        this.comparator = comparator;
+        this.tree = new int[Math.max(size, 1)];
+        this.live = new boolean[size];
+    }
+
+    /**
+     * Builds the tree bottom-up once the head of every run is read. Leaf of run
+     * i is the node (size + i), internal nodes are 1..size-1.
+     *
+     * @param isLive tells if a run has a head
+     */
+    void build(IntPredicate isLive) {
+        liveRuns = 0;
+        for (int run = 0; run < size; run++) {
+            live[run] = isLive.test(run);
+            liveRuns += live[run] ? 1 : 0;
+        }
+
+        if (size > 0) {
+            tree[0] = build(1);
+        }
+    }
+
+    boolean isEmpty() {
+        return liveRuns == 0;
+    }
+
+    /**
+     * Run of the smallest head.
+     */
+    int winner() {
+        return tree[0];
+    }
+
+    /**
+     * Replays the tree after the winner's head is replaced by its next one.
+     *
+     * @param isLive false if the winner's run is exhausted
+     */
+    void replay(boolean isLive) {
+        int winner = tree[0];
+        if (!isLive) {
+            live[winner] = false;
+            liveRuns--;
+        }
+
+        // walk from the leaf to the root, at every node the loser stays and the
+        // winner moves up
+        for (int node = (winner + size) >> 1; node > 0; node >>= 1) {
+            int loser = tree[node];
+            if (wins(loser, winner)) {
+                tree[node] = winner;
+                winner = loser;
+            }
+        }
+        tree[0] = winner;
+
+        if (comparisons >= FLUSH_COMPARISONS) {
+            flushComparisons();
+        }
+    }
+
+    void flushComparisons() {
+        metrics.compared(comparisons);
+        comparisons = 0;
+    }
+
+    /**
+     * Returns the winner of the subtree rooted at node.
+     */
+    private int build(int node) {
+        if (node >= size) {
+            return node - size;
+        }
+
+        int left = build(2 * node);
+        int right = build(2 * node + 1);
+        if (wins(left, right)) {
+            tree[node] = right;
+            return left;
+        }
+        tree[node] = left;
+        return right;
+    }
+
+    private boolean wins(int a, int b) {
+        if (!live[a]) {
+            return false;
+        }
+        if (!live[b]) {
+            return true;
+        }
+
+        comparisons++;
+        int result = comparator.compare(a, b);
+        return result < 0 || (result == 0 && a < b);
+    }
+
+    /**
+     * Compares the heads of two live runs by their indexes.
+     */
+    @FunctionalInterface
+    interface RunComparator {
+        int compare(int a, int b);
+    }
+}
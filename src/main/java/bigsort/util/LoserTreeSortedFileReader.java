@@ -0,0 +1,194 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import bigsort.util.api.LineReader;
+import bigsort.util.api.SortedFileReader;
+
+/**
+ * LoserTreeSortedFileReader merges sorted files using a tournament (loser)
+ * tree, see LoserTree. After the winner line is read out, only the path from
+ * its leaf to the root is replayed, so getting next line costs about
+ * log2(files) comparisons and no allocation.
+ *
+ * Every head line carries its KeyPrefix, so a match compares two longs and
+ * only looks at the strings when the first four chars are equal.
+ *
+ * With a KeySpec the key of every head line is parsed once when the line is
+ * read and kept next to it, so the replays compare cached keys. Keys of text
+ * runs are taken from their TextRunReader, which parses them for its order
+ * check.
+ *
+ * This reader is not thread-safe, it's meant to be consumed by a single merge
+ * thread.
+ */
+public class LoserTreeSortedFileReader implements SortedFileReader {
+    private final LineReader lineReader;
+    private final KeySpec keySpec;
+    private LineReader[] readers = new LineReader[0];
+    private String[] heads;
+    private long[] prefixes;
+    private KeySpec.Key[] keys;
+    private LoserTree tree = new LoserTree(0, this::compare);
+
+    public LoserTreeSortedFileReader(LineReader lineReader) {
+        this(lineReader, null);
+    }
+
+    /**
+     * @param lineReader
+     * @param keySpec    order of the sorted files, null means whole lines
+     */
+    public LoserTreeSortedFileReader(LineReader lineReader, KeySpec keySpec) {
+        this.lineReader = lineReader;
+        this.keySpec = keySpec;
+    }
+
+    /**
+     * All files are merged in a single tree, so batchSize doesn't restrict the
+     * fan-in here.
+     */
+    @Override
+    public void initialize(List<Path> files, int batchSize) throws IOException {
+        initialize(files, batchSize, 0);
+    }
+
+    /**
+     * bufferSize <= 0 means LineReaders will use their default buffer.
+     */
+    @Override
+    public void initialize(List<Path> files, int batchSize, int bufferSize) throws IOException {
+        List<LineReader> fileReaders = new ArrayList<>(files.size());
+        try {
+            for (Path file : files) {
+                fileReaders.add(bufferSize > 0 ? lineReader.create(file, bufferSize) : lineReader.create(file));
+            }
+        } catch (IOException e) {
+            fileReaders.forEach(LineReader::close);
+            throw e;
+        }
+        open(fileReaders);
+    }
+
+    /**
+     * Merges lines of readers which are opened already, i.e readers limited to a
+     * range of their files. Readers are closed by close().
+     *
+     * @param fileReaders
+     * @throws IOException
+     */
+    public void open(List<LineReader> fileReaders) throws IOException {
+        int size = fileReaders.size();
+        this.readers = fileReaders.toArray(new LineReader[0]);
+        this.heads = new String[size];
+        this.prefixes = new long[size];
+        this.keys = new KeySpec.Key[size];
+        this.tree.flushComparisons();
+        this.tree = new LoserTree(size, this::compare);
+
+        for (int i = 0; i < size; i++) {
+            heads[i] = readers[i].nextLine();
+            cacheKey(i);
+        }
+        tree.build(run -> heads[run] != null);
+    }
+
+    @Override
+    public Optional<String> readNextSortedLine() throws IOException {
+        return Optional.ofNullable(nextLine());
+    }
+
+    /**
+     * Returns the winner line and replays the tree with the next line of winner's
+     * file. Returns null when all files are exhausted.
+     *
+     * @return String or null
+     * @throws IOException
+     */
+    private String nextLine() throws IOException {
+        if (tree.isEmpty()) {
+            return null;
+        }
+
+        int winner = tree.winner();
+        String line = heads[winner];
+        heads[winner] = readers[winner].nextLine();
+        cacheKey(winner);
+        tree.replay(heads[winner] != null);
+        return line;
+    }
+
+    @Override
+    public Stream<String> readAllSortedLines() {
+        Spliterator<String> spliterator = new Spliterator<String>() {
+            @Override
+            public boolean tryAdvance(Consumer<? super String> action) {
+                String value;
+                try {
+                    value = nextLine();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                if (value == null) {
+                    return false;
+                }
+                action.accept(value);
+                return true;
+            }
+
+            @Override
+            public Spliterator<String> trySplit() {
+                return null;
+            }
+
+            @Override
+            public long estimateSize() {
+                return Long.MAX_VALUE;
+            }
+
+            @Override
+            public int characteristics() {
+                return Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.ORDERED;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    private int compare(int a, int b) {
+        return keySpec == null ? KeyPrefix.compare(prefixes[a], heads[a], prefixes[b], heads[b])
+                : keySpec.compare(keys[a], keys[b]);
+    }
+
+    private void cacheKey(int run) {
+        String line = heads[run];
+        if (line == null) {
+            keys[run] = null;
+        } else if (keySpec == null) {
+            prefixes[run] = KeyPrefix.of(line);
+        } else if (readers[run] instanceof TextRunReader) {
+            keys[run] = ((TextRunReader) readers[run]).key(keySpec, line);
+        } else {
+            keys[run] = keySpec.key(line);
+        }
+    }
+
+    @Override
+    public void close() {
+        tree.flushComparisons();
+        for (var reader : readers) {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+        readers = new LineReader[0];
+    }
+}
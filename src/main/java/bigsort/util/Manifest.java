@@ -0,0 +1,391 @@
+package bigsort.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manifest is the checkpoint of a sort inside its work directory. It records
+ * the options and input files of the sort, the input segments to split, the
+ * runs written for every split segment and every intermediate merge, so an
+ * interrupted sort can continue from the last checkpoint.
+ *
+ * The manifest is an append-only text file of tab separated records. A record
+ * is appended only after the runs it refers to are forced to disk, and the
+ * manifest is forced after every record. A record torn by a crash has no line
+ * end, it's dropped when the manifest is loaded. Runs are verified by their
+ * recorded size.
+ *
+ * <pre>
+ * bigsort-manifest 1
+ * options  key=3nr,1 ...
+ * input    size  lastModified  path
+ * range    segment  start  end  whole  path
+ * split    segment  [run  size]*
+ * merge    mergeId  output  size  [input]*
+ * </pre>
+ */
+public class Manifest implements Closeable {
+    public static final String FILE_NAME = "bigsort.manifest";
+    private static final String HEADER = "bigsort-manifest";
+    private static final String VERSION = "1";
+    private final Path workDir;
+    private final FileChannel channel;
+    private String options = "";
+    private final List<String> inputs = new ArrayList<>();
+    private final Map<Integer, InputSegment> segments = new LinkedHashMap<>();
+    private final Map<Integer, Map<String, Long>> splits = new HashMap<>();
+    private final List<Merge> merges = new ArrayList<>();
+
+    private Manifest(Path workDir, FileChannel channel) {
+        this.workDir = workDir;
+        this.channel = channel;
+    }
+
+    /**
+     * Creates a new manifest in workDir for the input files split in the given
+     * segments.
+     *
+     * @param workDir
+     * @param options  describes the options which change the content of runs
+     * @param files
+     * @param segments
+     * @return Manifest
+     * @throws IOException
+     */
+    public static Manifest create(Path workDir, String options, List<Path> files, List<InputSegment> segments)
+            throws IOException {
+        FileChannel channel = FileChannel.open(workDir.resolve(FILE_NAME), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        var manifest = new Manifest(workDir, channel);
+        manifest.options = options;
+
+        StringBuilder records = new StringBuilder();
+        records.append(record(HEADER, VERSION));
+        records.append(record("options", options));
+        for (Path file : files) {
+            String input = input(file);
+            manifest.inputs.add(input);
+            records.append(record("input", input));
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            manifest.segments.put(i, segments.get(i));
+            for (InputSegment.Range range : segments.get(i).getRanges()) {
+                records.append(record("range", i, range.getStart(), range.getEnd(), range.isWhole() ? 1 : 0,
+                        range.getPath().toAbsolutePath()));
+            }
+        }
+        manifest.append(records.toString());
+        return manifest;
+    }
+
+    /**
+     * Loads the manifest of workDir, a torn last record is dropped and cut off
+     * the file.
+     *
+     * @param workDir
+     * @return Manifest
+     * @throws IOException if workDir has no valid manifest
+     */
+    public static Manifest load(Path workDir) throws IOException {
+        Path path = workDir.resolve(FILE_NAME);
+        byte[] bytes = Files.readAllBytes(path);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        var manifest = new Manifest(workDir, channel);
+        try {
+            channel.truncate(end);
+            manifest.parse(new String(bytes, 0, end, StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return manifest;
+    }
+
+    public static boolean exists(Path workDir) {
+        return Files.isRegularFile(workDir.resolve(FILE_NAME));
+    }
+
+    public String getOptions() {
+        return options;
+    }
+
+    /**
+     * Input segments in split order.
+     */
+    public List<InputSegment> getSegments() {
+        return new ArrayList<>(segments.values());
+    }
+
+    /**
+     * Tells if files are the same files, with the same sizes and modification
+     * times, which were recorded by create().
+     *
+     * @param files
+     * @return boolean
+     * @throws IOException
+     */
+    public boolean sameInputs(List<Path> files) throws IOException {
+        if (files.size() != inputs.size()) {
+            return false;
+        }
+        for (int i = 0; i < files.size(); i++) {
+            if (!inputs.get(i).equals(input(files.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A segment is done if its split record exists and every run of it is
+     * either merged already or still has its recorded size. A segment with a
+     * lost run can only be split again if none of its runs is merged.
+     *
+     * @param segment
+     * @return boolean
+     * @throws IOException if a lost run belongs to a partly merged segment
+     */
+    public boolean isDone(int segment) throws IOException {
+        Map<String, Long> runs = splits.get(segment);
+        if (runs == null) {
+            return false;
+        }
+        List<String> merged = new ArrayList<>();
+        merges.forEach(merge -> merged.addAll(merge.getInputs()));
+
+        String lost = null;
+        boolean partlyMerged = false;
+        for (Map.Entry<String, Long> run : runs.entrySet()) {
+            if (merged.contains(run.getKey())) {
+                partlyMerged = true;
+            } else if (!verify(run.getKey(), run.getValue())) {
+                lost = run.getKey();
+            }
+        }
+
+        if (lost != null && partlyMerged) {
+            throw new IOException(String.format("Run %s of a merged segment is missing or changed", lost));
+        }
+        return lost == null;
+    }
+
+    /**
+     * Runs recorded for a segment.
+     *
+     * @param segment
+     * @return List<Path>
+     */
+    public List<Path> getSplitRuns(int segment) {
+        List<Path> runs = new ArrayList<>();
+        for (String name : splits.getOrDefault(segment, Map.of()).keySet()) {
+            runs.add(workDir.resolve(name));
+        }
+        return runs;
+    }
+
+    /**
+     * Records the runs of a split segment, runs are forced to disk first.
+     *
+     * @param segment
+     * @param runs    files inside workDir
+     * @throws IOException
+     */
+    public void segmentDone(int segment, List<Path> runs) throws IOException {
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        List<Object> fields = new ArrayList<>();
+        fields.add(segment);
+        for (Path run : runs) {
+            long size = force(run);
+            String name = run.getFileName().toString();
+            sizes.put(name, size);
+            fields.add(name);
+            fields.add(size);
+        }
+        append(record("split", fields.toArray()));
+        splits.put(segment, sizes);
+    }
+
+    /**
+     * Records an intermediate merge of inputs to output, output is forced to
+     * disk first. Inputs may be deleted once this returns.
+     *
+     * @param mergeId
+     * @param inputs
+     * @param output  file inside workDir
+     * @throws IOException
+     */
+    public void merged(int mergeId, List<Path> inputs, Path output) throws IOException {
+        long size = force(output);
+        List<Object> fields = new ArrayList<>();
+        fields.add(mergeId);
+        fields.add(output.getFileName());
+        fields.add(size);
+        List<String> names = new ArrayList<>();
+        for (Path input : inputs) {
+            names.add(input.getFileName().toString());
+            fields.add(input.getFileName());
+        }
+        append(record("merge", fields.toArray()));
+        merges.add(new Merge(mergeId, output.getFileName().toString(), size, names));
+    }
+
+    /**
+     * Intermediate merges in the order they were done.
+     */
+    public List<Merge> getMerges() {
+        return merges;
+    }
+
+    /**
+     * Every run referred to by the manifest which isn't consumed by a merge
+     * yet, by file name.
+     */
+    public List<String> getLiveRuns() {
+        List<String> runs = new ArrayList<>();
+        for (int segment : segments.keySet()) {
+            runs.addAll(splits.getOrDefault(segment, Map.of()).keySet());
+        }
+        for (Merge merge : merges) {
+            runs.removeAll(merge.getInputs());
+            runs.add(merge.getOutput());
+        }
+        return runs;
+    }
+
+    /**
+     * Tells if a run of workDir still has its recorded size.
+     *
+     * @param name
+     * @param size
+     * @return boolean
+     * @throws IOException
+     */
+    public boolean verify(String name, long size) throws IOException {
+        Path run = workDir.resolve(name);
+        return Files.isRegularFile(run) && Files.size(run) == size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void parse(String text) throws IOException {
+        String[] lines = text.split("\n");
+        if (lines.length == 0 || !lines[0].equals(HEADER + "\t" + VERSION)) {
+            throw new IOException(String.format("%s is not a bigsort manifest", workDir.resolve(FILE_NAME)));
+        }
+
+        for (int i = 1; i < lines.length; i++) {
+            String[] fields = lines[i].split("\t", -1);
+            switch (fields[0]) {
+            case "options":
+                options = lines[i].substring(fields[0].length() + 1);
+                break;
+            case "input":
+                inputs.add(lines[i].substring(fields[0].length() + 1));
+                break;
+            case "range":
+                String[] range = lines[i].split("\t", 6);
+                segments.computeIfAbsent(Integer.parseInt(range[1]), id -> new InputSegment())
+                        .add(new InputSegment.Range(Path.of(range[5]), Long.parseLong(range[2]),
+                                Long.parseLong(range[3]), range[4].equals("1")));
+                break;
+            case "split":
+                Map<String, Long> runs = new LinkedHashMap<>();
+                for (int f = 2; f + 1 < fields.length; f += 2) {
+                    runs.put(fields[f], Long.parseLong(fields[f + 1]));
+                }
+                splits.put(Integer.parseInt(fields[1]), runs);
+                break;
+            case "merge":
+                List<String> names = new ArrayList<>();
+                for (int f = 4; f < fields.length; f++) {
+                    names.add(fields[f]);
+                }
+                merges.add(new Merge(Integer.parseInt(fields[1]), fields[2], Long.parseLong(fields[3]), names));
+                break;
+            default:
+                throw new IOException(String.format("Unknown manifest record \"%s\"", fields[0]));
+            }
+        }
+    }
+
+    private void append(String records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+        long position = channel.size();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.force(false);
+    }
+
+    private static long force(Path file) throws IOException {
+        try (FileChannel run = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            run.force(true);
+            return run.size();
+        }
+    }
+
+    private static String input(Path file) throws IOException {
+        return String.format("%d\t%d\t%s", Files.size(file), Files.getLastModifiedTime(file).toMillis(),
+                file.toAbsolutePath());
+    }
+
+    private static String record(String type, Object... fields) {
+        StringBuilder builder = new StringBuilder(type);
+        for (Object field : fields) {
+            builder.append('\t').append(field);
+        }
+        return builder.append('\n').toString();
+    }
+
+    /**
+     * Merge is an intermediate merge of input runs to an output run.
+     */
+    public static class Merge {
+        private final int id;
+        private final String output;
+        private final long size;
+        private final List<String> inputs;
+
+        Merge(int id, String output, long size, List<String> inputs) {
+            this.id = id;
+            this.output = output;
+            this.size = size;
+            this.inputs = inputs;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public List<String> getInputs() {
+            return inputs;
+        }
+    }
+}
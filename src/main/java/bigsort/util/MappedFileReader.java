@@ -0,0 +1,220 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * MappedFileReader reads a file through memory mapped windows instead of a
+ * single BufferedReader. The returned stream is parallel, its Spliterator cuts
+ * the file into byte ranges which always start right after a '\n', so every
+ * range can be scanned and decoded by a different thread. Lines are ended by
+ * '\n' and an optional '\r' before it is dropped.
+ *
+ * Lines of a parallel stream aren't in file order, which doesn't matter to the
+ * split phase as split files are sorted anyway. Only charsets in which '\n' is
+ * always the single byte 0x0A are mapped, other files are read like
+ * FastFileReader does.
+ */
+public class MappedFileReader extends FastFileReader {
+    private static final Metrics metrics = Metrics.global();
+    private static final Set<Charset> MAPPABLE_CHARSETS = Set.of(StandardCharsets.UTF_8, StandardCharsets.US_ASCII,
+            StandardCharsets.ISO_8859_1);
+    private static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+    private static final int MIN_RANGE_SIZE = 1024 * 1024;
+    private final int windowSize;
+    private final int minRangeSize;
+
+    public MappedFileReader() {
+        this(DEFAULT_WINDOW_SIZE, MIN_RANGE_SIZE);
+    }
+
+    /**
+     * @param windowSize   max bytes mapped at once by a range
+     * @param minRangeSize ranges smaller than this are not split any more
+     */
+    public MappedFileReader(int windowSize, int minRangeSize) {
+        this.windowSize = windowSize;
+        this.minRangeSize = minRangeSize;
+    }
+
+    @Override
+    protected Stream<String> readLines(Path path, Charset charset) throws IOException {
+        if (!MAPPABLE_CHARSETS.contains(charset)) {
+            return super.readLines(path, charset);
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            var spliterator = new RangeSpliterator(channel, 0, channel.size(), charset);
+            return StreamSupport.stream(spliterator, true).onClose(() -> {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Spliterator of the lines starting in [start, end), end is either the file
+     * size or right after a '\n'.
+     */
+    private class RangeSpliterator implements Spliterator<String> {
+        private final FileChannel channel;
+        private final Charset charset;
+        private final long end;
+        private long position;
+        private long counted;
+        private MappedByteBuffer window = null;
+        private ByteBuffer view = null;
+        private long windowStart = 0;
+        private byte[] bytes = new byte[256];
+
+        RangeSpliterator(FileChannel channel, long start, long end, Charset charset) {
+            this.channel = channel;
+            this.position = start;
+            this.counted = start;
+            this.end = end;
+            this.charset = charset;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            if (position >= end) {
+                count();
+                return false;
+            }
+
+            try {
+                action.accept(readLine());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }
+
+        @Override
+        public Spliterator<String> trySplit() {
+            if (window != null || end - position < 2L * minRangeSize) {
+                return null;
+            }
+
+            try {
+                long mid = nextLineStart(position + (end - position) / 2);
+                if (mid >= end) {
+                    return null;
+                }
+
+                var prefix = new RangeSpliterator(channel, position, mid, charset);
+                position = mid;
+                counted = mid;
+                return prefix;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - position;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | IMMUTABLE;
+        }
+
+        private String readLine() throws IOException {
+            int size = windowSize;
+            while (true) {
+                if (window == null || position >= windowStart + window.limit()) {
+                    map(size);
+                }
+
+                int from = (int) (position - windowStart);
+                int limit = window.limit();
+                for (int i = from; i < limit; i++) {
+                    if (window.get(i) == '\n') {
+                        int lineEnd = i > from && window.get(i - 1) == '\r' ? i - 1 : i;
+                        position = windowStart + i + 1;
+                        return decode(from, lineEnd);
+                    }
+                }
+
+                if (windowStart + limit >= end) {
+                    // last line without '\n'
+                    position = end;
+                    return decode(from, limit);
+                }
+
+                // the line crosses the window, map again from its start
+                size = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(windowSize, 2L * (limit - from)));
+                window = null;
+            }
+        }
+
+        private void map(int size) throws IOException {
+            count();
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size, end - position));
+            view = window.duplicate();
+        }
+
+        /**
+         * Adds the bytes read since the last call to Metrics, once a window is
+         * done rather than for every line.
+         */
+        private void count() {
+            metrics.read(0, position - counted);
+            counted = position;
+        }
+
+        private String decode(int from, int to) {
+            int length = to - from;
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            view.position(from);
+            view.get(bytes, 0, length);
+            return new String(bytes, 0, length, charset);
+        }
+
+        /**
+         * Returns the position right after the first '\n' at or after from.
+         */
+        private long nextLineStart(long from) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long offset = from;
+            while (offset < end) {
+                buffer.clear();
+                int count = channel.read(buffer, offset);
+                if (count < 0) {
+                    break;
+                }
+                for (int i = 0; i < count; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return offset + i + 1;
+                    }
+                }
+                offset += count;
+            }
+            return end;
+        }
+    }
+}
@@ -1,35 +1,67 @@
 package bigsort.util;
 
 import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /**
- * Measurement
+ * Measurement keeps the elapsed time and peak heap of a sort, and the time of
+ * its phases in the order they were started. Starting a measurement resets
+ * Metrics and phases are published to it, so they can be watched over JMX.
+ * Heap isn't collected before the sort, a forced GC would only distort the
+ * timing, the peak comes from the heap memory pools instead.
  */
 public class Measurement {
-    private Runtime runtime;
+    private final Metrics metrics;
     private String processId;
     private long startTime = 0;
-    private long startMemory = 0;
-    private long usedMemory = 0;
+    private long peakHeap = 0;
     private long elapsedTime = 0;
+    private final Map<String, Long> phaseTimes = new LinkedHashMap<>();
+    private String phase;
+    private long phaseStartTime = 0;
 
     public Measurement() {
-        runtime = Runtime.getRuntime();
+        this(Metrics.global());
+    }
+
+    public Measurement(Metrics metrics) {
+        this.metrics = metrics;
     }
 
     public void startMeasurement() {
-        runtime.gc();
         processId = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
-        startMemory = runtime.totalMemory() - runtime.freeMemory();
+        metrics.reset();
         startTime = System.currentTimeMillis();
     }
 
+    /**
+     * Finishes the current phase, if any, and starts the named one.
+     *
+     * @param name
+     */
+    public void startPhase(String name) {
+        finishPhase();
+        phase = name;
+        phaseStartTime = System.currentTimeMillis();
+        metrics.phaseStarted(name);
+    }
+
+    public void finishPhase() {
+        if (phase != null) {
+            long elapsed = System.currentTimeMillis() - phaseStartTime;
+            phaseTimes.merge(phase, elapsed, Long::sum);
+            metrics.phaseFinished(phase, elapsed);
+            phase = null;
+        }
+    }
+
     public void finishMeasurement() {
-        long finishMemory = runtime.totalMemory() - runtime.freeMemory();
-        long endTime = System.currentTimeMillis();
-        elapsedTime = endTime - startTime;
-        usedMemory = (finishMemory - startMemory) / (1024L * 1024L);
+        finishPhase();
+        elapsedTime = System.currentTimeMillis() - startTime;
+        peakHeap = metrics.getPeakHeapBytes();
     }
 
     public String getProcessId() {
@@ -40,7 +72,28 @@ public class Measurement {
         return String.format(Locale.US, "%,d ms", elapsedTime);
     }
 
-    public String getMemoryUsage() {
-        return String.format(Locale.US, "%,d MB", usedMemory);
+    public long getElapsedMillis() {
+        return elapsedTime;
+    }
+
+    /**
+     * Returns elapsed milliseconds of every finished phase.
+     *
+     * @return Map<String, Long>
+     */
+    public Map<String, Long> getPhaseTimes() {
+        return Collections.unmodifiableMap(phaseTimes);
+    }
+
+    public String getPhaseTime(String name) {
+        return String.format(Locale.US, "%,d ms", phaseTimes.getOrDefault(name, 0L));
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public String getPeakHeap() {
+        return String.format(Locale.US, "%,d MB", peakHeap / (1024L * 1024L));
     }
-}
\ No newline at end of file
+}
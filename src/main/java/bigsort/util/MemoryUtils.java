@@ -0,0 +1,62 @@
+package bigsort.util;
+
+/**
+ * MemoryUtils estimates how many heap bytes a line retains while it's kept in
+ * a chunk buffer. Estimations assume compact strings and are rounded up to
+ * 8-byte object alignment.
+ */
+public final class MemoryUtils {
+    /**
+     * String object header with its hash, coder and value reference.
+     */
+    private static final long STRING_SIZE = 24;
+
+    /**
+     * Header of the backing byte[] of a String.
+     */
+    private static final long ARRAY_HEADER_SIZE = 16;
+
+    /**
+     * Reference slot in the chunk array plus the temporary space Arrays.sort
+     * (TimSort) may need to merge references.
+     */
+    private static final long REFERENCE_SIZE = 12;
+
+    private MemoryUtils() {
+    }
+
+    /**
+     * Estimated retained bytes of a line kept in a chunk buffer.
+     *
+     * @param line
+     * @return long
+     */
+    public static long estimateLineSize(String line) {
+        int length = line.length();
+        long valueSize = isLatin1(line) ? length : 2L * length;
+        return STRING_SIZE + align(ARRAY_HEADER_SIZE + valueSize) + REFERENCE_SIZE;
+    }
+
+    /**
+     * Smallest possible estimation, can be used to get upper bound of lines fit
+     * in a budget.
+     *
+     * @return long
+     */
+    public static long minLineSize() {
+        return estimateLineSize("");
+    }
+
+    private static boolean isLatin1(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -0,0 +1,40 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * MeteredChannel adds the bytes read from a channel and the time its reads
+ * block to Metrics, so input is counted in encoded bytes, whatever the charset
+ * and line separator.
+ */
+class MeteredChannel implements ReadableByteChannel {
+    private static final Metrics metrics = Metrics.global();
+    private final ReadableByteChannel channel;
+
+    MeteredChannel(ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        long start = System.nanoTime();
+        int count = channel.read(dst);
+        metrics.readWaited(System.nanoTime() - start);
+        if (count > 0) {
+            metrics.read(0, count);
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,298 @@
+package bigsort.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Metrics counts the work of a sort while it runs, so it can be scraped over
+ * JMX from a long sort. Counters are LongAdders, which any thread can add to
+ * without contention. Hot loops count in a local field and add it now and then.
+ *
+ * One registry is shared by the process, see global(). Measurement resets it
+ * when a sort starts.
+ *
+ * Peak heap is the largest total heap use seen, sampled right before every GC
+ * from the GC notifications and whenever it's read. Peaks of the heap pools
+ * aren't summed, they happen at different times.
+ */
+public class Metrics implements MetricsMXBean {
+    public static final String OBJECT_NAME = "bigsort:type=Metrics";
+    private static final Metrics global = new Metrics();
+
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final Stat runs = new Stat();
+    private final Stat mergedRuns = new Stat();
+    private final Stat sortTime = new Stat();
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder outputBytes = new LongAdder();
+    private final LongAdder readWait = new LongAdder();
+    private final LongAdder writeWait = new LongAdder();
+    private final LongAccumulator peakHeap = new LongAccumulator(Math::max, 0);
+    private final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+    private volatile String phase = "";
+
+    public Metrics() {
+        Set<String> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP).map(MemoryPoolMXBean::getName)
+                .collect(Collectors.toSet());
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(
+                        (notification, handback) -> collected(notification, heapPools), null, null);
+            }
+        }
+    }
+
+    public static Metrics global() {
+        return global;
+    }
+
+    /**
+     * Registers the global registry to the platform MBeanServer, unless it's
+     * registered already.
+     *
+     * @throws JMException
+     */
+    public static void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(global, name);
+        }
+    }
+
+    public void lineRead() {
+        linesRead.increment();
+    }
+
+    public void read(long lines, long bytes) {
+        linesRead.add(lines);
+        bytesRead.add(bytes);
+    }
+
+    public void runWritten(long bytes) {
+        runs.add(bytes);
+    }
+
+    public void mergedRunWritten(long bytes) {
+        mergedRuns.add(bytes);
+    }
+
+    public void sorted(long nanos) {
+        sortTime.add(nanos);
+    }
+
+    public void compared(long count) {
+        comparisons.add(count);
+    }
+
+    public void outputWritten(long bytes) {
+        outputBytes.add(bytes);
+    }
+
+    public void readWaited(long nanos) {
+        readWait.add(nanos);
+    }
+
+    public void writeWaited(long nanos) {
+        writeWait.add(nanos);
+    }
+
+    public void phaseStarted(String name) {
+        phase = name;
+    }
+
+    public synchronized void phaseFinished(String name, long millis) {
+        phaseMillis.merge(name, millis, Long::sum);
+        phase = "";
+    }
+
+    @Override
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getRunsWritten() {
+        return runs.count();
+    }
+
+    @Override
+    public long getRunBytesWritten() {
+        return runs.total();
+    }
+
+    @Override
+    public long getMinRunBytes() {
+        return runs.min();
+    }
+
+    @Override
+    public long getMaxRunBytes() {
+        return runs.max();
+    }
+
+    @Override
+    public long getMergedRunsWritten() {
+        return mergedRuns.count();
+    }
+
+    @Override
+    public long getMergedRunBytesWritten() {
+        return mergedRuns.total();
+    }
+
+    @Override
+    public long getRunsSorted() {
+        return sortTime.count();
+    }
+
+    @Override
+    public long getSortMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(sortTime.total());
+    }
+
+    @Override
+    public long getMaxSortMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(sortTime.max());
+    }
+
+    @Override
+    public long getMergeComparisons() {
+        return comparisons.sum();
+    }
+
+    @Override
+    public long getOutputBytes() {
+        return outputBytes.sum();
+    }
+
+    @Override
+    public long getReadWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readWait.sum());
+    }
+
+    @Override
+    public long getWriteWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writeWait.sum());
+    }
+
+    @Override
+    public String getPhase() {
+        return phase;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getPhaseMillis() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(phaseMillis));
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Override
+    public long getPeakHeapBytes() {
+        peakHeap.accumulate(getHeapUsedBytes());
+        return peakHeap.get();
+    }
+
+    @Override
+    public synchronized void reset() {
+        linesRead.reset();
+        bytesRead.reset();
+        runs.reset();
+        mergedRuns.reset();
+        sortTime.reset();
+        comparisons.reset();
+        outputBytes.reset();
+        readWait.reset();
+        writeWait.reset();
+        phaseMillis.clear();
+        phase = "";
+        peakHeap.reset();
+    }
+
+    /**
+     * Heap use right before a GC is the sum of the heap pools before it, they
+     * are all taken at once.
+     */
+    private void collected(Notification notification, Set<String> heapPools) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+            used += heapPools.contains(pool.getKey()) ? pool.getValue().getUsed() : 0;
+        }
+        peakHeap.accumulate(used);
+    }
+
+    /**
+     * Count, total, min and max of recorded values.
+     */
+    private static final class Stat {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void add(long value) {
+            count.increment();
+            total.add(value);
+            min.accumulate(value);
+            max.accumulate(value);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long total() {
+            return total.sum();
+        }
+
+        long min() {
+            return count() == 0 ? 0 : min.get();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        void reset() {
+            count.reset();
+            total.reset();
+            min.reset();
+            max.reset();
+        }
+    }
+}
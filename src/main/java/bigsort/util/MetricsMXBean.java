@@ -0,0 +1,86 @@
+package bigsort.util;
+
+import java.util.Map;
+
+/**
+ * MetricsMXBean is the JMX view of Metrics, registered as bigsort:type=Metrics.
+ * Counters start from zero when a sort starts, times are in milliseconds.
+ */
+public interface MetricsMXBean {
+    /**
+     * Lines read from the input by the split phase.
+     */
+    long getLinesRead();
+
+    /**
+     * Encoded bytes read from the input files, separators included.
+     */
+    long getBytesRead();
+
+    /**
+     * Sorted split files written.
+     */
+    long getRunsWritten();
+
+    long getRunBytesWritten();
+
+    long getMinRunBytes();
+
+    long getMaxRunBytes();
+
+    /**
+     * Runs written by intermediate merge passes.
+     */
+    long getMergedRunsWritten();
+
+    long getMergedRunBytesWritten();
+
+    /**
+     * Split chunks sorted in memory.
+     */
+    long getRunsSorted();
+
+    long getSortMillis();
+
+    long getMaxSortMillis();
+
+    /**
+     * Line comparisons of the merge loser trees.
+     */
+    long getMergeComparisons();
+
+    /**
+     * Bytes written to the sorted output file.
+     */
+    long getOutputBytes();
+
+    /**
+     * Time spent in file channel reads of input and runs, and waiting for the
+     * concurrent input readers.
+     */
+    long getReadWaitMillis();
+
+    /**
+     * Time spent in file channel writes of runs and output.
+     */
+    long getWriteWaitMillis();
+
+    /**
+     * Name of the running phase i.e "split", empty if no sort is running.
+     */
+    String getPhase();
+
+    /**
+     * Elapsed time of every finished phase.
+     */
+    Map<String, Long> getPhaseMillis();
+
+    long getHeapUsedBytes();
+
+    /**
+     * Largest total heap use since the sort started, sampled before every GC.
+     */
+    long getPeakHeapBytes();
+
+    void reset();
+}
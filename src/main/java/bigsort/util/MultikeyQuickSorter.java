@@ -0,0 +1,109 @@
+package bigsort.util;
+
+import bigsort.util.api.Sorter;
+
+/**
+ * MultikeyQuickSorter sorts strings with three-way radix quicksort (multikey
+ * quicksort). Strings are partitioned by a single char at depth d, so a shared
+ * prefix is compared only once per partition step instead of once per
+ * comparison like Arrays.sort() does. Small partitions are finished by an
+ * insertion sort which compares from depth d. Chars are compared as UTF-16
+ * units, so the result is the same as String.compareTo().
+ */
+public class MultikeyQuickSorter implements Sorter {
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    @Override
+    public void sort(String[] data) {
+        sort(data, 0, data.length);
+    }
+
+    @Override
+    public void sort(String[] data, int fromIndex, int toIndex) {
+        sort(data, fromIndex, toIndex, 0);
+    }
+
+    /**
+     * Sorts [from, to) whose strings share a prefix of length d. The equal
+     * partition continues in the loop with d + 1, so long common prefixes don't
+     * grow the call stack.
+     */
+    private static void sort(String[] data, int from, int to, int d) {
+        while (to - from > INSERTION_SORT_THRESHOLD) {
+            swap(data, from, medianOfThree(data, from, from + (to - from) / 2, to - 1, d));
+            int pivot = charAt(data[from], d);
+
+            // [from, lt) < pivot, [lt, i) == pivot, [gt, to) > pivot
+            int lt = from;
+            int gt = to;
+            int i = from + 1;
+            while (i < gt) {
+                int c = charAt(data[i], d);
+                if (c < pivot) {
+                    swap(data, lt++, i++);
+                } else if (c > pivot) {
+                    swap(data, i, --gt);
+                } else {
+                    i++;
+                }
+            }
+
+            sort(data, from, lt, d);
+            sort(data, gt, to, d);
+            if (pivot < 0) {
+                // every string of the equal partition has ended
+                return;
+            }
+            from = lt;
+            to = gt;
+            d++;
+        }
+        insertionSort(data, from, to, d);
+    }
+
+    private static void insertionSort(String[] data, int from, int to, int d) {
+        for (int i = from + 1; i < to; i++) {
+            String line = data[i];
+            int j = i - 1;
+            while (j >= from && compare(data[j], line, d) > 0) {
+                data[j + 1] = data[j];
+                j--;
+            }
+            data[j + 1] = line;
+        }
+    }
+
+    private static int compare(String a, String b, int d) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = d; i < length; i++) {
+            int result = a.charAt(i) - b.charAt(i);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    private static int medianOfThree(String[] data, int a, int b, int c, int d) {
+        int x = charAt(data[a], d);
+        int y = charAt(data[b], d);
+        int z = charAt(data[c], d);
+        if (x < y) {
+            return y < z ? b : x < z ? c : a;
+        }
+        return x < z ? a : y < z ? c : b;
+    }
+
+    /**
+     * Returns -1 past the end of the string, so shorter strings come first.
+     */
+    private static int charAt(String s, int d) {
+        return d < s.length() ? s.charAt(d) : -1;
+    }
+
+    private static void swap(String[] data, int i, int j) {
+        String temp = data[i];
+        data[i] = data[j];
+        data[j] = temp;
+    }
+}
@@ -0,0 +1,326 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import bigsort.util.api.LineReader;
+
+/**
+ * PartitionedRunMerger merges runs written by RunFileWriter on several threads
+ * into a single output file. Lines of the sparse run indexes are sampled to
+ * choose partition boundaries, every boundary is located in every run by
+ * reading at most one indexed block, and each partition is merged by its own
+ * LoserTreeSortedFileReader over the record ranges of that key range.
+ *
+ * The index also tells the text size of every range, so the output offset of
+ * every partition is known before merging and workers write their lines with
+ * positional writes to the same FileChannel. Output is written to a temporary
+ * file and renamed to the destination at the end like FileChannelOutputSink.
+ */
+public class PartitionedRunMerger {
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+    private static final Metrics metrics = Metrics.global();
+    private final KeySpec keySpec;
+
+    public PartitionedRunMerger() {
+        this(null);
+    }
+
+    /**
+     * @param keySpec order of the runs, null means whole lines
+     */
+    public PartitionedRunMerger(KeySpec keySpec) {
+        this.keySpec = keySpec;
+    }
+
+    /**
+     * Merges runs to path using at most the given number of partitions, each
+     * line followed by the separator.
+     *
+     * @param runs
+     * @param path
+     * @param partitions
+     * @param readMemory  shared by the read buffers of all partitions
+     * @param writeMemory shared by the write buffers of all partitions
+     * @param separator
+     * @return number of partitions used
+     * @throws IOException
+     */
+    public int merge(List<Path> runs, Path path, int partitions, long readMemory, long writeMemory,
+            byte[] separator) throws IOException {
+        List<RunFooter> footers = new ArrayList<>(runs.size());
+        List<List<Sample>> indexes = new ArrayList<>(runs.size());
+        for (Path run : runs) {
+            RunFooter footer = RunFileReader.footer(run);
+            List<Sample> index = new ArrayList<>(footer.getIndex().size());
+            for (RunFooter.IndexEntry entry : footer.getIndex()) {
+                index.add(sample(entry.getLine()));
+            }
+            footers.add(footer);
+            indexes.add(index);
+        }
+
+        List<Sample> bounds = chooseBounds(indexes, partitions);
+        int count = bounds.size() + 1;
+
+        // cuts[i][r] is where partition i starts in run r, the last one is the end
+        Cut[][] cuts = new Cut[count + 1][runs.size()];
+        for (int r = 0; r < runs.size(); r++) {
+            RunFooter footer = footers.get(r);
+            cuts[0][r] = new Cut(0, 0, 0);
+            for (int i = 0; i < bounds.size(); i++) {
+                cuts[i + 1][r] = locate(runs.get(r), footer, indexes.get(r), bounds.get(i));
+            }
+            cuts[count][r] = new Cut(footer.getBytes(), footer.getRecords(), textBytes(runs.get(r), footer));
+        }
+
+        long[] offsets = new long[count + 1];
+        for (int i = 0; i < count; i++) {
+            long size = 0;
+            for (int r = 0; r < runs.size(); r++) {
+                size += cuts[i + 1][r].textBytes - cuts[i][r].textBytes;
+                size += (cuts[i + 1][r].record - cuts[i][r].record) * separator.length;
+            }
+            offsets[i + 1] = offsets[i] + size;
+        }
+
+        int bufferSize = (int) Math.max(MIN_BUFFER_SIZE, readMemory / Math.max(1L, (long) count * runs.size()));
+        int writeBufferSize = (int) Math.max(MIN_BUFFER_SIZE, Math.min(Integer.MAX_VALUE, writeMemory / count));
+        Path tempPath = FileChannelOutputSink.tempPath(path);
+        ExecutorService pool = Executors.newFixedThreadPool(count, SplitPipeline.threadFactory("bigsort-merge"));
+        boolean committed = false;
+        try {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                List<Future<Void>> futures = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    int partition = i;
+                    futures.add(pool.submit(() -> {
+                        mergePartition(runs, cuts[partition], cuts[partition + 1], bufferSize, channel,
+                                offsets[partition], offsets[partition + 1], writeBufferSize, separator);
+                        return null;
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    await(future);
+                }
+                channel.force(false);
+            }
+            FileChannelOutputSink.move(tempPath, path);
+            committed = true;
+        } finally {
+            pool.shutdownNow();
+            if (!committed) {
+                Files.deleteIfExists(tempPath);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Index lines of all runs cover about the same number of bytes each, so
+     * evenly spaced samples of them split the input into partitions of about
+     * the same size. Equal bounds are dropped.
+     */
+    private List<Sample> chooseBounds(List<List<Sample>> indexes, int partitions) {
+        List<Sample> samples = new ArrayList<>();
+        for (List<Sample> index : indexes) {
+            samples.addAll(index);
+        }
+        samples.sort(this::compare);
+
+        List<Sample> bounds = new ArrayList<>();
+        for (int i = 1; i < partitions && !samples.isEmpty(); i++) {
+            Sample bound = samples.get((int) ((long) i * samples.size() / partitions));
+            if (bounds.isEmpty() || compare(bounds.get(bounds.size() - 1), bound) < 0) {
+                bounds.add(bound);
+            }
+        }
+
+        // a bound at the smallest line makes an empty first partition
+        if (!bounds.isEmpty() && compare(bounds.get(0), samples.get(0)) <= 0) {
+            bounds.remove(0);
+        }
+        return bounds;
+    }
+
+    /**
+     * Finds the first record of the run which isn't smaller than bound, reading
+     * from the last index entry smaller than bound. index holds the samples of
+     * the footer's index entries.
+     */
+    private Cut locate(Path run, RunFooter footer, List<Sample> index, Sample bound) throws IOException {
+        Cut from = new Cut(0, 0, 0);
+        for (int i = 0; i < index.size(); i++) {
+            if (compare(index.get(i), bound) >= 0) {
+                break;
+            }
+            RunFooter.IndexEntry entry = footer.getIndex().get(i);
+            from = new Cut(entry.getOffset(), entry.getRecord(), entry.getTextBytes());
+        }
+
+        try (RunFileReader reader = new RunFileReader(run, MIN_BUFFER_SIZE, from.offset, -1)) {
+            long record = from.record;
+            long textBytes = from.textBytes;
+            while (true) {
+                long offset = reader.position();
+                String line = reader.nextLine();
+                if (line == null || compare(sample(line), bound) >= 0) {
+                    return new Cut(offset, record, textBytes);
+                }
+                record++;
+                textBytes += reader.recordLength();
+            }
+        }
+    }
+
+    /**
+     * Text bytes of the whole run, counted from its last index entry.
+     */
+    private long textBytes(Path run, RunFooter footer) throws IOException {
+        List<RunFooter.IndexEntry> index = footer.getIndex();
+        if (footer.getRecords() == 0) {
+            return 0;
+        }
+
+        long offset = 0;
+        long textBytes = 0;
+        if (!index.isEmpty()) {
+            RunFooter.IndexEntry last = index.get(index.size() - 1);
+            offset = last.getOffset();
+            textBytes = last.getTextBytes();
+        }
+
+        try (RunFileReader reader = new RunFileReader(run, MIN_BUFFER_SIZE, offset, -1)) {
+            while (reader.nextLine() != null) {
+                textBytes += reader.recordLength();
+            }
+        }
+        return textBytes;
+    }
+
+    private void mergePartition(List<Path> runs, Cut[] from, Cut[] to, int bufferSize, FileChannel channel,
+            long start, long end, int writeBufferSize, byte[] separator) throws IOException {
+        List<LineReader> readers = new ArrayList<>(runs.size());
+        var sortedReader = new LoserTreeSortedFileReader(new RunFileReader(), keySpec);
+        try {
+            for (int r = 0; r < runs.size(); r++) {
+                if (from[r].offset < to[r].offset) {
+                    readers.add(new RunFileReader(runs.get(r), bufferSize, from[r].offset, to[r].offset));
+                }
+            }
+            sortedReader.open(readers);
+
+            ByteBuffer out = ByteBuffer.allocateDirect(writeBufferSize);
+            long position = start;
+            String line;
+            while ((line = sortedReader.readNextSortedLine().orElse(null)) != null) {
+                byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                if (out.remaining() < bytes.length + separator.length) {
+                    position = flush(channel, out, position);
+                }
+                if (out.remaining() < bytes.length + separator.length) {
+                    // longer than the buffer
+                    position = write(channel, ByteBuffer.wrap(bytes), position);
+                    out.put(separator);
+                    continue;
+                }
+                out.put(bytes).put(separator);
+            }
+            position = flush(channel, out, position);
+
+            if (position != end) {
+                throw new IOException(String.format("Partition wrote %d bytes instead of %d", position - start,
+                        end - start));
+            }
+        } finally {
+            readers.forEach(LineReader::close);
+            sortedReader.close();
+        }
+    }
+
+    private static long flush(FileChannel channel, ByteBuffer out, long position) throws IOException {
+        out.flip();
+        position = write(channel, out, position);
+        out.clear();
+        return position;
+    }
+
+    private static long write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = System.nanoTime();
+        int count = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        metrics.writeWaited(System.nanoTime() - start);
+        metrics.outputWritten(count);
+        return position;
+    }
+
+    private static void await(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private Sample sample(String line) {
+        return new Sample(line, keySpec == null ? null : keySpec.key(line));
+    }
+
+    private int compare(Sample a, Sample b) {
+        return keySpec == null ? a.line.compareTo(b.line) : keySpec.compare(a.key, b.key);
+    }
+
+    /**
+     * A sampled line with its key parsed once, the key is null without a
+     * KeySpec.
+     */
+    private static class Sample {
+        private final String line;
+        private final KeySpec.Key key;
+
+        Sample(String line, KeySpec.Key key) {
+            this.line = line;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Offset of a record in a run, with the number of records and text bytes
+     * before it.
+     */
+    private static class Cut {
+        private final long offset;
+        private final long record;
+        private final long textBytes;
+
+        Cut(long offset, long record, long textBytes) {
+            this.offset = offset;
+            this.record = record;
+            this.textBytes = textBytes;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import bigsort.util.api.LineReader;
+
+/**
+ * PrefetchLineReader is a read-ahead decorator of another LineReader. While
+ * the lines of the current block are consumed, the next block is read and
+ * decoded by a background thread, so a merge over many runs doesn't stall on
+ * a synchronous refill of every run in turn.
+ *
+ * The buffer size given to create() is split in three, one part for the
+ * wrapped reader and one for each of the two blocks, measured by
+ * MemoryUtils.estimateLineSize(). All readers created by the same instance
+ * share its pool of prefetch threads, and only one block of a reader is
+ * fetched at a time, so the wrapped reader is never used concurrently.
+ */
+public class PrefetchLineReader implements LineReader {
+    private static final int DEFAULT_BUFFER_SIZE = 3 * 1024 * 1024;
+    private static final int MIN_BLOCK_SIZE = 8192;
+    private static final String[] END = new String[0];
+    private final LineReader reader;
+    private final ExecutorService pool;
+    private final boolean creator;
+    private long blockSize;
+    private Future<String[]> pending = null;
+    private String[] block = new String[0];
+    private int index = 0;
+    private String line = null;
+    private boolean started = false;
+    private boolean ended = false;
+
+    /**
+     * @param reader  creates the wrapped readers
+     * @param threads number of prefetch threads shared by created readers
+     */
+    public PrefetchLineReader(LineReader reader, int threads) {
+        this.reader = reader;
+        this.pool = Executors.newFixedThreadPool(Math.max(threads, 1),
+                SplitPipeline.threadFactory("bigsort-prefetch"));
+        this.creator = true;
+    }
+
+    private PrefetchLineReader(LineReader source, ExecutorService pool, long blockSize) {
+        this.reader = source;
+        this.pool = pool;
+        this.creator = false;
+        this.blockSize = blockSize;
+        this.pending = pool.submit(this::fetch);
+    }
+
+    @Override
+    public LineReader create(Path path) throws IOException {
+        return create(path, DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public LineReader create(Path path, int bufferSize) throws IOException {
+        int size = Math.max(bufferSize / 3, MIN_BLOCK_SIZE);
+        return new PrefetchLineReader(reader.create(path, size), pool, size);
+    }
+
+    @Override
+    public synchronized Optional<String> line() throws IOException {
+        return started ? Optional.ofNullable(line) : next();
+    }
+
+    @Override
+    public Optional<String> next() throws IOException {
+        return Optional.ofNullable(nextLine());
+    }
+
+    @Override
+    public String nextLine() throws IOException {
+        started = true;
+        while (index == block.length) {
+            if (ended) {
+                line = null;
+                return line;
+            }
+
+            block = await(pending);
+            index = 0;
+            pending = null;
+            ended = block == END;
+            if (!ended) {
+                pending = pool.submit(this::fetch);
+            }
+        }
+
+        line = block[index];
+        block[index++] = null;
+        return line;
+    }
+
+    /**
+     * Waits for the block being fetched, so the wrapped reader isn't closed
+     * under it. Closing the creating instance stops the prefetch threads.
+     */
+    @Override
+    public void close() {
+        if (creator) {
+            pool.shutdown();
+            return;
+        }
+
+        if (pending != null) {
+            try {
+                await(pending);
+            } catch (IOException | RuntimeException e) {
+            }
+            pending = null;
+        }
+        reader.close();
+    }
+
+    /**
+     * Reads lines until their estimated size reaches the block size, END means
+     * the wrapped reader is exhausted.
+     */
+    private String[] fetch() throws IOException {
+        List<String> lines = new ArrayList<>();
+        long bytes = 0;
+        String next;
+        while (bytes < blockSize && (next = reader.nextLine()) != null) {
+            lines.add(next);
+            bytes += MemoryUtils.estimateLineSize(next);
+        }
+        return lines.isEmpty() ? END : lines.toArray(new String[0]);
+    }
+
+    private static String[] await(Future<String[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package bigsort.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * ReplacementSelection generates sorted runs using a heap of (run, line)
+ * entries which is kept filled up to the memory budget. The smallest line of
+ * current run is written out and replaced with the next input line. If the
+ * new line is smaller than the last written one, it can't be part of current
+ * run anymore and is tagged for the next run.
+ *
+ * On random input runs are about twice as large as the memory budget, and
+ * already sorted input produces a single run.
+ */
+public class ReplacementSelection {
+    private static final int INITIAL_CAPACITY = 1024;
+    private final int maxLines;
+    private final long maxBytes;
+    private final ToLongFunction<String> sizeOf;
+    private String[] lines;
+    private int[] runs;
+    private int size;
+    private long bytes;
+
+    public ReplacementSelection(int maxLines, long memory, ToLongFunction<String> sizeOf) {
+        this.maxLines = maxLines;
+        this.maxBytes = memory;
+        this.sizeOf = sizeOf;
+    }
+
+    /**
+     * Calls consumer once per run with the lines of that run in ascending order
+     * and the run id. Lines are pulled from the stream while the consumer
+     * iterates, so a run must be consumed before the next one is handed over.
+     *
+     * @param stream
+     * @param consumer
+     */
+    public void process(Stream<String> stream, BiConsumer<Iterable<String>, Integer> consumer) {
+        Iterator<String> input = stream.iterator();
+        this.lines = new String[Math.min(maxLines, INITIAL_CAPACITY)];
+        this.runs = new int[lines.length];
+        this.size = 0;
+        this.bytes = 0;
+
+        // fill the heap, every line belongs to the first run
+        while (input.hasNext() && bytes < maxBytes && size < maxLines) {
+            String line = input.next();
+            push(0, line, sizeOf.applyAsLong(line));
+        }
+
+        while (size > 0) {
+            int run = runs[0];
+            consumer.accept(() -> new RunIterator(run, input), run);
+
+            // drain what the consumer didn't read of this run
+            new RunIterator(run, input).forEachRemaining(line -> {
+            });
+        }
+    }
+
+    /**
+     * Pops lines of the given run, refilling the heap from input after every
+     * pop.
+     */
+    private class RunIterator implements Iterator<String> {
+        private final int run;
+        private final Iterator<String> input;
+
+        RunIterator(int run, Iterator<String> input) {
+            this.run = run;
+            this.input = input;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return size > 0 && runs[0] == run;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            String last = pop();
+            while (input.hasNext() && bytes < maxBytes && size < maxLines) {
+                String line = input.next();
+                push(line.compareTo(last) < 0 ? run + 1 : run, line, sizeOf.applyAsLong(line));
+            }
+            return last;
+        }
+    }
+
+    private void push(int run, String line, long lineBytes) {
+        if (size == lines.length) {
+            int capacity = (int) Math.min(maxLines, 2L * size);
+            lines = Arrays.copyOf(lines, capacity);
+            runs = Arrays.copyOf(runs, capacity);
+        }
+
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >> 1;
+            if (!less(run, line, runs[parent], lines[parent])) {
+                break;
+            }
+            lines[index] = lines[parent];
+            runs[index] = runs[parent];
+            index = parent;
+        }
+        lines[index] = line;
+        runs[index] = run;
+        bytes += lineBytes;
+    }
+
+    private String pop() {
+        String top = lines[0];
+        bytes -= sizeOf.applyAsLong(top);
+
+        int last = --size;
+        String line = lines[last];
+        int run = runs[last];
+        lines[last] = null;
+
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && less(runs[child + 1], lines[child + 1], runs[child], lines[child])) {
+                child++;
+            }
+            if (!less(runs[child], lines[child], run, line)) {
+                break;
+            }
+            lines[index] = lines[child];
+            runs[index] = runs[child];
+            index = child;
+        }
+        if (size > 0) {
+            lines[index] = line;
+            runs[index] = run;
+        }
+        return top;
+    }
+
+    private static boolean less(int run1, String line1, int run2, String line2) {
+        if (run1 != run2) {
+            return run1 < run2;
+        }
+        return line1.compareTo(line2) < 0;
+    }
+}
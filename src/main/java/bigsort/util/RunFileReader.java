@@ -0,0 +1,255 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import bigsort.util.api.LineReader;
+
+/**
+ * RunFileReader reads a run written by RunFileWriter. The footer is read first
+ * to find where the records end, then records are read in bulk blocks of about
+ * bufferSize bytes and every record is decoded straight from the block without
+ * scanning for line separators. A reader can also be limited to a range of
+ * records, i.e a key range located through the sparse index of the footer.
+ */
+public class RunFileReader implements LineReader {
+    private static final int MIN_BUFFER_SIZE = 8192;
+    private static final Metrics metrics = Metrics.global();
+    private FileChannel channel = null;
+    private ByteBuffer buffer = null;
+    private RunFooter footer = null;
+    private long unread = 0;
+    private long end = 0;
+    private int recordLength = 0;
+    private String line = null;
+    private boolean started = false;
+
+    public RunFileReader() {
+
+    }
+
+    public RunFileReader(Path path) throws IOException {
+        this(path, RunFileWriter.BLOCK_SIZE);
+    }
+
+    public RunFileReader(Path path, int bufferSize) throws IOException {
+        this(path, bufferSize, 0, -1);
+    }
+
+    /**
+     * Reads the records in [start, end) only, both must be record offsets.
+     *
+     * @param path
+     * @param bufferSize
+     * @param start
+     * @param end        offset after the last record, -1 means the footer
+     * @throws IOException
+     */
+    public RunFileReader(Path path, int bufferSize, long start, long end) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.footer = readFooter(channel, path);
+            this.end = end < 0 ? footer.getBytes() : Math.min(end, footer.getBytes());
+            if (start > this.end) {
+                throw new IOException(String.format("Range of %s starts after its end", path.toString()));
+            }
+            channel.position(start);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        this.unread = this.end - start;
+        this.buffer = ByteBuffer.allocate((int) Math.max(Math.min(bufferSize, unread), MIN_BUFFER_SIZE));
+        this.buffer.flip();
+    }
+
+    /**
+     * Reads only the footer of the run at path.
+     *
+     * @param path
+     * @return RunFooter
+     * @throws IOException
+     */
+    public static RunFooter footer(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readFooter(channel, path);
+        }
+    }
+
+    public RunFooter footer() {
+        return footer;
+    }
+
+    /**
+     * Offset of the next record to read.
+     *
+     * @return long
+     */
+    public long position() {
+        return end - unread - buffer.remaining();
+    }
+
+    /**
+     * UTF-8 bytes of the last read line.
+     *
+     * @return int
+     */
+    public int recordLength() {
+        return recordLength;
+    }
+
+    @Override
+    public LineReader create(Path path) throws IOException {
+        return new RunFileReader(path);
+    }
+
+    @Override
+    public LineReader create(Path path, int bufferSize) throws IOException {
+        return new RunFileReader(path, bufferSize);
+    }
+
+    @Override
+    public synchronized Optional<String> line() throws IOException {
+        return started ? Optional.ofNullable(line) : next();
+    }
+
+    @Override
+    public Optional<String> next() throws IOException {
+        return Optional.ofNullable(nextLine());
+    }
+
+    @Override
+    public String nextLine() throws IOException {
+        started = true;
+        if (unread == 0 && !buffer.hasRemaining()) {
+            line = null;
+            return line;
+        }
+
+        // a varint is 5 bytes at most
+        if (buffer.remaining() < 5) {
+            fill(5);
+        }
+        int length = getVarint();
+        if (buffer.remaining() < length) {
+            fill(length);
+        }
+
+        recordLength = length;
+        line = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return line;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+
+        }
+    }
+
+    /**
+     * Moves remaining bytes to the beginning of the buffer and reads the next
+     * block, the buffer grows if a record is longer than it.
+     */
+    private void fill(int required) throws IOException {
+        if (required > buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(required, 2 * buffer.capacity()));
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+
+        while (unread > 0 && buffer.position() < required) {
+            if (buffer.remaining() > unread) {
+                buffer.limit(buffer.position() + (int) unread);
+            }
+            long start = System.nanoTime();
+            int count = channel.read(buffer);
+            metrics.readWaited(System.nanoTime() - start);
+            if (count < 0) {
+                throw new IOException("Run ended before its footer");
+            }
+            unread -= count;
+        }
+
+        buffer.flip();
+        if (buffer.remaining() < required && unread == 0 && required > 5) {
+            throw new IOException("Run has a truncated record");
+        }
+    }
+
+    private int getVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Run has a malformed record length");
+    }
+
+    private static RunFooter readFooter(FileChannel channel, Path path) throws IOException {
+        long size = channel.size();
+        ByteBuffer trailer = ByteBuffer.allocate(RunFileWriter.TRAILER_SIZE);
+        if (size < RunFileWriter.TRAILER_SIZE) {
+            throw new IOException(String.format("%s is not a run file", path.toString()));
+        }
+        readFully(channel, trailer, size - RunFileWriter.TRAILER_SIZE);
+        int footerLength = trailer.getInt();
+        if (trailer.getInt() != RunFileWriter.MAGIC || footerLength < 28
+                || footerLength > size - RunFileWriter.TRAILER_SIZE) {
+            throw new IOException(String.format("%s is not a run file", path.toString()));
+        }
+
+        long offset = size - RunFileWriter.TRAILER_SIZE - footerLength;
+        ByteBuffer footer = ByteBuffer.allocate(footerLength);
+        readFully(channel, footer, offset);
+        long records = footer.getLong();
+        long bytes = footer.getLong();
+        if (bytes != offset) {
+            throw new IOException(String.format("%s is not a run file", path.toString()));
+        }
+
+        String min = getString(footer);
+        String max = getString(footer);
+        int entries = footer.getInt();
+        List<RunFooter.IndexEntry> index = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            long entryOffset = footer.getLong();
+            long record = footer.getLong();
+            long textBytes = footer.getLong();
+            index.add(new RunFooter.IndexEntry(entryOffset, record, textBytes, getString(footer)));
+        }
+        return new RunFooter(records, bytes, records == 0 ? null : min, records == 0 ? null : max, index);
+    }
+
+    private static String getString(ByteBuffer footer) {
+        byte[] bytes = new byte[footer.getInt()];
+        footer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of run");
+            }
+        }
+        buffer.flip();
+    }
+}
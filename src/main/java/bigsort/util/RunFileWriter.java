@@ -0,0 +1,189 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import bigsort.util.api.FileWriter;
+
+/**
+ * RunFileWriter writes split and merge runs in a binary format instead of
+ * newline separated text. Every line is written as a varint length followed by
+ * its UTF-8 bytes, records are packed into blocks of BLOCK_SIZE bytes which are
+ * written to the file channel at once. A footer holds the number of records,
+ * the number of record bytes, the min and max line and a sparse index of about
+ * one record per block, followed by the footer length and a magic number at the
+ * very end of the file. A run is sorted, so min and max are its first and last
+ * line, which are its key bounds too when it's sorted by a KeySpec.
+ *
+ * <pre>
+ * records | records(8) bytes(8) minLength(4) min maxLength(4) max
+ *           entries(4) [ offset(8) record(8) textBytes(8) length(4) line ]* | footerLength(4) MAGIC(4)
+ * </pre>
+ *
+ * Lines longer than MAX_INDEX_LINE bytes aren't indexed, the next short line
+ * is.
+ *
+ * A run is written at once, so APPEND is rejected with an
+ * IllegalArgumentException. RunFileReader reads the records back.
+ */
+public class RunFileWriter implements FileWriter {
+    static final int MAGIC = 0x4253524e;
+    static final int TRAILER_SIZE = 8;
+    static final int BLOCK_SIZE = 1024 * 1024;
+    static final int MAX_INDEX_LINE = 1024;
+    private static final Metrics metrics = Metrics.global();
+
+    @Override
+    public Path write(Path path, String[] data, OpenOption... options) throws IOException {
+        return write(path, Arrays.asList(data), options);
+    }
+
+    @Override
+    public Path write(Path path, Iterable<String> data, OpenOption... options) throws IOException {
+        Set<OpenOption> openOptions = new HashSet<>(Arrays.asList(options));
+        if (openOptions.contains(StandardOpenOption.APPEND)) {
+            throw new IllegalArgumentException(String.format("Run %s can't be appended", path.toString()));
+        }
+        openOptions.add(StandardOpenOption.WRITE);
+        openOptions.add(StandardOpenOption.TRUNCATE_EXISTING);
+
+        try (FileChannel channel = FileChannel.open(path, openOptions)) {
+            ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE);
+            long records = 0;
+            long bytes = 0;
+            byte[] first = null;
+            byte[] last = null;
+            List<byte[]> indexLines = new ArrayList<>();
+            List<long[]> indexEntries = new ArrayList<>();
+            long nextIndexOffset = 0;
+            long textBytes = 0;
+
+            for (String line : data) {
+                byte[] record = line.getBytes(StandardCharsets.UTF_8);
+                if (bytes >= nextIndexOffset && record.length <= MAX_INDEX_LINE) {
+                    indexLines.add(record);
+                    indexEntries.add(new long[] { bytes, records, textBytes });
+                    nextIndexOffset = bytes + BLOCK_SIZE;
+                }
+                bytes += put(channel, block, record);
+                textBytes += record.length;
+                records++;
+
+                if (first == null) {
+                    first = record;
+                }
+                last = record;
+            }
+
+            writeFooter(channel, block, records, bytes, first, last, indexEntries, indexLines);
+            flush(channel, block);
+        }
+        return path;
+    }
+
+    @Override
+    public Path createTempDirectory(Path dir, String prefix, FileAttribute<?>... attrs) throws IOException {
+        return Files.createTempDirectory(dir, prefix, attrs);
+    }
+
+    @Override
+    public void delete(Path path) throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Returns the number of bytes taken by the record.
+     */
+    private static int put(FileChannel channel, ByteBuffer block, byte[] record) throws IOException {
+        int header = varintSize(record.length);
+        if (block.remaining() < header + record.length) {
+            flush(channel, block);
+        }
+
+        putVarint(block, record.length);
+        if (block.remaining() < record.length) {
+            // longer than a block
+            flush(channel, block);
+            write(channel, ByteBuffer.wrap(record));
+        } else {
+            block.put(record);
+        }
+        return header + record.length;
+    }
+
+    private static void writeFooter(FileChannel channel, ByteBuffer block, long records, long bytes, byte[] min,
+            byte[] max, List<long[]> indexEntries, List<byte[]> indexLines) throws IOException {
+        byte[] first = min == null ? new byte[0] : min;
+        byte[] last = max == null ? new byte[0] : max;
+        int indexSize = 4;
+        for (byte[] line : indexLines) {
+            indexSize += 8 + 8 + 8 + 4 + line.length;
+        }
+
+        ByteBuffer footer = ByteBuffer
+                .allocate(8 + 8 + 4 + first.length + 4 + last.length + indexSize + TRAILER_SIZE);
+        footer.putLong(records).putLong(bytes);
+        footer.putInt(first.length).put(first);
+        footer.putInt(last.length).put(last);
+        footer.putInt(indexLines.size());
+        for (int i = 0; i < indexLines.size(); i++) {
+            long[] entry = indexEntries.get(i);
+            footer.putLong(entry[0]).putLong(entry[1]).putLong(entry[2]);
+            footer.putInt(indexLines.get(i).length).put(indexLines.get(i));
+        }
+        footer.putInt(footer.position()).putInt(MAGIC);
+        footer.flip();
+
+        if (block.remaining() < footer.remaining()) {
+            flush(channel, block);
+        }
+        if (block.remaining() < footer.remaining()) {
+            write(channel, footer);
+            return;
+        }
+        block.put(footer);
+    }
+
+    private static void putVarint(ByteBuffer block, int value) {
+        while ((value & ~0x7f) != 0) {
+            block.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        block.put((byte) value);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer block) throws IOException {
+        block.flip();
+        write(channel, block);
+        block.clear();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long start = System.nanoTime();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        metrics.writeWaited(System.nanoTime() - start);
+    }
+}
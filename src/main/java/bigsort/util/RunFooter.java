@@ -0,0 +1,92 @@
+package bigsort.util;
+
+import java.util.List;
+
+/**
+ * RunFooter is the metadata kept at the end of a run written by RunFileWriter.
+ * Min and max are the first and last line of the run in its sorted order, by
+ * whole lines or by key, and null if the run has no records. The sparse index has an
+ * entry for about every BLOCK_SIZE bytes of records, so a line can be located
+ * by reading a single block.
+ */
+public class RunFooter {
+    private final long records;
+    private final long bytes;
+    private final String min;
+    private final String max;
+    private final List<IndexEntry> index;
+
+    public RunFooter(long records, long bytes, String min, String max) {
+        this(records, bytes, min, max, List.of());
+    }
+
+    public RunFooter(long records, long bytes, String min, String max, List<IndexEntry> index) {
+        this.records = records;
+        this.bytes = bytes;
+        this.min = min;
+        this.max = max;
+        this.index = index;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Size of the records including their length headers, which is also the
+     * offset of the footer in the file.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public String getMin() {
+        return min;
+    }
+
+    public String getMax() {
+        return max;
+    }
+
+    /**
+     * Index entries in record order, which is the sorted order of the run.
+     */
+    public List<IndexEntry> getIndex() {
+        return index;
+    }
+
+    /**
+     * IndexEntry points to a record of the run. Record and text bytes count the
+     * records before it and their UTF-8 bytes without length headers, so the
+     * size of any range of lines as text is known without reading it.
+     */
+    public static class IndexEntry {
+        private final long offset;
+        private final long record;
+        private final long textBytes;
+        private final String line;
+
+        public IndexEntry(long offset, long record, long textBytes, String line) {
+            this.offset = offset;
+            this.record = record;
+            this.textBytes = textBytes;
+            this.line = line;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getRecord() {
+            return record;
+        }
+
+        public long getTextBytes() {
+            return textBytes;
+        }
+
+        public String getLine() {
+            return line;
+        }
+    }
+}
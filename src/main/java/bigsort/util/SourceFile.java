@@ -0,0 +1,25 @@
+package bigsort.util;
+
+import java.nio.file.Path;
+
+/**
+ * SourceFile is an input file found by DirectoryWalker along with its size at
+ * the time it was listed.
+ */
+public class SourceFile {
+    private final Path path;
+    private final long size;
+
+    public SourceFile(Path path, long size) {
+        this.path = path;
+        this.size = size;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,187 @@
+package bigsort.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * SplitPipeline overlaps reading, sorting and writing of split chunks. The
+ * calling thread is the reader stage, it fills chunks from the stream and
+ * hands them to a pool of sorter workers, which hand sorted chunks to a single
+ * writer thread. A written chunk goes back to the free pool to be filled
+ * again.
+ *
+ * Only (workers + 2) chunks exist, so the reader blocks when every chunk is
+ * being sorted or written. That bounds the queues between the stages and keeps
+ * memory capped: each chunk gets an equal share of the memory budget.
+ */
+public class SplitPipeline {
+    private final int workers;
+    private final int maxLines;
+    private final long maxBytes;
+    private final ToLongFunction<String> sizeOf;
+    private final Consumer<Chunk> sortStage;
+    private final Consumer<Chunk> writeStage;
+    private final BlockingQueue<Chunk> freeChunks;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private ExecutorService sorters;
+    private ExecutorService writer;
+    private Chunk current;
+    private int nextId = 0;
+
+    public SplitPipeline(int workers, int maxLines, long memory, ToLongFunction<String> sizeOf,
+            Consumer<Chunk> sortStage, Consumer<Chunk> writeStage) {
+        this.workers = Math.max(workers, 1);
+        this.maxLines = maxLines;
+        this.maxBytes = memory / (this.workers + 2);
+        this.sizeOf = sizeOf;
+        this.sortStage = sortStage;
+        this.writeStage = writeStage;
+        this.freeChunks = new ArrayBlockingQueue<>(this.workers + 2);
+        for (int i = 0; i < this.workers + 2; i++) {
+            freeChunks.add(new Chunk(maxLines));
+        }
+    }
+
+    /**
+     * Reads the whole stream and returns when every chunk has been written. The
+     * first failure of any stage is rethrown on the calling thread.
+     *
+     * @param stream
+     */
+    public void process(Stream<String> stream) {
+        process(stream, 0);
+    }
+
+    /**
+     * Like process(stream) but chunk ids start at firstId, so several streams
+     * can be split one after another without reusing an id.
+     *
+     * @param stream
+     * @param firstId
+     * @return id of the next chunk
+     */
+    public int process(Stream<String> stream, int firstId) {
+        nextId = firstId;
+        sorters = Executors.newFixedThreadPool(workers, threadFactory("bigsort-sorter"));
+        writer = Executors.newSingleThreadExecutor(threadFactory("bigsort-writer"));
+
+        try {
+            current = takeChunk();
+            stream.forEach(line -> {
+                long size = sizeOf.applyAsLong(line);
+                synchronized (this) {
+                    add(line, size);
+                }
+            });
+
+            synchronized (this) {
+                if (!current.isEmpty()) {
+                    submit(current);
+                }
+                current = null;
+            }
+
+            await(sorters);
+            await(writer);
+        } finally {
+            sorters.shutdownNow();
+            writer.shutdownNow();
+        }
+
+        rethrowFailure();
+        return nextId;
+    }
+
+    private void add(String line, long size) {
+        if (current.size() == maxLines || (!current.isEmpty() && current.bytes() + size > maxBytes)) {
+            submit(current);
+            current = takeChunk();
+        }
+        current.add(line, size, maxLines);
+    }
+
+    private void submit(Chunk chunk) {
+        sorters.execute(() -> {
+            try {
+                sortStage.accept(chunk);
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+                freeChunks.add(chunk);
+                return;
+            }
+            try {
+                writer.execute(() -> write(chunk));
+            } catch (RejectedExecutionException e) {
+                freeChunks.add(chunk);
+            }
+        });
+    }
+
+    private void write(Chunk chunk) {
+        try {
+            if (failure.get() == null) {
+                writeStage.accept(chunk);
+            }
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            freeChunks.add(chunk);
+        }
+    }
+
+    private Chunk takeChunk() {
+        try {
+            Chunk chunk = freeChunks.take();
+            rethrowFailure();
+            chunk.reset(nextId++);
+            return chunk;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void await(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void rethrowFailure() {
+        Throwable e = failure.get();
+        if (e == null) {
+            return;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new RuntimeException(e);
+    }
+
+    static ThreadFactory threadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, String.format("%s-%d", name, counter.getAndIncrement()));
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,132 @@
+package bigsort.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import bigsort.util.api.LineReader;
+
+/**
+ * TextRunReader lets sorted text files, like the output of an earlier sort, be
+ * merged together with runs of another format. Paths given as text runs are
+ * created by the text reader and every other path by the run reader.
+ *
+ * A text run isn't written by this sort, so its order is checked while it's
+ * read, one comparison per line. A line smaller than the line before it fails
+ * the merge with an IOException. With a KeySpec the key parsed by the check is
+ * kept, so the merge can take it by key() instead of parsing the line again.
+ */
+public class TextRunReader implements LineReader {
+    private final LineReader runReader;
+    private final LineReader textReader;
+    private final Collection<Path> textRuns;
+    private final KeySpec keySpec;
+    private final Path path;
+    private String previous = null;
+    private KeySpec.Key previousKey = null;
+
+    public TextRunReader(LineReader runReader, LineReader textReader, Collection<Path> textRuns) {
+        this(runReader, textReader, textRuns, null);
+    }
+
+    /**
+     * @param runReader  creates readers of runs
+     * @param textReader creates readers of text runs
+     * @param textRuns   paths of sorted text files, may be added to later
+     * @param keySpec    order of the text runs, null means whole lines
+     */
+    public TextRunReader(LineReader runReader, LineReader textReader, Collection<Path> textRuns,
+            KeySpec keySpec) {
+        this.runReader = runReader;
+        this.textReader = textReader;
+        this.textRuns = textRuns;
+        this.keySpec = keySpec;
+        this.path = null;
+    }
+
+    private TextRunReader(LineReader reader, Path path, KeySpec keySpec) {
+        this.runReader = null;
+        this.textReader = reader;
+        this.textRuns = List.of(path);
+        this.keySpec = keySpec;
+        this.path = path;
+    }
+
+    @Override
+    public LineReader create(Path path) throws IOException {
+        if (!textRuns.contains(path)) {
+            return runReader.create(path);
+        }
+        return new TextRunReader(textReader.create(path), path, keySpec);
+    }
+
+    @Override
+    public LineReader create(Path path, int bufferSize) throws IOException {
+        if (!textRuns.contains(path)) {
+            return runReader.create(path, bufferSize);
+        }
+        return new TextRunReader(textReader.create(path, bufferSize), path, keySpec);
+    }
+
+    @Override
+    public Optional<String> line() throws IOException {
+        Optional<String> line = textReader.line();
+        if (previous == null && line.isPresent()) {
+            check(line.get());
+        }
+        return line;
+    }
+
+    @Override
+    public Optional<String> next() throws IOException {
+        return Optional.ofNullable(nextLine());
+    }
+
+    @Override
+    public String nextLine() throws IOException {
+        String line = textReader.nextLine();
+        if (line != null) {
+            check(line);
+        }
+        return line;
+    }
+
+    /**
+     * Returns the key of the last line read if it's parsed by the same KeySpec
+     * already, else parses it.
+     */
+    KeySpec.Key key(KeySpec keySpec, String line) {
+        if (keySpec == this.keySpec && previousKey != null && previousKey.line() == line) {
+            return previousKey;
+        }
+        return keySpec.key(line);
+    }
+
+    @Override
+    public void close() {
+        if (path != null) {
+            textReader.close();
+        }
+    }
+
+    private void check(String line) throws IOException {
+        if (keySpec == null) {
+            if (previous != null && previous.compareTo(line) > 0) {
+                throw notSorted(line);
+            }
+        } else {
+            KeySpec.Key key = keySpec.key(line);
+            if (previousKey != null && keySpec.compare(previousKey, key) > 0) {
+                throw notSorted(line);
+            }
+            previousKey = key;
+        }
+        previous = line;
+    }
+
+    private IOException notSorted(String line) {
+        return new IOException(String.format("%s is not sorted, \"%s\" comes after \"%s\"", path, line, previous));
+    }
+}
@@ -0,0 +1,83 @@
+package bigsort.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * UniqueLines drops duplicates of sorted lines. Equal lines are adjacent once
+ * sorted, so only the previous line has to be kept, never a set of all lines.
+ * Lines sorted by a KeySpec are fine too, as equal keys are ordered by the
+ * whole line.
+ */
+public final class UniqueLines {
+
+    private UniqueLines() {
+    }
+
+    /**
+     * Moves unique lines of lines[0, size) to the front and clears the rest.
+     *
+     * @param lines sorted lines
+     * @param size
+     * @return number of unique lines
+     */
+    public static int compact(String[] lines, int size) {
+        if (size == 0) {
+            return 0;
+        }
+
+        int unique = 1;
+        for (int i = 1; i < size; i++) {
+            if (!lines[i].equals(lines[unique - 1])) {
+                lines[unique++] = lines[i];
+            }
+        }
+        Arrays.fill(lines, unique, size, null);
+        return unique;
+    }
+
+    /**
+     * @param lines sorted sequential stream
+     * @return Stream<String> without adjacent duplicates
+     */
+    public static Stream<String> filter(Stream<String> lines) {
+        String[] previous = new String[1];
+        return lines.filter(line -> {
+            if (line.equals(previous[0])) {
+                return false;
+            }
+            previous[0] = line;
+            return true;
+        });
+    }
+
+    public static Iterator<String> filter(Iterator<String> lines) {
+        return new Iterator<String>() {
+            private String previous = null;
+            private String next = null;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && lines.hasNext()) {
+                    String line = lines.next();
+                    if (!line.equals(previous)) {
+                        next = line;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                previous = next;
+                next = null;
+                return previous;
+            }
+        };
+    }
+}
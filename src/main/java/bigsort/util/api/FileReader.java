@@ -1,8 +1,10 @@
 package bigsort.util.api;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.stream.Stream;
 
 /**
@@ -54,7 +56,26 @@ public interface FileReader {
     Stream<String> lines(Path dirPath, String[] fileExtensions, Charset charset) throws IOException;
 
     /**
-     * Makes a stream of all files in the given directory.
+     * Reads all lines of the given files. Specified charset will be used to read
+     * files.
+     * 
+     * @param files
+     * @param charset
+     * @return
+     * @throws IOException
+     */
+    default Stream<String> lines(List<Path> files, Charset charset) throws IOException {
+        return files.stream().flatMap(path -> {
+            try {
+                return lines(path, charset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Makes a stream of all files in the given directory, ordered by path.
      * 
      * @param dirPath
      * @param fileExtensions
@@ -14,4 +14,6 @@ public interface FileWriter {
     Path write(Path path, Iterable<String> data, OpenOption... options) throws IOException;
 
     Path createTempDirectory(Path dir, String prefix, FileAttribute<?>... attrs) throws IOException;
+
+    void delete(Path path) throws IOException;
 }
\ No newline at end of file
@@ -17,6 +17,20 @@ public interface LineReader extends AutoCloseable {
      */
     LineReader create(Path path) throws IOException;
 
+    /**
+     * Creates and returns the newly created LineReader with given path, which
+     * buffers about bufferSize bytes of the file. Implementations without a
+     * configurable buffer can ignore the size.
+     * 
+     * @param path
+     * @param bufferSize
+     * @return LineReader
+     * @throws IOException
+     */
+    default LineReader create(Path path, int bufferSize) throws IOException {
+        return create(path);
+    }
+
     /**
      * Get current line but don't read next line. If this is called first time, it
      * will read the first line.
@@ -34,6 +48,18 @@ public interface LineReader extends AutoCloseable {
      */
     Optional<String> next() throws IOException;
 
+    /**
+     * Read next line like next() but return the raw value, null means end of file.
+     * Merge loops should prefer this one as it doesn't allocate an Optional for
+     * every line.
+     * 
+     * @return String or null
+     * @throws IOException
+     */
+    default String nextLine() throws IOException {
+        return next().orElse(null);
+    }
+
     @Override
     void close();
 }
\ No newline at end of file
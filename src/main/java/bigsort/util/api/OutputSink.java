@@ -0,0 +1,41 @@
+package bigsort.util.api;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * OutputSink is opened once for the whole output, lines are streamed into it
+ * and it is committed at the end. Until commit() the output isn't visible at
+ * its path, closing an uncommitted sink discards what was written.
+ */
+public interface OutputSink extends AutoCloseable {
+    /**
+     * Creates and returns a new OutputSink for the given path, which buffers
+     * about bufferSize bytes before writing them.
+     * 
+     * @param path
+     * @param bufferSize
+     * @return OutputSink
+     * @throws IOException
+     */
+    OutputSink create(Path path, int bufferSize) throws IOException;
+
+    /**
+     * Writes a line followed by the line separator.
+     * 
+     * @param line
+     * @throws IOException
+     */
+    void write(String line) throws IOException;
+
+    /**
+     * Writes all buffered lines, makes them durable and moves the output to its
+     * path.
+     * 
+     * @throws IOException
+     */
+    void commit() throws IOException;
+
+    @Override
+    void close();
+}
@@ -19,6 +19,19 @@ public interface SortedFileReader extends AutoCloseable {
      */
     void initialize(List<Path> files, int batchSize) throws IOException;
 
+    /**
+     * Initializes by creating LineReaders for provided files, each of them
+     * buffering about bufferSize bytes.
+     * 
+     * @param files
+     * @param batchSize
+     * @param bufferSize
+     * @throws IOException
+     */
+    default void initialize(List<Path> files, int batchSize, int bufferSize) throws IOException {
+        initialize(files, batchSize);
+    }
+
     /**
      * Returns next most ascending line among all current lines pointing by
      * LineReaders.
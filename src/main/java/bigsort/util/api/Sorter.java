@@ -1,5 +1,7 @@
 package bigsort.util.api;
 
+import java.util.Arrays;
+
 /**
  * Sorter
  */
@@ -10,4 +12,23 @@ public interface Sorter {
      * @param data
      */
     void sort(String[] data);
+
+    /**
+     * Sorts the range [fromIndex, toIndex) of specified array of strings in
+     * ascending order.
+     * 
+     * @param data
+     * @param fromIndex
+     * @param toIndex
+     */
+    default void sort(String[] data, int fromIndex, int toIndex) {
+        if (fromIndex == 0 && toIndex == data.length) {
+            sort(data);
+            return;
+        }
+
+        String[] range = Arrays.copyOfRange(data, fromIndex, toIndex);
+        sort(range);
+        System.arraycopy(range, 0, data, fromIndex, range.length);
+    }
 }
\ No newline at end of file
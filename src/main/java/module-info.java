@@ -2,6 +2,7 @@ module bigsort {
     requires java.base;
     requires java.logging;
     requires java.management;
+    requires jdk.management;
 
     exports bigsort;
     exports bigsort.util;
@@ -1,16 +1,22 @@
 package bigsort;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.stream.Collectors;
@@ -23,12 +29,23 @@ import org.junit.jupiter.api.io.TempDir;
 import bigsort.fake.FakeFileReader;
 import bigsort.fake.FakeFileWriter;
 import bigsort.fake.FakeLineReader;
+import bigsort.fake.FakeOutputSink;
+import bigsort.util.ConcurrentDirectoryReader;
+import bigsort.util.DirectoryWalker;
 import bigsort.util.FastFileReader;
 import bigsort.util.FastFileWriter;
 import bigsort.util.FastLineReader;
 import bigsort.util.FastSortedFileReader;
 import bigsort.util.FastSorter;
-import bigsort.util.StreamUtils;
+import bigsort.util.FileChannelOutputSink;
+import bigsort.util.KeySpec;
+import bigsort.util.LoserTreeSortedFileReader;
+import bigsort.util.Manifest;
+import bigsort.util.Metrics;
+import bigsort.util.PartitionedRunMerger;
+import bigsort.util.RunFileReader;
+import bigsort.util.RunFileWriter;
+import bigsort.util.TextRunReader;
 import bigsort.util.api.FileReader;
 import bigsort.util.api.FileWriter;
 import bigsort.util.api.SortedFileReader;
@@ -70,9 +87,8 @@ public class BigSortTest {
         FileReader reader = new FakeFileReader();
         SortedFileReader sortedReader = new FastSortedFileReader(new FakeLineReader());
         Sorter sorter = new FastSorter();
-        StreamUtils streamUtils = new StreamUtils();
-        Splitter spliter = new Splitter(reader, writer, sorter, streamUtils);
-        Merger merger = new Merger(sortedReader, writer, streamUtils);
+        Splitter spliter = new Splitter(reader, writer, sorter);
+        Merger merger = new Merger(sortedReader, writer, new FakeOutputSink());
         BigSort bigSort = new BigSort(params, writer, spliter, merger);
 
         // sort and get sorted words
@@ -82,6 +98,7 @@ public class BigSortTest {
         // sort input words and assert
         Collections.sort(inputWords);
         assertEquals(inputWords, actual);
+        assertEquals(List.of("split", "merge"), new ArrayList<>(bigSort.getMeasurement().getPhaseTimes().keySet()));
     }
 
     @Test
@@ -109,9 +126,89 @@ public class BigSortTest {
         FileReader reader = new FakeFileReader();
         SortedFileReader sortedReader = new FastSortedFileReader(new FakeLineReader());
         Sorter sorter = new FastSorter();
-        StreamUtils streamUtils = new StreamUtils();
-        Splitter spliter = new Splitter(reader, writer, sorter, streamUtils);
-        Merger merger = new Merger(sortedReader, writer, streamUtils);
+        Splitter spliter = new Splitter(reader, writer, sorter);
+        Merger merger = new Merger(sortedReader, writer, new FakeOutputSink());
+        BigSort bigSort = new BigSort(params, writer, spliter, merger);
+
+        // sort and get sorted words
+        bigSort.sort();
+        List<String> actual = TestUtil.getFile(destPath);
+
+        // sort input words and assert
+        Collections.sort(inputWords);
+        assertEquals(inputWords, actual);
+    }
+
+    @Test
+    public void sortsFilesWithMultipleMergePasses() throws IOException {
+        Path srcPath = Path.of("fake", "test");
+        Path destPath = Path.of("fake", "out.txt");
+        int NO_OF_Files = 7;
+
+        // create fake files
+        FileWriter writer = new FakeFileWriter();
+        List<String> inputWords = new ArrayList<>();
+        for (int i = 0; i < NO_OF_Files; i++) {
+            Path path = srcPath.resolve(String.format("test-%d.txt", i));
+            List<String> words = TestUtil.randomWords(9, 14, 11).collect(Collectors.toList());
+            inputWords.addAll(words);
+            writer.write(path, words.stream()::iterator);
+        }
+
+        // build params, small k makes much more split files than the fan-in
+        int k = 3;
+        String[] extensions = { ".txt" };
+        Params params = new Params(srcPath, Optional.of(extensions), destPath, k, srcPath);
+
+        // make BigSort instance
+        FileReader reader = new FakeFileReader();
+        SortedFileReader sortedReader = new LoserTreeSortedFileReader(new FakeLineReader());
+        Sorter sorter = new FastSorter();
+        Splitter spliter = new Splitter(reader, writer, sorter);
+        Merger merger = new Merger(sortedReader, writer, new FakeOutputSink());
+        BigSort bigSort = new BigSort(params, writer, spliter, merger);
+
+        // sort and get sorted words
+        bigSort.sort();
+        List<String> actual = TestUtil.getFile(destPath);
+
+        // sort input words and assert
+        Collections.sort(inputWords);
+        assertEquals(inputWords, actual);
+
+        // consumed runs are deleted from work directory
+        assertTrue(TestUtil.getFileSystem().keySet().stream()
+                .noneMatch(path -> path.getFileName().toString().startsWith("merge-")));
+    }
+
+    @Test
+    public void sortsFilesWithReplacementSelection() throws IOException {
+        Path srcPath = Path.of("fake", "test");
+        Path destPath = Path.of("fake", "out.txt");
+        int NO_OF_Files = 10;
+
+        // create fake files
+        FileWriter writer = new FakeFileWriter();
+        List<String> inputWords = new ArrayList<>();
+        for (int i = 0; i < NO_OF_Files; i++) {
+            Path path = srcPath.resolve(String.format("test-%d.txt", i));
+            List<String> words = TestUtil.randomWords(34, 82, 93).collect(Collectors.toList());
+            inputWords.addAll(words);
+            writer.write(path, words.stream()::iterator);
+        }
+
+        // build params
+        int k = 20;
+        String[] extensions = { ".txt" };
+        Params params = new Params(srcPath, Optional.of(extensions), destPath, k, srcPath);
+        params.setSplitStrategy(Params.SplitStrategy.REPLACEMENT);
+
+        // make BigSort instance
+        FileReader reader = new FakeFileReader();
+        SortedFileReader sortedReader = new LoserTreeSortedFileReader(new FakeLineReader());
+        Sorter sorter = new FastSorter();
+        Splitter spliter = new Splitter(reader, writer, sorter);
+        Merger merger = new Merger(sortedReader, writer, new FakeOutputSink());
         BigSort bigSort = new BigSort(params, writer, spliter, merger);
 
         // sort and get sorted words
@@ -146,9 +243,541 @@ public class BigSortTest {
         FileReader reader = new FastFileReader();
         SortedFileReader sortedReader = new FastSortedFileReader(new FastLineReader());
         Sorter sorter = new FastSorter();
-        StreamUtils streamUtils = new StreamUtils();
-        Splitter spliter = new Splitter(reader, writer, sorter, streamUtils);
-        Merger merger = new Merger(sortedReader, writer, streamUtils);
+        Splitter spliter = new Splitter(reader, writer, sorter);
+        Merger merger = new Merger(sortedReader, writer, new FileChannelOutputSink());
+        BigSort bigSort = new BigSort(params, writer, spliter, merger);
+
+        // sort and get sorted words
+        bigSort.sort();
+        List<String> actual = new ArrayList<>();
+        reader.lines(destPath).forEach(actual::add);
+
+        // get expected list and assert
+        List<String> expected = new ArrayList<>();
+        reader.lines(srcPath, extensions).forEach(expected::add);
+        Collections.sort(expected);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void sortsNestedFilesMatchingGlobs(@TempDir Path tempDir) throws IOException {
+        Path srcPath = Path.of(tempDir.toString(), "src");
+        Path destPath = Path.of(tempDir.toString(), "out.txt");
+
+        // create files in date/hour directories
+        FileWriter writer = new FastFileWriter();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Path dir = Files.createDirectories(srcPath.resolve(String.format("day-%d/hour-%d", i / 3, i % 3)));
+            List<String> words = TestUtil.randomWords(20, 34, 31).collect(Collectors.toList());
+            writer.write(dir.resolve("app.log"), words);
+            writer.write(dir.resolve("app.tmp"), TestUtil.randomWords(10)::iterator);
+            if (i % 3 != 2) {
+                expected.addAll(words);
+            }
+        }
+
+        // "**/*.log" matches top level files too
+        List<String> top = TestUtil.randomWords(20, 34, 31).collect(Collectors.toList());
+        writer.write(srcPath.resolve("top.log"), top);
+        expected.addAll(top);
+
+        // build params, no file extensions are needed with include patterns
+        Params params = new Params(srcPath, Optional.empty(), destPath, 50, srcPath);
+        params.setIncludes(new String[] { "**/*.log" });
+        params.setExcludes(new String[] { "*/hour-2" });
+
+        // make BigSort instance
+        FileReader reader = new ConcurrentDirectoryReader(new FastFileReader(), 2);
+        SortedFileReader sortedReader = new LoserTreeSortedFileReader(new FastLineReader());
+        Splitter spliter = new Splitter(reader, writer, new FastSorter(), new DirectoryWalker(2));
+        Merger merger = new Merger(sortedReader, writer, new FileChannelOutputSink());
+        BigSort bigSort = new BigSort(params, writer, spliter, merger);
+
+        // sort and assert
+        bigSort.sort();
+        Collections.sort(expected);
+        assertEquals(expected, Files.readAllLines(destPath));
+    }
+
+    @Test
+    public void sortsRealFilesWithBinaryRuns(@TempDir Path tempDir) throws IOException {
+        Path srcPath = Path.of(tempDir.toString(), "src");
+        Path destPath = Path.of(tempDir.toString(), "out.txt");
+        int NO_OF_Files = 5;
+
+        // create files
+        Files.createDirectories(srcPath);
+        FileWriter writer = new FastFileWriter();
+        for (int i = 0; i < NO_OF_Files; i++) {
+            Path path = srcPath.resolve(String.format("test-%d.txt", i));
+            writer.write(path, TestUtil.randomWords(20, 34, 31)::iterator);
+        }
+
+        // build params, small k makes intermediate merge runs
+        int k = 4;
+        String[] extensions = { ".txt" };
+        Params params = new Params(srcPath, Optional.of(extensions), destPath, k, srcPath);
+
+        // make BigSort instance, runs are binary but output is text
+        FileReader reader = new FastFileReader();
+        FileWriter runWriter = new RunFileWriter();
+        SortedFileReader sortedReader = new LoserTreeSortedFileReader(new RunFileReader());
+        Splitter spliter = new Splitter(reader, runWriter, new FastSorter());
+        Merger merger = new Merger(sortedReader, runWriter, new FileChannelOutputSink());
+        BigSort bigSort = new BigSort(params, writer, spliter, merger);
+
+        // sort and get sorted words
+        bigSort.sort();
+        List<String> actual = new ArrayList<>();
+        reader.lines(destPath).forEach(actual::add);
+
+        // get expected list and assert
+        List<String> expected = new ArrayList<>();
+        reader.lines(srcPath, extensions).forEach(expected::add);
+        Collections.sort(expected);
+        assertEquals(expected, actual);
+
+        // metrics of the sort
+        Metrics metrics = bigSort.getMeasurement().getMetrics();
+        assertEquals(expected.size(), metrics.getLinesRead());
+        assertEquals((expected.size() + k - 1) / k, metrics.getRunsWritten());
+        assertEquals(metrics.getRunsWritten(), metrics.getRunsSorted());
+        assertTrue(metrics.getMergedRunsWritten() > 0);
+        assertTrue(metrics.getMergeComparisons() > 0);
+        assertEquals(Files.size(destPath), metrics.getOutputBytes());
+        assertEquals("", metrics.getPhase());
+        assertEquals(List.of("split", "merge"), new ArrayList<>(metrics.getPhaseMillis().keySet()));
+    }
+
+    @Test
+    public void sortsRealFilesByKey(@TempDir Path tempDir) throws IOException {
+        Path srcPath = Path.of(tempDir.toString(), "src");
+        Path destPath = Path.of(tempDir.toString(), "out.txt");
+        int NO_OF_Files = 5;
+
+        // create tab separated files, second field is a number
+        Files.createDirectories(srcPath);
+        FileWriter writer = new FastFileWriter();
+        Random random = new Random(14);
+        for (int i = 0; i < NO_OF_Files; i++) {
+            Path path = srcPath.resolve(String.format("test-%d.txt", i));
+            List<String> lines = TestUtil.randomWords(40, 60, 50)
+                    .map(word -> word + "\t" + (random.nextInt(200) - 100)).collect(Collectors.toList());
+            writer.write(path, lines);
+        }
+
+        // build params, numeric key in descending order
+        int k = 4;
+        String[] extensions = { ".txt" };
+        Params params = new Params(srcPath, Optional.of(extensions), destPath, k, srcPath);
+        KeySpec keySpec = KeySpec.parse("2nr", '\t');
+        params.setKeySpec(Optional.of(keySpec));
+
+        // make BigSort instance
+        FileReader reader = new FastFileReader();
+        FileWriter runWriter = new RunFileWriter();
+        SortedFileReader sortedReader = new LoserTreeSortedFileReader(new RunFileReader(), keySpec);
+        Splitter spliter = new Splitter(reader, runWriter, new FastSorter());
+        Merger merger = new Merger(sortedReader, runWriter, new FileChannelOutputSink());
+        BigSort bigSort = new BigSort(params, writer, spliter, merger);
+
+        // sort and get sorted lines
+        bigSort.sort();
+        List<String> actual = new ArrayList<>();
+        reader.lines(destPath).forEach(actual::add);
+
+        // get expected list and assert
+        List<String> expected = new ArrayList<>();
+        reader.lines(srcPath, extensions).forEach(expected::add);
+        Comparator<String> byNumber = Comparator.comparingInt(line -> Integer.parseInt(line.split("\t")[1]));
+        expected.sort(byNumber.reversed().thenComparing(Comparator.naturalOrder()));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void sortsRealFilesUnique(@TempDir Path tempDir) throws IOException {
+        Path srcPath = Path.of(tempDir.toString(), "src");
+        Path destPath = Path.of(tempDir.toString(), "out.txt");
+        int NO_OF_Files = 5;
+
+        // create files with many duplicates inside and across files
+        Files.createDirectories(srcPath);
+        FileWriter writer = new FastFileWriter();
+        for (int i = 0; i < NO_OF_Files; i++) {
+            Path path = srcPath.resolve(String.format("test-%d.txt", i));
+            List<String> lines = TestUtil.randomWords(60, 80, 70).map(word -> word.substring(0, word.indexOf('-')))
+                    .collect(Collectors.toList());
+            writer.write(path, lines);
+        }
+
+        // build params, small k makes intermediate merge runs
+        int k = 4;
+        String[] extensions = { ".txt" };
+        Params params = new Params(srcPath, Optional.of(extensions), destPath, k, srcPath);
+        params.setUnique(true);
+
+        // make BigSort instance
+        FileReader reader = new FastFileReader();
+        FileWriter runWriter = new RunFileWriter();
+        SortedFileReader sortedReader = new LoserTreeSortedFileReader(new RunFileReader());
+        Splitter spliter = new Splitter(reader, runWriter, new FastSorter());
+        Merger merger = new Merger(sortedReader, runWriter, new FileChannelOutputSink());
+        BigSort bigSort = new BigSort(params, writer, spliter, merger);
+
+        // sort and get sorted lines
+        bigSort.sort();
+        List<String> actual = new ArrayList<>();
+        reader.lines(destPath).forEach(actual::add);
+
+        // get expected list and assert
+        List<String> expected = reader.lines(srcPath, extensions).distinct().sorted().collect(Collectors.toList());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void sortsRealFilesWithLimit(@TempDir Path tempDir) throws IOException {
+        Path srcPath = Path.of(tempDir.toString(), "src");
+        int NO_OF_Files = 5;
+
+        // create files
+        Files.createDirectories(srcPath);
+        FileWriter writer = new FastFileWriter();
+        for (int i = 0; i < NO_OF_Files; i++) {
+            Path path = srcPath.resolve(String.format("test-%d.txt", i));
+            writer.write(path, TestUtil.randomWords(200, 340, 310)::iterator);
+        }
+
+        FileReader reader = new FastFileReader();
+        String[] extensions = { ".txt" };
+        List<String> input = new ArrayList<>();
+        reader.lines(srcPath, extensions).forEach(input::add);
+
+        // 500 lines of the minimum size fit in 27k but these lines outgrow it while they're kept, then the
+        // kept lines and the rest of the input are split and merged
+        long[][] cases = { { 10, Long.MAX_VALUE }, { 500, 27 * 1024 } };
+        for (long[] limitAndMemory : cases) {
+            long limit = limitAndMemory[0];
+            Path destPath = Path.of(tempDir.toString(), String.format("out-%d.txt", limit));
+            Params params = new Params(srcPath, Optional.of(extensions), destPath, 4, srcPath);
+            params.setLimit(Optional.of(limit));
+            if (limitAndMemory[1] < params.getMemory()) {
+                params.setMemory(limitAndMemory[1]);
+            }
+
+            FileWriter runWriter = new RunFileWriter();
+            SortedFileReader sortedReader = new LoserTreeSortedFileReader(new RunFileReader());
+            Splitter spliter = new Splitter(reader, runWriter, new FastSorter());
+            Merger merger = new Merger(sortedReader, runWriter, new FileChannelOutputSink());
+            BigSort bigSort = new BigSort(params, writer, spliter, merger);
+            bigSort.sort();
+
+            List<String> actual = new ArrayList<>();
+            reader.lines(destPath).forEach(actual::add);
+            List<String> expected = input.stream().sorted().limit(limit).collect(Collectors.toList());
+            assertEquals(expected, actual);
+
+            // the top phase is timed even when lines don't fit and files are split instead
+            List<String> phases = limit == 10 ? List.of("top") : List.of("top", "split", "merge");
+            assertEquals(phases, new ArrayList<>(bigSort.getMeasurement().getPhaseTimes().keySet()));
+
+            // lines kept by the top phase are split with the rest of its stream, the input is read once
+            assertEquals(input.size(), bigSort.getMeasurement().getMetrics().getLinesRead());
+        }
+    }
+
+    @Test
+    public void sortsRealFilesWithParallelMerge(@TempDir Path tempDir) throws IOException {
+        Path srcPath = Path.of(tempDir.toString(), "src");
+        Path destPath = Path.of(tempDir.toString(), "out.txt");
+        int NO_OF_Files = 5;
+
+        // create files
+        Files.createDirectories(srcPath);
+        FileWriter writer = new FastFileWriter();
+        for (int i = 0; i < NO_OF_Files; i++) {
+            Path path = srcPath.resolve(String.format("test-%d.txt", i));
+            writer.write(path, TestUtil.randomWords(20000, 34000, 31000)::iterator);
+        }
+
+        // build params, large lines make index entries in every run
+        int k = 50000;
+        String[] extensions = { ".txt" };
+        Params params = new Params(srcPath, Optional.of(extensions), destPath, k, srcPath);
+        params.setMergeThreads(4);
+
+        // make BigSort instance
+        FileReader reader = new FastFileReader();
+        FileWriter runWriter = new RunFileWriter();
+        SortedFileReader sortedReader = new LoserTreeSortedFileReader(new RunFileReader());
+        Splitter spliter = new Splitter(reader, runWriter, new FastSorter());
+        Merger merger = new Merger(sortedReader, runWriter, new FileChannelOutputSink(), new PartitionedRunMerger());
+        BigSort bigSort = new BigSort(params, writer, spliter, merger);
+
+        // sort and get sorted lines
+        bigSort.sort();
+        List<String> actual = new ArrayList<>();
+        reader.lines(destPath).forEach(actual::add);
+
+        // get expected list and assert
+        List<String> expected = new ArrayList<>();
+        reader.lines(srcPath, extensions).forEach(expected::add);
+        Collections.sort(expected);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void resumesCheckpointedSort(@TempDir Path tempDir) throws IOException {
+        Path srcPath = Path.of(tempDir.toString(), "src");
+        Path workRoot = Path.of(tempDir.toString(), "work");
+        Path destPath = Path.of(tempDir.toString(), "out.txt");
+        int NO_OF_Files = 5;
+
+        // create files
+        Files.createDirectories(srcPath);
+        Files.createDirectories(workRoot);
+        FileWriter writer = new FastFileWriter();
+        for (int i = 0; i < NO_OF_Files; i++) {
+            Path path = srcPath.resolve(String.format("test-%d.txt", i));
+            writer.write(path, TestUtil.randomWords(60, 80, 70)::iterator);
+        }
+
+        // build params, small k and checkpoint size make many segments and merge passes
+        int k = 4;
+        String[] extensions = { ".txt" };
+        Params params = new Params(srcPath, Optional.of(extensions), destPath, k, workRoot);
+        params.setCheckpointSize(Optional.of(1024L));
+
+        // first sort fails while splitting
+        sortWithRunWriter(params, failingRunWriter("20.run"));
+        List<Path> workDirs = Files.list(workRoot).collect(Collectors.toList());
+        assertEquals(1, workDirs.size());
+        Path workDir = workDirs.get(0);
+        assertTrue(Files.exists(workDir.resolve(Manifest.FILE_NAME)));
+        assertTrue(Files.notExists(destPath));
+
+        // resumed sort fails while merging
+        params.setResumeDir(Optional.of(workDir));
+        sortWithRunWriter(params, failingRunWriter("merge-3.run"));
+        assertTrue(Files.readAllLines(workDir.resolve(Manifest.FILE_NAME)).stream()
+                .anyMatch(line -> line.startsWith("merge\t2\t")));
+        assertTrue(Files.notExists(destPath));
+
+        // resumed sort completes and deletes the checkpoint
+        sortWithRunWriter(params, new RunFileWriter());
+        List<String> actual = new ArrayList<>();
+        new FastFileReader().lines(destPath).forEach(actual::add);
+        assertTrue(Files.notExists(workDir));
+
+        // get expected list and assert
+        List<String> expected = new ArrayList<>();
+        new FastFileReader().lines(srcPath, extensions).forEach(expected::add);
+        Collections.sort(expected);
+        assertEquals(expected, actual);
+    }
+
+    private void sortWithRunWriter(Params params, FileWriter runWriter) {
+        SortedFileReader sortedReader = new LoserTreeSortedFileReader(new RunFileReader());
+        Splitter spliter = new Splitter(new FastFileReader(), runWriter, new FastSorter());
+        Merger merger = new Merger(sortedReader, runWriter, new FileChannelOutputSink());
+        new BigSort(params, new FastFileWriter(), spliter, merger).sort();
+    }
+
+    /**
+     * Fails to write the run of the given name, like a crash would.
+     */
+    private FileWriter failingRunWriter(String name) {
+        return new RunFileWriter() {
+            @Override
+            public Path write(Path path, Iterable<String> data, OpenOption... options) throws IOException {
+                if (path.getFileName().toString().equals(name)) {
+                    throw new IOException("No space left on device");
+                }
+                return super.write(path, data, options);
+            }
+        };
+    }
+
+    @Test
+    public void sortsRealFilesIncrementally(@TempDir Path tempDir) throws IOException {
+        // small k makes intermediate merge runs
+        sortIncrementally(tempDir, 4);
+    }
+
+    @Test
+    public void sortsRealFilesIncrementallyWithFanInOfTwo(@TempDir Path tempDir) throws IOException {
+        // new runs are merged to a single one, which is merged with the output
+        sortIncrementally(tempDir, 2);
+    }
+
+    @Test
+    public void mergesIncrementallyInFewestPasses(@TempDir Path tempDir) throws IOException {
+        Path srcPath = Path.of(tempDir.toString(), "src");
+        Path destPath = Path.of(tempDir.toString(), "out.txt");
+        String[] extensions = { ".txt" };
+        int k = 4;
+
+        // existing output and 40 new lines, which are split to 10 runs of k lines
+        FileWriter writer = new FastFileWriter();
+        List<String> expected = TestUtil.randomWords(20).sorted().collect(Collectors.toList());
+        writer.write(destPath, expected);
+        Files.createDirectories(srcPath);
+        Path path = srcPath.resolve("test-0.txt");
+        writer.write(path, TestUtil.randomWords(40)::iterator);
+        new FastFileReader().lines(path).forEach(expected::add);
+        Collections.sort(expected);
+
+        // build params
+        Params params = new Params(srcPath, Optional.of(extensions), destPath, k, tempDir);
+        params.setIncremental(true);
+
+        // make BigSort instance, which records the runs of every merge
+        List<Integer> mergedRuns = new ArrayList<>();
+        FileWriter runWriter = new RunFileWriter();
+        SortedFileReader sortedReader = new LoserTreeSortedFileReader(
+                new TextRunReader(new RunFileReader(), new FastLineReader(), List.of(destPath))) {
+            @Override
+            public void initialize(List<Path> files, int batchSize, int bufferSize) throws IOException {
+                mergedRuns.add(files.size());
+                super.initialize(files, batchSize, bufferSize);
+            }
+        };
+        Splitter spliter = new Splitter(new FastFileReader(), runWriter, new FastSorter());
+        Merger merger = new Merger(sortedReader, runWriter, new FileChannelOutputSink());
+        new BigSort(params, writer, spliter, merger).sort();
+
+        // 10 runs are merged to 9, 6 and 3 runs, which leave a slot for the output
+        assertEquals(List.of(2, 4, 4, 4), mergedRuns);
+        List<String> actual = new ArrayList<>();
+        new FastFileReader().lines(destPath).forEach(actual::add);
+        assertEquals(expected, actual);
+    }
+
+    private void sortIncrementally(Path tempDir, int k) throws IOException {
+        Path destPath = Path.of(tempDir.toString(), "out.txt");
+        String[] extensions = { ".txt" };
+        FileWriter writer = new FastFileWriter();
+        FileReader reader = new FastFileReader();
+        List<String> expected = new ArrayList<>();
+        List<Integer> mergedRuns = new ArrayList<>();
+
+        // every day new files are merged into the output of the day before
+        for (int day = 0; day < 3; day++) {
+            Path srcPath = Path.of(tempDir.toString(), "src-" + day);
+            Files.createDirectories(srcPath);
+            for (int i = 0; i < 3; i++) {
+                Path path = srcPath.resolve(String.format("test-%d.txt", i));
+                writer.write(path, TestUtil.randomWords(40, 60, 50)::iterator);
+            }
+            reader.lines(srcPath, extensions).forEach(expected::add);
+
+            // build params
+            Params params = new Params(srcPath, Optional.of(extensions), destPath, k, srcPath);
+            params.setIncremental(Files.exists(destPath));
+
+            // make BigSort instance, which records the runs of every merge
+            FileWriter runWriter = new RunFileWriter();
+            SortedFileReader sortedReader = new LoserTreeSortedFileReader(
+                    new TextRunReader(new RunFileReader(), new FastLineReader(), List.of(destPath))) {
+                @Override
+                public void initialize(List<Path> files, int batchSize, int bufferSize) throws IOException {
+                    mergedRuns.add(files.size());
+                    super.initialize(files, batchSize, bufferSize);
+                }
+            };
+            Splitter spliter = new Splitter(reader, runWriter, new FastSorter());
+            Merger merger = new Merger(sortedReader, runWriter, new FileChannelOutputSink());
+            BigSort bigSort = new BigSort(params, writer, spliter, merger);
+
+            // sort and assert every day
+            bigSort.sort();
+            List<String> actual = new ArrayList<>();
+            reader.lines(destPath).forEach(actual::add);
+            Collections.sort(expected);
+            assertEquals(expected, actual);
+        }
+
+        // no merge reads more than k runs, the existing output included
+        assertTrue(mergedRuns.size() > 3);
+        assertTrue(mergedRuns.stream().allMatch(runs -> runs <= k), mergedRuns.toString());
+    }
+
+    @Test
+    public void sortsRealFilesWithNaturalRuns(@TempDir Path tempDir) throws IOException {
+        Path srcPath = Path.of(tempDir.toString(), "src");
+        Path destPath = Path.of(tempDir.toString(), "out.txt");
+        int NO_OF_Files = 6;
+
+        // create files, every other file is sorted already
+        Files.createDirectories(srcPath);
+        FileWriter writer = new FastFileWriter();
+        List<Path> sortedFiles = new ArrayList<>();
+        for (int i = 0; i < NO_OF_Files; i++) {
+            Path path = srcPath.resolve(String.format("test-%d.txt", i));
+            List<String> lines = TestUtil.randomWords(40, 60, 50).collect(Collectors.toList());
+            if (i % 2 == 0) {
+                Collections.sort(lines);
+                sortedFiles.add(path);
+            }
+            writer.write(path, lines);
+        }
+
+        // build params, small k makes intermediate merge runs
+        int k = 4;
+        String[] extensions = { ".txt" };
+        Params params = new Params(srcPath, Optional.of(extensions), destPath, k, tempDir);
+        params.setNaturalRuns(true);
+
+        // make BigSort instance, sorted files are read as text runs
+        Set<Path> textRuns = new HashSet<>();
+        FileReader reader = new FastFileReader();
+        FileWriter runWriter = new RunFileWriter();
+        SortedFileReader sortedReader = new LoserTreeSortedFileReader(
+                new TextRunReader(new RunFileReader(), new FastLineReader(), textRuns));
+        Splitter spliter = new Splitter(reader, runWriter, new FastSorter(), new DirectoryWalker(2), textRuns);
+        Merger merger = new Merger(sortedReader, runWriter, new FileChannelOutputSink());
+        BigSort bigSort = new BigSort(params, writer, spliter, merger);
+
+        // sort and get sorted lines
+        bigSort.sort();
+        List<String> actual = new ArrayList<>();
+        reader.lines(destPath).forEach(actual::add);
+        assertEquals(new HashSet<>(sortedFiles), textRuns);
+        assertTrue(sortedFiles.stream().allMatch(Files::exists));
+
+        // get expected list and assert
+        List<String> expected = new ArrayList<>();
+        reader.lines(srcPath, extensions).forEach(expected::add);
+        Collections.sort(expected);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void sortsRealFilesAsBytes(@TempDir Path tempDir) throws IOException {
+        Path srcPath = Path.of(tempDir.toString(), "src");
+        Path destPath = Path.of(tempDir.toString(), "out.txt");
+        int NO_OF_Files = 5;
+
+        // create files
+        Files.createDirectories(srcPath);
+        FileWriter writer = new FastFileWriter();
+        for (int i = 0; i < NO_OF_Files; i++) {
+            Path path = srcPath.resolve(String.format("test-%d.txt", i));
+            writer.write(path, TestUtil.randomWords(200, 340, 310)::iterator);
+        }
+
+        // build params, small memory makes many split files and merge passes
+        int k = 4;
+        String[] extensions = { ".txt" };
+        Params params = new Params(srcPath, Optional.of(extensions), destPath, k, srcPath);
+        params.setMemory(8 * 1024);
+        params.setBytes(true);
+
+        // make BigSort instance
+        FileReader reader = new FastFileReader();
+        SortedFileReader sortedReader = new LoserTreeSortedFileReader(new FastLineReader());
+        Splitter spliter = new Splitter(reader, writer, new FastSorter());
+        Merger merger = new Merger(sortedReader, writer, new FileChannelOutputSink());
         BigSort bigSort = new BigSort(params, writer, spliter, merger);
 
         // sort and get sorted words
@@ -161,6 +790,7 @@ public class BigSortTest {
         reader.lines(srcPath, extensions).forEach(expected::add);
         Collections.sort(expected);
         assertEquals(expected, actual);
+        assertFalse(Files.exists(FileChannelOutputSink.tempPath(destPath)));
     }
 
     @Test
@@ -189,9 +819,8 @@ public class BigSortTest {
         FileReader reader = new FakeFileReader();
         SortedFileReader sortedReader = new FastSortedFileReader(new FakeLineReader());
         Sorter sorter = new FastSorter();
-        StreamUtils streamUtils = new StreamUtils();
-        Splitter spliter = new Splitter(reader, writer, sorter, streamUtils);
-        Merger merger = new Merger(sortedReader, writer, streamUtils);
+        Splitter spliter = new Splitter(reader, writer, sorter);
+        Merger merger = new Merger(sortedReader, writer, new FakeOutputSink());
         BigSort bigSort = new BigSort(params, writer, spliter, merger);
 
         // sort and get sorted words
@@ -230,9 +859,8 @@ public class BigSortTest {
         FileReader reader = new FastFileReader();
         SortedFileReader sortedReader = new FastSortedFileReader(new FastLineReader());
         Sorter sorter = new FastSorter();
-        StreamUtils streamUtils = new StreamUtils();
-        Splitter spliter = new Splitter(reader, writer, sorter, streamUtils);
-        Merger merger = new Merger(sortedReader, writer, streamUtils);
+        Splitter spliter = new Splitter(reader, writer, sorter);
+        Merger merger = new Merger(sortedReader, writer, new FileChannelOutputSink());
         BigSort bigSort = new BigSort(params, writer, spliter, merger);
 
         // sort and assert
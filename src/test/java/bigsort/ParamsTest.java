@@ -0,0 +1,73 @@
+package bigsort;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.InvalidParameterException;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * ParamsTest
+ */
+public class ParamsTest {
+    private Path srcPath;
+    private Path destPath;
+
+    @BeforeEach
+    public void beforeEach(@TempDir Path tempDir) throws IOException {
+        srcPath = Files.write(tempDir.resolve("in.txt"), List.of("b", "a"));
+        destPath = tempDir.resolve("out.txt");
+    }
+
+    @Test
+    public void parsesMemorySuffixes() {
+        assertEquals(1024L * 1024L, memory("1048576"));
+        assertEquals(2L * 1024L * 1024L, memory("2048k"));
+        assertEquals(3L * 1024L * 1024L, memory("3m"));
+        assertEquals(4L * 1024L * 1024L, memory(" 4M "));
+        if (Runtime.getRuntime().maxMemory() >= 1024L * 1024L * 1024L) {
+            assertEquals(1024L * 1024L * 1024L, memory("1g"));
+        }
+    }
+
+    @Test
+    public void defaultsMemoryToHalfOfMaxHeap() {
+        Params params = new Params(new String[] { srcPath.toString(), destPath.toString(), "10" });
+
+        assertEquals(Runtime.getRuntime().maxMemory() / 2, params.getMemory());
+    }
+
+    @Test
+    public void rejectsMemoryOutOfBounds() {
+        long maxMemoryKb = Runtime.getRuntime().maxMemory() / 1024L;
+
+        assertEquals("memory must be >= 1m.", memoryError("1023k"));
+        assertEquals("memory must be >= 1m.", memoryError("-1g"));
+        assertEquals(String.format("memory must be <= max heap size %dm, use -Xmx to increase it.",
+                maxMemoryKb / 1024L), memoryError((maxMemoryKb + 1) + "k"));
+    }
+
+    @Test
+    public void rejectsInvalidMemory() {
+        assertEquals("memory is not a valid size.", memoryError("9000000000g"));
+        assertEquals("memory is not a valid size.", memoryError("9223372036854775808"));
+        assertEquals("memory is not a valid size.", memoryError("1.5g"));
+        assertEquals("memory is not a valid size.", memoryError("m"));
+    }
+
+    private long memory(String value) {
+        return new Params(new String[] { srcPath.toString(), destPath.toString(), "10", "--memory", value })
+                .getMemory();
+    }
+
+    private String memoryError(String value) {
+        return assertThrows(InvalidParameterException.class, () -> memory(value)).getMessage();
+    }
+}
@@ -29,7 +29,7 @@ public class TestUtil {
         measurement.finishMeasurement();
         System.out.println("------------------------------------");
         System.out.println("Elapsed Time: " + measurement.getElapsedTime());
-        System.out.println("Used Memory: " + measurement.getMemoryUsage());
+        System.out.println("Peak Heap: " + measurement.getPeakHeap());
         System.out.println("------------------------------------");
     }
 
@@ -56,4 +56,9 @@ public class FakeFileWriter implements FileWriter {
         TestUtil.createFile(dirPath, List.of());
         return dirPath;
     }
+
+    @Override
+    public void delete(Path path) throws IOException {
+        TestUtil.getFileSystem().remove(path);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package bigsort.fake;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import bigsort.TestUtil;
+import bigsort.util.api.OutputSink;
+
+/**
+ * FakeOutputSink
+ */
+public class FakeOutputSink implements OutputSink {
+    private Path path;
+    private List<String> lines = new ArrayList<>();
+
+    public FakeOutputSink() {
+
+    }
+
+    public FakeOutputSink(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public OutputSink create(Path path, int bufferSize) throws IOException {
+        return new FakeOutputSink(path);
+    }
+
+    @Override
+    public void write(String line) throws IOException {
+        lines.add(line);
+    }
+
+    @Override
+    public void commit() throws IOException {
+        TestUtil.createFile(path, lines);
+    }
+
+    @Override
+    public void close() {
+
+    }
+}
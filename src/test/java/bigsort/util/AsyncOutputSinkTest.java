@@ -0,0 +1,71 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import bigsort.TestUtil;
+import bigsort.fake.FakeOutputSink;
+import bigsort.util.api.OutputSink;
+
+/**
+ * AsyncOutputSinkTest
+ */
+public class AsyncOutputSinkTest {
+    private final Path path = Path.of("fake", "out.txt");
+
+    @BeforeEach
+    public void beforeEach() {
+        TestUtil.clearFileSystem();
+    }
+
+    @Test
+    public void writesLinesInOrder() throws IOException {
+        List<String> input = TestUtil.randomWords(200000).collect(Collectors.toList());
+
+        // small buffer makes the writer drain many chunks
+        try (OutputSink sink = new AsyncOutputSink(new FakeOutputSink()).create(path, 64 * 1024)) {
+            for (String line : input) {
+                sink.write(line);
+            }
+            sink.commit();
+        }
+
+        assertEquals(input, TestUtil.getFile(path));
+    }
+
+    @Test
+    public void rethrowsWriterFailure() throws IOException {
+        OutputSink failing = new FakeOutputSink() {
+            @Override
+            public OutputSink create(Path path, int bufferSize) {
+                return this;
+            }
+
+            @Override
+            public void write(String line) throws IOException {
+                throw new IOException("disk is full");
+            }
+        };
+
+        try (OutputSink sink = new AsyncOutputSink(failing).create(path, 1024)) {
+            IOException e = assertThrows(IOException.class, () -> {
+                for (int i = 0; i < 100000; i++) {
+                    sink.write("line-" + i);
+                }
+                sink.commit();
+            });
+            assertEquals("disk is full", e.getMessage());
+        }
+
+        assertNull(TestUtil.getFile(path));
+    }
+}
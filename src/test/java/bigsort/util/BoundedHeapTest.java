@@ -0,0 +1,42 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import bigsort.TestUtil;
+
+/**
+ * BoundedHeapTest
+ */
+public class BoundedHeapTest {
+
+    @Test
+    public void keepsSmallestItems() {
+        List<String> data = TestUtil.randomWords(5000).collect(Collectors.toList());
+        for (int limit : new int[] { 1, 7, 1024, 4999, 5000, 6000 }) {
+            var heap = new BoundedHeap<String>(limit, Comparator.naturalOrder());
+            data.forEach(heap::offer);
+
+            List<String> expected = data.stream().sorted().limit(limit).collect(Collectors.toList());
+            assertEquals(expected, heap.drainSorted());
+        }
+    }
+
+    @Test
+    public void returnsDroppedItem() {
+        var heap = new BoundedHeap<String>(2, Comparator.naturalOrder());
+        assertNull(heap.offer("c"));
+        assertNull(heap.offer("a"));
+        String d = "d";
+        assertSame(d, heap.offer(d));
+        assertEquals("c", heap.offer("b"));
+        assertEquals(List.of("a", "b"), heap.drainSorted());
+    }
+}
@@ -0,0 +1,92 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import bigsort.TestUtil;
+
+/**
+ * ByteArenaTest
+ */
+public class ByteArenaTest {
+    private static final byte[] LF = { '\n' };
+
+    @Test
+    public void sortsLinesAsBytes() throws IOException {
+        ReadableByteChannel input = channel("mango\r\nbanana\napple\nappl\nzebra\u00e9\nzebra\nbanana");
+        ByteArena arena = new ByteArena(4096);
+
+        // input is smaller than the arena
+        while (arena.read(input)) {
+        }
+        arena.endOfInput();
+
+        assertEquals(List.of("appl", "apple", "banana", "banana", "mango", "zebra", "zebra\u00e9"), sortAndWrite(arena));
+    }
+
+    @Test
+    public void splitsInputWhenArenaIsFull() throws IOException {
+        List<String> input = TestUtil.randomWords(500).collect(Collectors.toList());
+        ReadableByteChannel channel = channel(String.join("\n", input) + "\n");
+
+        // 64 bytes of arena and 2 lines of index at most
+        ByteArena arena = new ByteArena(128);
+        List<String> output = new ArrayList<>();
+        int runs = 1;
+        while (arena.read(channel)) {
+            List<String> run = sortAndWrite(arena);
+            List<String> sorted = new ArrayList<>(run);
+            Collections.sort(sorted);
+            assertEquals(sorted, run);
+            output.addAll(run);
+            arena.reset();
+            runs++;
+        }
+        arena.endOfInput();
+        output.addAll(sortAndWrite(arena));
+
+        Collections.sort(input);
+        Collections.sort(output);
+        assertEquals(input, output);
+        assertEquals(true, runs > 100);
+    }
+
+    @Test
+    public void failsWhenLineIsLongerThanArena() throws IOException {
+        ReadableByteChannel input = channel("a-line-longer-than-arena\n");
+        ByteArena arena = new ByteArena(32);
+
+        arena.read(input);
+        assertThrows(IOException.class, () -> arena.reset());
+    }
+
+    private static List<String> sortAndWrite(ByteArena arena) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WritableByteChannel output = Channels.newChannel(bytes);
+        arena.sort();
+        arena.writeTo(output, ByteBuffer.allocate(16), LF);
+
+        String text = bytes.toString(StandardCharsets.UTF_8);
+        return text.isEmpty() ? List.of() : Arrays.asList(text.split("\n"));
+    }
+
+    private static ReadableByteChannel channel(String text) {
+        return Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,49 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import bigsort.TestUtil;
+
+/**
+ * ByteRunMergerTest
+ */
+public class ByteRunMergerTest {
+
+    @Test
+    public void mergesRunsAsBytes(@TempDir Path tempDir) throws IOException {
+        int NO_OF_FILES = 11;
+        List<String> input = new ArrayList<>();
+        List<Path> runs = new ArrayList<>();
+        for (int i = 0; i < NO_OF_FILES; i++) {
+            Path path = tempDir.resolve(String.format("run-%d.txt", i));
+            List<String> words = TestUtil.randomWords(0, 30, 70).collect(Collectors.toList());
+            Collections.sort(words);
+            Files.write(path, words);
+            input.addAll(words);
+            runs.add(path);
+        }
+
+        // small buffers make readers refill and output flush often
+        Path out = tempDir.resolve("out.txt");
+        try (FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            new ByteRunMerger().merge(runs, 16, channel, ByteBuffer.allocate(64), new byte[] { '\n' });
+        }
+
+        Collections.sort(input);
+        assertEquals(input, Files.readAllLines(out));
+    }
+}
@@ -0,0 +1,102 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import bigsort.TestUtil;
+import bigsort.util.api.FileReader;
+
+/**
+ * ConcurrentDirectoryReaderTest
+ */
+public class ConcurrentDirectoryReaderTest {
+
+    @Test
+    public void readsEveryLineOfSmallAndLargeFiles(@TempDir Path tempDir) throws IOException {
+        Map<String, List<String>> files = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            // every 50th file is larger than the small file size
+            long lines = i % 50 == 0 ? 20000 : 30;
+            List<String> words = TestUtil.randomWords(lines).map(word -> word + "-" + files.size())
+                    .collect(Collectors.toList());
+            String name = String.format("file-%03d.log", i);
+            files.put(name, words);
+            Files.write(tempDir.resolve(name), words);
+        }
+        Files.write(tempDir.resolve("ignored.txt"), List.of("ignored"));
+
+        FileReader reader = new ConcurrentDirectoryReader(new FastFileReader(), 4);
+        List<String> output;
+        try (Stream<String> stream = reader.lines(tempDir, new String[] { ".log" })) {
+            output = stream.collect(Collectors.toList());
+        }
+
+        // lines of a file keep their order
+        Map<String, List<String>> outputFiles = new HashMap<>();
+        for (String line : output) {
+            String file = String.format("file-%03d.log", Integer.parseInt(line.substring(line.lastIndexOf('-') + 1)));
+            outputFiles.computeIfAbsent(file, name -> new ArrayList<>()).add(line);
+        }
+        assertEquals(files, outputFiles);
+    }
+
+    @Test
+    public void readsEmptyDirectory(@TempDir Path tempDir) throws IOException {
+        FileReader reader = new ConcurrentDirectoryReader(new FastFileReader(), 2);
+        try (Stream<String> stream = reader.lines(tempDir, new String[] { ".log" })) {
+            assertEquals(0, stream.count());
+        }
+    }
+
+    @Test
+    public void readsSingleFileWithWrappedReader(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("text.txt");
+        List<String> words = TestUtil.randomWords(1000).collect(Collectors.toList());
+        Files.write(path, words);
+
+        FileReader reader = new ConcurrentDirectoryReader(new MappedFileReader(), 2);
+        try (Stream<String> stream = reader.lines(path)) {
+            List<String> output = stream.collect(Collectors.toList());
+            Collections.sort(words);
+            Collections.sort(output);
+            assertEquals(words, output);
+        }
+    }
+
+    @Test
+    public void failsForMalformedSmallFile(@TempDir Path tempDir) throws IOException {
+        Files.write(tempDir.resolve("a.log"), List.of("apple", "banana"));
+        Files.write(tempDir.resolve("b.log"), new byte[] { 'o', 'k', '\n', (byte) 0xc3, (byte) 0x28, '\n' });
+
+        FileReader reader = new ConcurrentDirectoryReader(new FastFileReader(), 2);
+        try (Stream<String> stream = reader.lines(tempDir, new String[] { ".log" })) {
+            var e = assertThrows(UncheckedIOException.class, stream::count);
+            assertTrue(e.getCause() instanceof CharacterCodingException);
+        }
+    }
+
+    @Test
+    public void failsForMissingDirectory(@TempDir Path tempDir) {
+        FileReader reader = new ConcurrentDirectoryReader(new FastFileReader(), 2);
+        assertThrows(FileNotFoundException.class,
+                () -> reader.lines(tempDir.resolve("missing"), new String[] { ".log" }));
+    }
+}
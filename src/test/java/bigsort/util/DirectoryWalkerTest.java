@@ -0,0 +1,90 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * DirectoryWalkerTest
+ */
+public class DirectoryWalkerTest {
+    private Path root;
+
+    @BeforeEach
+    public void beforeEach(@TempDir Path tempDir) throws IOException {
+        root = tempDir;
+
+        // date/hour layout
+        for (String date : List.of("2020-01-01", "2020-01-02")) {
+            for (int hour = 0; hour < 3; hour++) {
+                Path dir = Files.createDirectories(root.resolve(date).resolve(String.format("%02d", hour)));
+                Files.write(dir.resolve("app.log"), List.of(date, "hour-" + hour));
+                Files.write(dir.resolve("app.log.gz"), new byte[] { 1, 2, 3 });
+            }
+        }
+        Files.write(Files.createDirectories(root.resolve("tmp")).resolve("scratch.log"), List.of("scratch"));
+        Files.write(root.resolve("top.log"), List.of("top"));
+    }
+
+    @Test
+    public void walksNestedDirectories() throws IOException {
+        List<SourceFile> files = new DirectoryWalker(4).walk(root, new String[] { "**/*.log" },
+                new String[] { "tmp/**" });
+
+        assertEquals(List.of("2020-01-01/00/app.log", "2020-01-01/01/app.log", "2020-01-01/02/app.log",
+                "2020-01-02/00/app.log", "2020-01-02/01/app.log", "2020-01-02/02/app.log", "top.log"),
+                relative(files));
+        for (SourceFile file : files) {
+            assertEquals(Files.size(file.getPath()), file.getSize());
+        }
+    }
+
+    @Test
+    public void matchesRelativePaths() throws IOException {
+        DirectoryWalker walker = new DirectoryWalker(2);
+
+        assertEquals(List.of("top.log"), relative(walker.walk(root, new String[] { "*.log" }, new String[0])));
+        assertEquals(List.of("2020-01-02/01/app.log", "top.log"),
+                relative(walker.walk(root, new String[] { "*/01/*.log", "top.*" }, new String[] { "2020-01-01" })));
+    }
+
+    @Test
+    public void matchesLeadingAnyDirsAtTopLevel() throws IOException {
+        DirectoryWalker walker = new DirectoryWalker(2);
+
+        assertEquals(List.of("top.log"),
+                relative(walker.walk(root, new String[] { "**/top.log" }, new String[0])));
+        assertEquals(List.of("top.log"),
+                relative(walker.walk(root, new String[] { "**/*.log" }, new String[] { "**/20*", "**/tmp" })));
+    }
+
+    @Test
+    public void includesEverythingWithoutIncludePatterns() throws IOException {
+        List<SourceFile> files = new DirectoryWalker(1).walk(root, new String[0], new String[] { "**.gz", "2020-*" });
+
+        assertEquals(List.of("tmp/scratch.log", "top.log"), relative(files));
+    }
+
+    @Test
+    public void failsForMissingDirectory() {
+        DirectoryWalker walker = new DirectoryWalker(2);
+
+        assertThrows(NoSuchFileException.class,
+                () -> walker.walk(root.resolve("missing"), new String[0], new String[0]));
+    }
+
+    private List<String> relative(List<SourceFile> files) {
+        return files.stream().map(file -> root.relativize(file.getPath()).toString().replace('\\', '/'))
+                .collect(Collectors.toList());
+    }
+}
@@ -62,4 +62,18 @@ public class FastLineReaderTest {
             assertTrue(reader.next().isEmpty());
         }
     }
+
+    @Test
+    public void readsRawLinesUntilEnd(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("text.txt");
+
+        Files.write(path, List.of("apple", "mango"));
+        try (var reader = new FastLineReader(path)) {
+            assertEquals("apple", reader.nextLine());
+            assertEquals("apple", reader.line().get());
+            assertEquals("mango", reader.nextLine());
+            assertEquals(null, reader.nextLine());
+            assertTrue(reader.line().isEmpty());
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import bigsort.TestUtil;
+import bigsort.util.api.OutputSink;
+
+/**
+ * FileChannelOutputSinkTest
+ */
+public class FileChannelOutputSinkTest {
+
+    @Test
+    public void writesLinesOnCommit(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("out.txt");
+        List<String> input = TestUtil.randomWords(100000).collect(Collectors.toList());
+        input.add("x".repeat(200000));
+        input.add("\u00e9clair");
+
+        try (OutputSink sink = new FileChannelOutputSink().create(path, 1024)) {
+            for (String line : input) {
+                sink.write(line);
+            }
+            assertFalse(Files.exists(path));
+            sink.commit();
+        }
+
+        assertEquals(input, Files.readAllLines(path));
+        assertEquals(List.of(path), Files.list(tempDir).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void discardsUncommittedOutput(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("out.txt");
+
+        try (OutputSink sink = new FileChannelOutputSink().create(path, 1024)) {
+            TestUtil.randomWords(1000).forEach(line -> {
+                try {
+                    sink.write(line);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+
+        assertEquals(new ArrayList<>(), Files.list(tempDir).collect(Collectors.toList()));
+    }
+}
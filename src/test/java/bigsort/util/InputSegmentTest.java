@@ -0,0 +1,124 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * InputSegmentTest
+ */
+public class InputSegmentTest {
+
+    @Test
+    public void groupsSmallFiles(@TempDir Path tempDir) throws IOException {
+        List<SourceFile> files = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Path path = tempDir.resolve(i + ".txt");
+            Files.write(path, List.of("a" + i, "b" + i));
+            files.add(new SourceFile(path, Files.size(path)));
+        }
+
+        List<InputSegment> segments = InputSegment.plan(files, 1024);
+        assertEquals(1, segments.size());
+        assertEquals(5, segments.get(0).getRanges().size());
+        assertTrue(segments.get(0).getRanges().stream().allMatch(InputSegment.Range::isWhole));
+
+        List<String> lines;
+        try (Stream<String> stream = segments.get(0).lines(new FastFileReader(), StandardCharsets.UTF_8)) {
+            lines = stream.collect(Collectors.toList());
+        }
+        assertEquals(List.of("a0", "b0", "a1", "b1", "a2", "b2", "a3", "b3", "a4", "b4"), lines);
+    }
+
+    @Test
+    public void cutsLargeFilesAfterLineEnds(@TempDir Path tempDir) throws IOException {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            expected.add(i % 7 == 0 ? "\u00e9t\u00e9-" + i : "line-" + "x".repeat(i % 50) + i);
+        }
+        Path path = tempDir.resolve("big.txt");
+        Files.write(path, expected);
+        long size = Files.size(path);
+
+        List<InputSegment> segments = InputSegment.plan(List.of(new SourceFile(path, size)), 4096);
+        assertTrue(segments.size() > 1);
+
+        long start = 0;
+        List<String> actual = new ArrayList<>();
+        byte[] bytes = Files.readAllBytes(path);
+        for (InputSegment segment : segments) {
+            assertEquals(1, segment.getRanges().size());
+            InputSegment.Range range = segment.getRanges().get(0);
+            assertFalse(range.isWhole());
+            assertEquals(start, range.getStart());
+            assertTrue(range.getEnd() == size || bytes[(int) range.getEnd() - 1] == '\n');
+            start = range.getEnd();
+
+            try (Stream<String> stream = segment.lines(new FastFileReader(), StandardCharsets.UTF_8)) {
+                stream.forEach(actual::add);
+            }
+        }
+        assertEquals(size, start);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void fillsSegmentsAcrossFiles(@TempDir Path tempDir) throws IOException {
+        List<SourceFile> files = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            List<String> lines = new ArrayList<>();
+            for (int j = 0; j < 300; j++) {
+                lines.add(String.format("%d-%05d", i, j));
+            }
+            expected.addAll(lines);
+            Path path = tempDir.resolve(i + ".txt");
+            Files.write(path, lines);
+            files.add(new SourceFile(path, Files.size(path)));
+        }
+
+        List<InputSegment> segments = InputSegment.plan(files, 1000);
+        List<String> actual = new ArrayList<>();
+        long total = 0;
+        for (InputSegment segment : segments) {
+            long bytes = 0;
+            for (InputSegment.Range range : segment.getRanges()) {
+                bytes += range.getEnd() - range.getStart();
+            }
+            // a segment is cut at the first line end after its size
+            assertTrue(bytes < 1000 + 9);
+            total += bytes;
+
+            try (Stream<String> stream = segment.lines(new FastFileReader(), StandardCharsets.UTF_8)) {
+                stream.forEach(actual::add);
+            }
+        }
+        assertEquals(files.stream().mapToLong(SourceFile::getSize).sum(), total);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void keepsEmptyFiles(@TempDir Path tempDir) throws IOException {
+        Path empty = tempDir.resolve("empty.txt");
+        Files.createFile(empty);
+
+        List<InputSegment> segments = InputSegment.plan(List.of(new SourceFile(empty, 0)), 1024);
+        assertEquals(1, segments.size());
+        assertTrue(segments.get(0).getRanges().get(0).isWhole());
+        try (Stream<String> stream = segments.get(0).lines(new FastFileReader(), StandardCharsets.UTF_8)) {
+            assertEquals(0, stream.count());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * KeyPrefixTest
+ */
+public class KeyPrefixTest {
+
+    @Test
+    public void keepsOrderOfEdgeCases() {
+        String[] data = { "", "a", "a\u0000", "a\u0001", "ab", "abc", "abcd", "abcde", "abce", "abd", "b",
+                "\u00e9", "\u8000", "\uffff", "\uffff\uffff\uffff\uffff", "\uffff\uffff\uffff\uffff\uffff",
+                "\ud83d\ude00", "z" };
+        for (String a : data) {
+            for (String b : data) {
+                assertSameOrder(a, b);
+            }
+        }
+    }
+
+    @Test
+    public void keepsOrderOfRandomLines() {
+        Random random = new Random(15);
+        for (int i = 0; i < 100000; i++) {
+            assertSameOrder(randomLine(random), randomLine(random));
+        }
+    }
+
+    private static void assertSameOrder(String a, String b) {
+        int expected = Integer.signum(a.compareTo(b));
+        assertEquals(expected, Integer.signum(KeyPrefix.compare(KeyPrefix.of(a), a, KeyPrefix.of(b), b)));
+        long prefixA = KeyPrefix.of(a);
+        long prefixB = KeyPrefix.of(b);
+        if (prefixA != prefixB) {
+            assertEquals(expected, Integer.signum(Long.compareUnsigned(prefixA, prefixB)));
+        }
+    }
+
+    private static String randomLine(Random random) {
+        char[] chars = new char[random.nextInt(7)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = random.nextBoolean() ? (char) ('a' + random.nextInt(3)) : (char) random.nextInt(65536);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,94 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * KeySpecTest
+ */
+public class KeySpecTest {
+
+    @Test
+    public void sortsByStringField() {
+        KeySpec spec = KeySpec.parse("2", ',');
+        List<String> lines = List.of("1,c", "2,a", "3,b");
+        assertEquals(List.of("2,a", "3,b", "1,c"), sort(spec, lines));
+    }
+
+    @Test
+    public void sortsByNumericFieldInReverseOrder() {
+        KeySpec spec = KeySpec.parse("2nr", '\t');
+        List<String> lines = List.of("a\t9", "b\t10", "c\t-1.5", "d\t100");
+        assertEquals(List.of("d\t100", "b\t10", "a\t9", "c\t-1.5"), sort(spec, lines));
+    }
+
+    @Test
+    public void sortsByMultipleFields() {
+        KeySpec spec = KeySpec.parse("3nr,1", ',');
+        List<String> lines = List.of("b,x,1", "a,y,2", "c,z,2", "a,w,1");
+        assertEquals(List.of("a,y,2", "c,z,2", "a,w,1", "b,x,1"), sort(spec, lines));
+    }
+
+    @Test
+    public void breaksTiesByWholeLine() {
+        KeySpec spec = KeySpec.parse("1", ',');
+        List<String> lines = List.of("a,3", "a,1", "a,2");
+        assertEquals(List.of("a,1", "a,2", "a,3"), sort(spec, lines));
+    }
+
+    @Test
+    public void sortsMissingAndInvalidFieldsFirst() {
+        KeySpec spec = KeySpec.parse("2n", ',');
+        List<String> lines = List.of("a,5", "b", "c,x", "d,-3", "e,");
+        assertEquals(List.of("b", "c,x", "e,", "d,-3", "a,5"), sort(spec, lines));
+
+        spec = KeySpec.parse("3", ',');
+        assertEquals(List.of("b,a", "a,b,c"), sort(spec, List.of("a,b,c", "b,a")));
+    }
+
+    @Test
+    public void parsesKeyOnce() {
+        KeySpec spec = KeySpec.parse("2n,1", ',');
+        KeySpec.Key key = spec.key("x,42,z");
+        assertEquals("x,42,z", key.line());
+        assertTrue(spec.compare(key, spec.key("x,42,z")) == 0);
+        assertTrue(spec.compare(key, spec.key("a,43")) < 0);
+    }
+
+    @Test
+    public void rejectsInvalidSpecs() {
+        assertThrows(IllegalArgumentException.class, () -> KeySpec.parse("", ','));
+        assertThrows(IllegalArgumentException.class, () -> KeySpec.parse("0", ','));
+        assertThrows(IllegalArgumentException.class, () -> KeySpec.parse("n", ','));
+        assertThrows(IllegalArgumentException.class, () -> KeySpec.parse("2x", ','));
+    }
+
+    @Test
+    public void rejectsTooLargeFields() {
+        assertEquals("4096 (delimiter: ,)", KeySpec.parse("4096", ',').toString());
+        assertEquals("2 (delimiter: ,)", KeySpec.parse("002", ',').toString());
+        assertThrows(IllegalArgumentException.class, () -> KeySpec.parse("4097", ','));
+        assertThrows(IllegalArgumentException.class, () -> KeySpec.parse("2000000000", ','));
+        assertThrows(IllegalArgumentException.class, () -> KeySpec.parse("99999999999999999999n", ','));
+    }
+
+    @Test
+    public void parsesRepeatedAndDistantFields() {
+        KeySpec spec = KeySpec.parse("50,2n,2", ',');
+        assertEquals(List.of("c,x", "a,-1", "b,7"), sort(spec, List.of("b,7", "c,x", "a,-1")));
+        assertTrue(spec.compare(spec.key("a,1"), spec.key("a,1,,,,")) < 0);
+    }
+
+    private static List<String> sort(KeySpec spec, List<String> lines) {
+        KeySpec.Key[] keys = lines.stream().map(spec::key).toArray(KeySpec.Key[]::new);
+        Arrays.sort(keys, spec);
+        return Arrays.stream(keys).map(KeySpec.Key::line).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,139 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import bigsort.TestUtil;
+import bigsort.fake.FakeLineReader;
+
+/**
+ * LoserTreeSortedFileReaderTest
+ */
+public class LoserTreeSortedFileReaderTest {
+    List<Path> files = new ArrayList<>();
+
+    @BeforeEach
+    public void beforeEach() {
+        files.clear();
+        for (int i = 0; i < 3; i++) {
+            files.add(Path.of(String.format("file-%d.txt", i)));
+        }
+
+        TestUtil.clearFileSystem();
+        TestUtil.createFile(files.get(0), Arrays.asList("appple", "avocado", "banana"));
+        TestUtil.createFile(files.get(1), Arrays.asList("grape", "mango"));
+        TestUtil.createFile(files.get(2), Arrays.asList("ball", "bread", "coffee", "milk"));
+    }
+
+    @Test
+    public void getsAllWordsInSortedOrder() throws IOException {
+        try (var reader = new LoserTreeSortedFileReader(new FakeLineReader())) {
+            reader.initialize(files, 2);
+
+            List<String> words = new ArrayList<>();
+            while (true) {
+                Optional<String> value = reader.readNextSortedLine();
+                value.ifPresent(words::add);
+                if (value.isEmpty()) {
+                    break;
+                }
+            }
+
+            assertEquals(
+                    Arrays.asList("appple", "avocado", "ball", "banana", "bread", "coffee", "grape", "mango", "milk"),
+                    words);
+        }
+    }
+
+    @Test
+    public void getsSortedWordsAsStream() throws IOException {
+        try (var reader = new LoserTreeSortedFileReader(new FakeLineReader())) {
+            reader.initialize(files, 3);
+            List<String> words = reader.readAllSortedLines().limit(6).collect(Collectors.toList());
+            assertEquals(Arrays.asList("appple", "avocado", "ball", "banana", "bread", "coffee"), words);
+        }
+    }
+
+    @Test
+    public void skipsEmptyFiles() throws IOException {
+        files.add(Path.of("file-empty.txt"));
+        TestUtil.createFile(files.get(3), List.of());
+
+        try (var reader = new LoserTreeSortedFileReader(new FakeLineReader())) {
+            reader.initialize(files, files.size());
+            List<String> words = reader.readAllSortedLines().collect(Collectors.toList());
+            assertEquals(9, words.size());
+            assertTrue(reader.readNextSortedLine().isEmpty());
+        }
+    }
+
+    @Test
+    public void readsNothingWithoutFiles() throws IOException {
+        try (var reader = new LoserTreeSortedFileReader(new FakeLineReader())) {
+            reader.initialize(List.of(), 2);
+            assertTrue(reader.readNextSortedLine().isEmpty());
+        }
+    }
+
+    @Test
+    public void mergesManyFilesWithDuplicates() throws IOException {
+        int NO_OF_FILES = 37;
+        List<String> input = new ArrayList<>();
+
+        files.clear();
+        TestUtil.clearFileSystem();
+        for (int i = 0; i < NO_OF_FILES; i++) {
+            files.add(Path.of(String.format("file-%d.txt", i)));
+            List<String> words = TestUtil.randomWords(0, 1, 17, 40).map(w -> w.substring(0, w.indexOf('-')))
+                    .collect(Collectors.toList());
+            input.addAll(words);
+            Collections.sort(words);
+            TestUtil.createFile(files.get(i), words);
+        }
+
+        try (var reader = new LoserTreeSortedFileReader(new FakeLineReader())) {
+            reader.initialize(files, NO_OF_FILES);
+            Collections.sort(input);
+            assertEquals(input, reader.readAllSortedLines().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    @Disabled("Disabled because it takes long time to finish")
+    public void loadTestMergeManyFiles() throws IOException {
+        int NO_OF_FILES = 2000;
+        List<String> input = new ArrayList<>();
+
+        files.clear();
+        TestUtil.clearFileSystem();
+        for (int i = 0; i < NO_OF_FILES; i++) {
+            files.add(Path.of(String.format("file-%d.txt", i)));
+            List<String> words = TestUtil.randomWords(2000).collect(Collectors.toList());
+            input.addAll(words);
+            Collections.sort(words);
+            TestUtil.createFile(files.get(i), words);
+        }
+
+        try (var reader = new LoserTreeSortedFileReader(new FakeLineReader())) {
+            reader.initialize(files, NO_OF_FILES);
+            Collections.sort(input);
+            TestUtil.startMeasurement();
+            List<String> output = reader.readAllSortedLines().collect(Collectors.toList());
+            TestUtil.printMeasurement();
+            assertEquals(input, output);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * LoserTreeTest
+ */
+public class LoserTreeTest {
+
+    @Test
+    public void mergesRunsStably() {
+        int[][] runs = { { 1, 3, 3, 7 }, {}, { 0, 3, 8 }, { 3 }, { 2, 9 } };
+
+        // equal heads come out in run order
+        assertEquals(List.of("0@2", "1@0", "2@4", "3@0", "3@0", "3@2", "3@3", "7@0", "8@2", "9@4"), merge(runs));
+    }
+
+    @Test
+    public void mergesNoRunsAndEmptyRuns() {
+        assertEquals(List.of(), merge(new int[0][]));
+        assertEquals(List.of(), merge(new int[][] { {}, {}, {} }));
+        assertEquals(List.of("4@1", "5@1"), merge(new int[][] { {}, { 4, 5 } }));
+    }
+
+    @Test
+    public void countsComparisons() {
+        Metrics.global().reset();
+        merge(new int[][] { { 1, 3, 5 }, { 2, 4 } });
+
+        // one comparison to build the tree and one per head while both runs are live
+        assertEquals(4, Metrics.global().getMergeComparisons());
+    }
+
+    @Test
+    public void mergesManyRuns() {
+        int[][] runs = new int[37][];
+        List<Integer> expected = new ArrayList<>();
+        for (int r = 0; r < runs.length; r++) {
+            runs[r] = new int[r % 5];
+            for (int i = 0; i < runs[r].length; i++) {
+                runs[r][i] = (r * 7 + i * 13) % 50 + i * 50;
+                expected.add(runs[r][i]);
+            }
+        }
+        Collections.sort(expected);
+
+        List<Integer> actual = new ArrayList<>();
+        merge(runs).forEach(tagged -> actual.add(Integer.parseInt(tagged.substring(0, tagged.indexOf('@')))));
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Merges runs of ints, every value is tagged with its run.
+     */
+    private List<String> merge(int[][] runs) {
+        int[] positions = new int[runs.length];
+        var tree = new LoserTree(runs.length,
+                (a, b) -> Integer.compare(runs[a][positions[a]], runs[b][positions[b]]));
+        tree.build(run -> runs[run].length > 0);
+
+        List<String> merged = new ArrayList<>();
+        while (!tree.isEmpty()) {
+            int winner = tree.winner();
+            merged.add(runs[winner][positions[winner]] + "@" + winner);
+            positions[winner]++;
+            tree.replay(positions[winner] < runs[winner].length);
+        }
+        tree.flushComparisons();
+        return merged;
+    }
+}
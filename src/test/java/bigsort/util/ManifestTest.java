@@ -0,0 +1,108 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * ManifestTest
+ */
+public class ManifestTest {
+
+    @Test
+    public void recordsSplitsAndMerges(@TempDir Path tempDir) throws IOException {
+        Path input = tempDir.resolve("in.txt");
+        Files.write(input, List.of("b", "a", "c"));
+        Path workDir = Files.createDirectory(tempDir.resolve("work"));
+        List<InputSegment> segments = InputSegment.plan(List.of(new SourceFile(input, Files.size(input))), 4);
+
+        try (Manifest manifest = Manifest.create(workDir, "unique=true", List.of(input), segments)) {
+            manifest.segmentDone(0, List.of(run(workDir, "0.run", "a"), run(workDir, "1.run", "b")));
+            manifest.merged(0, List.of(workDir.resolve("0.run"), workDir.resolve("1.run")),
+                    run(workDir, "merge-0.run", "ab"));
+        }
+
+        try (Manifest manifest = Manifest.load(workDir)) {
+            assertEquals("unique=true", manifest.getOptions());
+            assertTrue(manifest.sameInputs(List.of(input)));
+            assertEquals(segments.size(), manifest.getSegments().size());
+            assertEquals(input.toAbsolutePath(), manifest.getSegments().get(1).getRanges().get(0).getPath());
+            assertEquals(segments.get(1).getRanges().get(0).getStart(),
+                    manifest.getSegments().get(1).getRanges().get(0).getStart());
+
+            // merged runs count as done even if they are deleted
+            Files.delete(workDir.resolve("0.run"));
+            assertTrue(manifest.isDone(0));
+            assertFalse(manifest.isDone(1));
+            assertEquals(List.of(workDir.resolve("0.run"), workDir.resolve("1.run")), manifest.getSplitRuns(0));
+            assertEquals(1, manifest.getMerges().size());
+            assertEquals(List.of("0.run", "1.run"), manifest.getMerges().get(0).getInputs());
+            assertEquals(List.of("merge-0.run"), manifest.getLiveRuns());
+        }
+    }
+
+    @Test
+    public void dropsTornRecord(@TempDir Path tempDir) throws IOException {
+        Path input = tempDir.resolve("in.txt");
+        Files.write(input, List.of("a"));
+        List<InputSegment> segments = InputSegment.plan(List.of(new SourceFile(input, Files.size(input))), 1024);
+        try (Manifest manifest = Manifest.create(tempDir, "", List.of(input), segments)) {
+        }
+
+        // a crash while the split record was appended
+        Files.write(tempDir.resolve(Manifest.FILE_NAME), "split\t0\t0.t".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        try (Manifest manifest = Manifest.load(tempDir)) {
+            assertFalse(manifest.isDone(0));
+            manifest.segmentDone(0, List.of(run(tempDir, "0.run", "a")));
+        }
+
+        try (Manifest manifest = Manifest.load(tempDir)) {
+            assertTrue(manifest.isDone(0));
+        }
+    }
+
+    @Test
+    public void verifiesRunsAndInputs(@TempDir Path tempDir) throws IOException {
+        Path input = tempDir.resolve("in.txt");
+        Files.write(input, List.of("a", "b"));
+        Path workDir = Files.createDirectory(tempDir.resolve("work"));
+        List<InputSegment> segments = InputSegment.plan(List.of(new SourceFile(input, Files.size(input))), 1024);
+
+        try (Manifest manifest = Manifest.create(workDir, "", List.of(input), segments)) {
+            manifest.segmentDone(0, List.of(run(workDir, "0.run", "a"), run(workDir, "1.run", "b")));
+
+            // a run which was cut short
+            Files.write(workDir.resolve("1.run"), new byte[0]);
+            assertFalse(manifest.isDone(0));
+
+            // a run lost after its sibling was merged
+            manifest.merged(0, List.of(workDir.resolve("0.run")), run(workDir, "merge-0.run", "a"));
+            assertThrows(IOException.class, () -> manifest.isDone(0));
+        }
+
+        try (Manifest manifest = Manifest.load(workDir)) {
+            assertTrue(manifest.sameInputs(List.of(input)));
+            assertFalse(manifest.sameInputs(List.of(input, input)));
+            Files.setLastModifiedTime(input, FileTime.fromMillis(0));
+            assertFalse(manifest.sameInputs(List.of(input)));
+        }
+        assertThrows(IOException.class, () -> Manifest.load(tempDir));
+    }
+
+    private Path run(Path dir, String name, String line) throws IOException {
+        return Files.write(dir.resolve(name), List.of(line));
+    }
+}
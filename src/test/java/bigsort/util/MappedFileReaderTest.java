@@ -0,0 +1,77 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import bigsort.TestUtil;
+import bigsort.util.api.FileReader;
+
+/**
+ * MappedFileReaderTest
+ */
+public class MappedFileReaderTest {
+
+    @Test
+    public void readsRangesInParallel(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("text.txt");
+        List<String> input = TestUtil.randomWords(100000).collect(Collectors.toList());
+        input.add("x".repeat(5000));
+        Files.write(path, input);
+
+        // small windows and ranges make lines cross windows and the file split into many ranges
+        FileReader reader = new MappedFileReader(1024, 4096);
+        try (Stream<String> stream = reader.lines(path)) {
+            List<String> output = stream.collect(Collectors.toList());
+            assertEquals(sorted(input), sorted(output));
+        }
+    }
+
+    @Test
+    public void readsLastLineAndCrlf(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("text.txt");
+        Files.write(path, "apple\r\n\r\nbanana\ncherry".getBytes(StandardCharsets.UTF_8));
+
+        FileReader reader = new MappedFileReader(4, 1);
+        try (Stream<String> stream = reader.lines(path)) {
+            assertEquals(List.of("", "apple", "banana", "cherry"), sorted(stream.collect(Collectors.toList())));
+        }
+    }
+
+    @Test
+    public void readsEmptyFile(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("text.txt");
+        Files.write(path, new byte[0]);
+
+        try (Stream<String> stream = new MappedFileReader().lines(path)) {
+            assertEquals(0, stream.count());
+        }
+    }
+
+    @Test
+    public void readsOtherCharsetsSequentially(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("text.txt");
+        Files.write(path, TestUtil.words(), StandardCharsets.UTF_16);
+
+        try (Stream<String> stream = new MappedFileReader().lines(path, StandardCharsets.UTF_16)) {
+            assertEquals(TestUtil.words(), stream.collect(Collectors.toList()));
+        }
+    }
+
+    private static List<String> sorted(List<String> lines) {
+        List<String> copy = new ArrayList<>(lines);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,145 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * MetricsTest
+ */
+public class MetricsTest {
+
+    @Test
+    public void countsAndResets() {
+        var metrics = new Metrics();
+        metrics.lineRead();
+        metrics.lineRead();
+        metrics.read(1, 10);
+        metrics.runWritten(100);
+        metrics.runWritten(40);
+        metrics.mergedRunWritten(140);
+        metrics.sorted(3_000_000);
+        metrics.sorted(5_000_000);
+        metrics.compared(7);
+        metrics.outputWritten(140);
+        metrics.readWaited(2_000_000);
+        metrics.writeWaited(4_000_000);
+        metrics.phaseStarted("split");
+        assertEquals("split", metrics.getPhase());
+        metrics.phaseFinished("split", 12);
+        metrics.phaseStarted("merge");
+        metrics.phaseFinished("merge", 5);
+
+        assertEquals(3, metrics.getLinesRead());
+        assertEquals(10, metrics.getBytesRead());
+        assertEquals(2, metrics.getRunsWritten());
+        assertEquals(140, metrics.getRunBytesWritten());
+        assertEquals(40, metrics.getMinRunBytes());
+        assertEquals(100, metrics.getMaxRunBytes());
+        assertEquals(1, metrics.getMergedRunsWritten());
+        assertEquals(140, metrics.getMergedRunBytesWritten());
+        assertEquals(2, metrics.getRunsSorted());
+        assertEquals(8, metrics.getSortMillis());
+        assertEquals(5, metrics.getMaxSortMillis());
+        assertEquals(7, metrics.getMergeComparisons());
+        assertEquals(140, metrics.getOutputBytes());
+        assertEquals(2, metrics.getReadWaitMillis());
+        assertEquals(4, metrics.getWriteWaitMillis());
+        assertEquals("", metrics.getPhase());
+        assertEquals(List.of("split", "merge"), List.copyOf(metrics.getPhaseMillis().keySet()));
+        assertEquals(12, metrics.getPhaseMillis().get("split"));
+        assertTrue(metrics.getPeakHeapBytes() > 0);
+
+        metrics.reset();
+        assertEquals(0, metrics.getLinesRead());
+        assertEquals(0, metrics.getRunsWritten());
+        assertEquals(0, metrics.getMinRunBytes());
+        assertEquals(0, metrics.getMaxRunBytes());
+        assertEquals(0, metrics.getSortMillis());
+        assertEquals(0, metrics.getMergeComparisons());
+        assertEquals(Map.of(), metrics.getPhaseMillis());
+    }
+
+    @Test
+    public void exposesGlobalMetricsOverJmx() throws JMException {
+        Metrics.register();
+        Metrics.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+
+        Metrics.global().reset();
+        Metrics.global().read(3, 30);
+        assertEquals(3L, server.getAttribute(name, "LinesRead"));
+        assertEquals(30L, server.getAttribute(name, "BytesRead"));
+        assertEquals("", server.getAttribute(name, "Phase"));
+
+        server.invoke(name, "reset", new Object[0], new String[0]);
+        assertEquals(0L, server.getAttribute(name, "LinesRead"));
+    }
+
+    @Test
+    public void countsEncodedBytesRead(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("in.txt");
+        byte[] bytes = "\u00e9t\u00e9\r\nhiver\r\n\u65e5".getBytes(StandardCharsets.UTF_8);
+        Files.write(file, bytes);
+
+        for (var reader : List.of(new FastFileReader(), new MappedFileReader())) {
+            Metrics.global().reset();
+            try (var lines = reader.lines(file, StandardCharsets.UTF_8)) {
+                assertEquals(List.of("\u00e9t\u00e9", "hiver", "\u65e5"), lines.collect(Collectors.toList()));
+            }
+            assertEquals(bytes.length, Metrics.global().getBytesRead());
+        }
+    }
+
+    @Test
+    public void tracksPeakHeapBeforeGc() throws InterruptedException {
+        var metrics = new Metrics();
+        int size = 64 * 1024 * 1024;
+        byte[] garbage = new byte[size];
+        garbage[size - 1] = 1;
+        garbage = null;
+        System.gc();
+
+        // GC notifications are delivered by another thread
+        long deadline = System.currentTimeMillis() + 5000;
+        while (metrics.getPeakHeapBytes() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(metrics.getPeakHeapBytes() >= size);
+        assertTrue(metrics.getPeakHeapBytes() <= Runtime.getRuntime().maxMemory());
+    }
+
+    @Test
+    public void countsMergeComparisons(@TempDir Path tempDir) throws IOException {
+        var writer = new FastFileWriter();
+        List<Path> files = List.of(
+                writer.write(tempDir.resolve("0.txt"), new String[] { "a", "c", "e" }, StandardOpenOption.CREATE),
+                writer.write(tempDir.resolve("1.txt"), new String[] { "b", "d" }, StandardOpenOption.CREATE));
+
+        Metrics.global().reset();
+        try (var reader = new LoserTreeSortedFileReader(new FastLineReader())) {
+            reader.initialize(files, 2);
+            assertEquals(5, reader.readAllSortedLines().count());
+        }
+
+        // one comparison to build the tree and one per line while both runs are live
+        assertEquals(4, Metrics.global().getMergeComparisons());
+    }
+}
@@ -0,0 +1,79 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import bigsort.TestUtil;
+import bigsort.util.api.Sorter;
+
+/**
+ * MultikeyQuickSorterTest
+ */
+public class MultikeyQuickSorterTest {
+    private static final String[] PREFIXES = { "https://example.com/api/v1/users/", "https://example.com/api/v1/",
+            "https://example.com/static/img/", "2020-01-01T00:00:00 INFO bigsort.Merger " };
+
+    @Test
+    public void sortsRandomWords() {
+        String[] data = TestUtil.randomWords(5000).toArray(String[]::new);
+        assertSorted(data, 0, data.length);
+    }
+
+    @Test
+    public void sortsLinesWithSharedPrefixes() {
+        String[] data = prefixedLines(5000, new Random(7));
+        assertSorted(data, 0, data.length);
+    }
+
+    @Test
+    public void sortsEdgeCases() {
+        String[] data = { "b", "", "ab", "a", "", "abc", "a", "\uffff", "\u00e9", "\ud83d\ude00", "ab", "b\u0000",
+                "b", "", "aaaaaaaaaaaaaaaaaaaa", "aaaaaaaaaaaaaaaaaaa", "aaaaaaaaaaaaaaaaaaaaa", "z" };
+        assertSorted(data, 0, data.length);
+        assertSorted(data, 3, 12);
+    }
+
+    @Test
+    @Disabled("Disabled because it takes long time to finish")
+    public void comparesWithFastSorter() {
+        final int NO_OF_LINES = 2_000_000;
+        Random random = new Random(42);
+        String[] randomLines = TestUtil.randomWords(NO_OF_LINES).toArray(String[]::new);
+        String[] prefixedLines = prefixedLines(NO_OF_LINES, random);
+
+        for (int i = 0; i < 3; i++) {
+            measure("random, FastSorter", new FastSorter(), randomLines);
+            measure("random, MultikeyQuickSorter", new MultikeyQuickSorter(), randomLines);
+            measure("prefixes, FastSorter", new FastSorter(), prefixedLines);
+            measure("prefixes, MultikeyQuickSorter", new MultikeyQuickSorter(), prefixedLines);
+        }
+    }
+
+    private static void measure(String name, Sorter sorter, String[] input) {
+        String[] data = Arrays.copyOf(input, input.length);
+        System.out.println(name);
+        TestUtil.startMeasurement();
+        sorter.sort(data);
+        TestUtil.printMeasurement();
+    }
+
+    private static String[] prefixedLines(int count, Random random) {
+        Supplier<String> line = () -> PREFIXES[random.nextInt(PREFIXES.length)] + random.nextInt(count / 4)
+                + (random.nextBoolean() ? "/details" : "");
+        return Stream.generate(line).limit(count).toArray(String[]::new);
+    }
+
+    private static void assertSorted(String[] data, int from, int to) {
+        String[] expected = Arrays.copyOf(data, data.length);
+        Arrays.sort(expected, from, to);
+        new MultikeyQuickSorter().sort(data, from, to);
+        assertArrayEquals(expected, data);
+    }
+}
@@ -0,0 +1,83 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import bigsort.TestUtil;
+
+/**
+ * PartitionedRunMergerTest
+ */
+public class PartitionedRunMergerTest {
+    private static final byte[] SEPARATOR = "\n".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void mergesRunsInPartitions(@TempDir Path tempDir) throws IOException {
+        List<String> input = new ArrayList<>();
+        List<Path> runs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            // long lines make several index entries per run
+            List<String> lines = TestUtil.randomWords(20000, 30000, 25000).map(word -> word + "x".repeat(100))
+                    .sorted().collect(Collectors.toList());
+            lines.add(0, "");
+            lines.add("\u00e9clair \ud83d\ude00");
+            input.addAll(lines);
+            runs.add(new RunFileWriter().write(tempDir.resolve(i + ".run"), lines, StandardOpenOption.CREATE));
+        }
+        Collections.sort(input);
+
+        for (int partitions : new int[] { 1, 2, 7, 64 }) {
+            Path out = tempDir.resolve(String.format("out-%d.txt", partitions));
+            int used = new PartitionedRunMerger().merge(runs, out, partitions, 1024 * 1024, 1024 * 1024,
+                    SEPARATOR);
+            assertTrue(used <= partitions);
+            if (partitions > 1) {
+                assertTrue(used > 1);
+            }
+            assertEquals(input, Files.readAllLines(out));
+            assertTrue(Files.notExists(tempDir.resolve(out.getFileName() + ".part")));
+        }
+    }
+
+    @Test
+    public void mergesRunsSortedByKey(@TempDir Path tempDir) throws IOException {
+        KeySpec keySpec = KeySpec.parse("2nr", ',');
+        List<String> input = new ArrayList<>();
+        List<Path> runs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int run = i;
+            List<String> lines = TestUtil.randomWords(30000).map(word -> word + "," + (word.length() * 7 + run) % 100)
+                    .map(keySpec::key).sorted(keySpec).map(KeySpec.Key::line).collect(Collectors.toList());
+            input.addAll(lines);
+            runs.add(new RunFileWriter().write(tempDir.resolve(i + ".run"), lines, StandardOpenOption.CREATE));
+        }
+        input = input.stream().map(keySpec::key).sorted(keySpec).map(KeySpec.Key::line)
+                .collect(Collectors.toList());
+
+        Path out = tempDir.resolve("out.txt");
+        new PartitionedRunMerger(keySpec).merge(runs, out, 4, 1024 * 1024, 1024 * 1024, SEPARATOR);
+        assertEquals(input, Files.readAllLines(out));
+    }
+
+    @Test
+    public void mergesEmptyRuns(@TempDir Path tempDir) throws IOException {
+        Path empty = new RunFileWriter().write(tempDir.resolve("0.run"), List.of(), StandardOpenOption.CREATE);
+        Path single = new RunFileWriter().write(tempDir.resolve("1.run"), List.of("a"), StandardOpenOption.CREATE);
+        Path out = tempDir.resolve("out.txt");
+        new PartitionedRunMerger().merge(List.of(empty, single), out, 4, 1024 * 1024, 1024 * 1024, SEPARATOR);
+        assertEquals(List.of("a"), Files.readAllLines(out));
+    }
+}
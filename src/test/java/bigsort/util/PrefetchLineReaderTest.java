@@ -0,0 +1,99 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import bigsort.TestUtil;
+import bigsort.util.api.LineReader;
+
+/**
+ * PrefetchLineReaderTest
+ */
+public class PrefetchLineReaderTest {
+
+    @Test
+    public void readsAllLinesInOrder(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("run.txt");
+        List<String> input = TestUtil.randomWords(50000).collect(Collectors.toList());
+        new RunFileWriter().write(path, input, StandardOpenOption.CREATE);
+
+        // small buffer makes many prefetched blocks
+        LineReader prefetch = new PrefetchLineReader(new RunFileReader(), 2);
+        try (LineReader reader = prefetch.create(path, 30000)) {
+            assertEquals(Optional.of(input.get(0)), reader.line());
+            assertEquals(Optional.of(input.get(0)), reader.line());
+
+            List<String> output = new ArrayList<>();
+            output.add(reader.line().get());
+            String line;
+            while ((line = reader.nextLine()) != null) {
+                output.add(line);
+            }
+            assertEquals(input, output);
+            assertNull(reader.nextLine());
+            assertEquals(Optional.empty(), reader.line());
+        } finally {
+            prefetch.close();
+        }
+    }
+
+    @Test
+    public void readsManyFilesWithFewThreads(@TempDir Path tempDir) throws IOException {
+        List<LineReader> readers = new ArrayList<>();
+        List<List<String>> inputs = new ArrayList<>();
+        LineReader prefetch = new PrefetchLineReader(new FastLineReader(), 1);
+        try {
+            for (int i = 0; i < 8; i++) {
+                Path path = tempDir.resolve(i + ".txt");
+                List<String> input = TestUtil.randomWords(3000, 5000).collect(Collectors.toList());
+                new FastFileWriter().write(path, input, StandardOpenOption.CREATE);
+                inputs.add(input);
+                readers.add(prefetch.create(path, 24000));
+            }
+
+            // interleaved reads like a merge does
+            List<List<String>> outputs = new ArrayList<>();
+            readers.forEach(reader -> outputs.add(new ArrayList<>()));
+            boolean live = true;
+            while (live) {
+                live = false;
+                for (int i = 0; i < readers.size(); i++) {
+                    String line = readers.get(i).nextLine();
+                    if (line != null) {
+                        outputs.get(i).add(line);
+                        live = true;
+                    }
+                }
+            }
+            assertEquals(inputs, outputs);
+        } finally {
+            readers.forEach(LineReader::close);
+            prefetch.close();
+        }
+    }
+
+    @Test
+    public void rethrowsReadFailure(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("run.txt");
+        new FastFileWriter().write(path, List.of("not", "a", "run"), StandardOpenOption.CREATE);
+
+        LineReader prefetch = new PrefetchLineReader(new RunFileReader(), 1);
+        try {
+            assertThrows(IOException.class, () -> prefetch.create(path, 30000).nextLine());
+        } finally {
+            prefetch.close();
+        }
+    }
+}
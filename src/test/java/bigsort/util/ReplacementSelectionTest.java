@@ -0,0 +1,80 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import bigsort.TestUtil;
+
+/**
+ * ReplacementSelectionTest
+ */
+public class ReplacementSelectionTest {
+
+    @Test
+    public void makesRunsTwiceAsLargeAsMemory() {
+        int NO_OF_LINES = 20000;
+        int HEAP_LINES = 500;
+        List<String> input = TestUtil.randomWords(NO_OF_LINES).collect(Collectors.toList());
+        List<List<String>> runs = new ArrayList<>();
+
+        // every line weights 1 byte, so heap keeps 500 lines
+        var selection = new ReplacementSelection(Integer.MAX_VALUE, HEAP_LINES, line -> 1);
+        selection.process(input.stream(), (lines, runId) -> {
+            assertEquals(runs.size(), runId);
+            List<String> run = new ArrayList<>();
+            lines.forEach(run::add);
+            runs.add(run);
+        });
+
+        List<String> output = new ArrayList<>();
+        for (List<String> run : runs) {
+            List<String> sorted = new ArrayList<>(run);
+            Collections.sort(sorted);
+            assertEquals(sorted, run);
+            output.addAll(run);
+        }
+
+        // average run length is about 2 * HEAP_LINES on random input
+        assertTrue(runs.size() < NO_OF_LINES / HEAP_LINES * 3 / 4);
+        Collections.sort(input);
+        Collections.sort(output);
+        assertEquals(input, output);
+    }
+
+    @Test
+    public void makesSingleRunOfSortedInput() {
+        List<String> input = IntStream.range(0, 10000).mapToObj(i -> String.format("%05d", i))
+                .collect(Collectors.toList());
+        List<Integer> runs = new ArrayList<>();
+
+        var selection = new ReplacementSelection(100, Long.MAX_VALUE, String::length);
+        selection.process(input.stream(), (lines, runId) -> {
+            List<String> run = new ArrayList<>();
+            lines.forEach(run::add);
+            assertEquals(input, run);
+            runs.add(runId);
+        });
+
+        assertEquals(List.of(0), runs);
+    }
+
+    @Test
+    public void skipsUnreadLinesOfRun() {
+        List<String> input = TestUtil.randomWords(1000).collect(Collectors.toList());
+        List<Integer> runs = new ArrayList<>();
+
+        var selection = new ReplacementSelection(50, Long.MAX_VALUE, String::length);
+        selection.process(input.stream(), (lines, runId) -> runs.add(runId));
+
+        assertTrue(runs.size() > 1);
+        assertEquals(IntStream.range(0, runs.size()).boxed().collect(Collectors.toList()), runs);
+    }
+}
@@ -0,0 +1,100 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import bigsort.TestUtil;
+import bigsort.util.api.LineReader;
+
+/**
+ * RunFileReaderTest
+ */
+public class RunFileReaderTest {
+
+    @Test
+    public void readsWrittenLines(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("run.txt");
+        List<String> input = TestUtil.randomWords(50000).collect(Collectors.toList());
+        input.add("\u00e9clair \ud83d\ude00");
+        input.add("");
+        new RunFileWriter().write(path, input, StandardOpenOption.CREATE);
+
+        // small buffer makes many block reads
+        try (LineReader reader = new RunFileReader().create(path, 1000)) {
+            assertEquals(Optional.of(input.get(0)), reader.line());
+            assertEquals(Optional.of(input.get(0)), reader.line());
+
+            List<String> output = new ArrayList<>();
+            output.add(reader.line().get());
+            String line;
+            while ((line = reader.nextLine()) != null) {
+                output.add(line);
+            }
+            assertEquals(input, output);
+            assertEquals(Optional.empty(), reader.line());
+        }
+    }
+
+    @Test
+    public void readsRecordsLongerThanBuffer(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("run.txt");
+        List<String> input = List.of("a", "b".repeat(100000), "c", "d".repeat(3 * RunFileWriter.BLOCK_SIZE), "e");
+        new RunFileWriter().write(path, input, StandardOpenOption.CREATE);
+
+        try (RunFileReader reader = new RunFileReader(path, 100)) {
+            assertEquals(5, reader.footer().getRecords());
+            for (String line : input) {
+                assertEquals(line, reader.nextLine());
+            }
+            assertNull(reader.nextLine());
+        }
+    }
+
+    @Test
+    public void readsRangeFromIndex(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("run.txt");
+        List<String> input = TestUtil.randomWords(100000).map(word -> word + "-".repeat(30)).sorted()
+                .collect(Collectors.toList());
+        new RunFileWriter().write(path, input, StandardOpenOption.CREATE);
+
+        RunFooter footer = RunFileReader.footer(path);
+        assertTrue(footer.getIndex().size() > 2);
+        RunFooter.IndexEntry first = footer.getIndex().get(1);
+        RunFooter.IndexEntry second = footer.getIndex().get(2);
+        assertEquals(input.get((int) first.getRecord()), first.getLine());
+
+        // reads records between two index entries only
+        try (RunFileReader reader = new RunFileReader(path, 1000, first.getOffset(), second.getOffset())) {
+            long textBytes = first.getTextBytes();
+            for (long i = first.getRecord(); i < second.getRecord(); i++) {
+                assertEquals(input.get((int) i), reader.nextLine());
+                textBytes += reader.recordLength();
+            }
+            assertNull(reader.nextLine());
+            assertEquals(second.getOffset(), reader.position());
+            assertEquals(second.getTextBytes(), textBytes);
+        }
+    }
+
+    @Test
+    public void readsEmptyRun(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("run.txt");
+        new RunFileWriter().write(path, List.of(), StandardOpenOption.CREATE);
+
+        try (RunFileReader reader = new RunFileReader(path)) {
+            assertEquals(Optional.empty(), reader.line());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * RunFileWriterTest
+ */
+public class RunFileWriterTest {
+
+    @Test
+    public void writesFooter(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("run.txt");
+        List<String> lines = List.of("", "apple", "mango", "zebra", "\u00e9clair");
+        new RunFileWriter().write(path, lines, StandardOpenOption.CREATE);
+
+        RunFooter footer = RunFileReader.footer(path);
+        int bytes = lines.stream().mapToInt(line -> 1 + line.getBytes(StandardCharsets.UTF_8).length).sum();
+        assertEquals(5, footer.getRecords());
+        assertEquals(bytes, footer.getBytes());
+        assertEquals("", footer.getMin());
+        assertEquals("\u00e9clair", footer.getMax());
+    }
+
+    @Test
+    public void writesKeyBoundsOfRun(@TempDir Path tempDir) throws IOException {
+        // run sorted by the second field in reverse order
+        Path path = tempDir.resolve("run.txt");
+        new RunFileWriter().write(path, List.of("a,9", "c,5", "b,1"), StandardOpenOption.CREATE);
+
+        RunFooter footer = RunFileReader.footer(path);
+        assertEquals("a,9", footer.getMin());
+        assertEquals("b,1", footer.getMax());
+    }
+
+    @Test
+    public void writesEmptyRun(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("run.txt");
+        new RunFileWriter().write(path, new String[0], StandardOpenOption.CREATE);
+
+        RunFooter footer = RunFileReader.footer(path);
+        assertEquals(0, footer.getRecords());
+        assertEquals(0, footer.getBytes());
+        assertNull(footer.getMin());
+        assertNull(footer.getMax());
+    }
+
+    @Test
+    public void overwritesButNeverAppends(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("run.txt");
+        RunFileWriter writer = new RunFileWriter();
+        writer.write(path, List.of("a", "b", "c"), StandardOpenOption.CREATE);
+        writer.write(path, List.of("d"), StandardOpenOption.CREATE);
+
+        assertEquals(1, RunFileReader.footer(path).getRecords());
+        assertThrows(IllegalArgumentException.class,
+                () -> writer.write(path, List.of("e"), StandardOpenOption.APPEND));
+    }
+
+    @Test
+    public void rejectsTextFile(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("text.txt");
+        Files.write(path, List.of("apple", "banana"));
+
+        assertThrows(IOException.class, () -> RunFileReader.footer(path));
+    }
+}
@@ -0,0 +1,73 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import bigsort.TestUtil;
+
+/**
+ * SplitPipelineTest
+ */
+public class SplitPipelineTest {
+
+    @Test
+    public void sortsAndWritesEveryChunk() {
+        int MAX_LINES = 97;
+        List<String> input = TestUtil.randomWords(5000).collect(Collectors.toList());
+        Map<Integer, List<String>> chunks = new ConcurrentHashMap<>();
+
+        FastSorter sorter = new FastSorter();
+        SplitPipeline pipeline = new SplitPipeline(3, MAX_LINES, Long.MAX_VALUE, String::length,
+                chunk -> sorter.sort(chunk.lines(), 0, chunk.size()),
+                chunk -> chunks.put(chunk.id(), new ArrayList<>(chunk.asList())));
+        pipeline.process(input.parallelStream());
+
+        List<String> output = new ArrayList<>();
+        for (List<String> lines : chunks.values()) {
+            assertTrue(lines.size() <= MAX_LINES);
+            List<String> sorted = new ArrayList<>(lines);
+            Collections.sort(sorted);
+            assertEquals(sorted, lines);
+            output.addAll(lines);
+        }
+
+        Collections.sort(input);
+        Collections.sort(output);
+        assertEquals(input, output);
+    }
+
+    @Test
+    public void cutsChunksByMemory() {
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+
+        // 4 chunks share 400 bytes and every line weights 10 bytes
+        SplitPipeline pipeline = new SplitPipeline(2, 1000, 400, line -> 10, chunk -> {
+        }, chunk -> sizes.add(chunk.size()));
+        pipeline.process(Stream.iterate(0, i -> i + 1).map(i -> Integer.toString(i)).limit(95));
+
+        Collections.sort(sizes);
+        assertEquals(List.of(5, 10, 10, 10, 10, 10, 10, 10, 10, 10), sizes);
+    }
+
+    @Test
+    public void rethrowsStageFailure() {
+        SplitPipeline pipeline = new SplitPipeline(2, 10, Long.MAX_VALUE, String::length, chunk -> {
+        }, chunk -> {
+            throw new IllegalStateException("disk is full");
+        });
+
+        var e = assertThrows(IllegalStateException.class, () -> pipeline.process(TestUtil.randomWords(1000)));
+        assertEquals("disk is full", e.getMessage());
+    }
+}
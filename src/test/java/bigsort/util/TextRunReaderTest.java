@@ -0,0 +1,94 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import bigsort.TestUtil;
+import bigsort.util.api.LineReader;
+
+/**
+ * TextRunReaderTest
+ */
+public class TextRunReaderTest {
+
+    @Test
+    public void mergesTextRunWithRuns(@TempDir Path tempDir) throws IOException {
+        List<String> input = new ArrayList<>();
+        List<Path> runs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            List<String> lines = TestUtil.randomWords(3000).sorted().collect(Collectors.toList());
+            input.addAll(lines);
+            runs.add(new RunFileWriter().write(tempDir.resolve(i + ".run"), lines, StandardOpenOption.CREATE));
+        }
+        List<String> text = TestUtil.randomWords(5000).sorted().collect(Collectors.toList());
+        input.addAll(text);
+        Path textRun = Files.write(tempDir.resolve("out.txt"), text);
+        runs.add(textRun);
+        Collections.sort(input);
+
+        var reader = new TextRunReader(new RunFileReader(), new FastLineReader(), List.of(textRun));
+        var sortedReader = new LoserTreeSortedFileReader(reader);
+        sortedReader.initialize(runs, 100, 64 * 1024);
+        List<String> output = sortedReader.readAllSortedLines().collect(Collectors.toList());
+        sortedReader.close();
+        assertEquals(input, output);
+    }
+
+    @Test
+    public void failsOnUnsortedText(@TempDir Path tempDir) throws IOException {
+        Path textRun = Files.write(tempDir.resolve("out.txt"), List.of("a", "c", "b"));
+        var prototype = new TextRunReader(new RunFileReader(), new FastLineReader(), List.of(textRun));
+        try (LineReader reader = prototype.create(textRun, 8192)) {
+            assertEquals("a", reader.line().get());
+            assertEquals("c", reader.nextLine());
+            IOException e = assertThrows(IOException.class, reader::nextLine);
+            assertTrue(e.getMessage().contains("not sorted"));
+        }
+    }
+
+    @Test
+    public void checksOrderOfKeys(@TempDir Path tempDir) throws IOException {
+        KeySpec keySpec = KeySpec.parse("2nr", ',');
+        Path textRun = Files.write(tempDir.resolve("out.txt"), List.of("b,10", "a,2", "c,2", "a,3"));
+        var prototype = new TextRunReader(new RunFileReader(), new FastLineReader(), List.of(textRun), keySpec);
+        try (LineReader reader = prototype.create(textRun)) {
+            assertEquals("b,10", reader.nextLine());
+            assertEquals("a,2", reader.nextLine());
+            assertEquals("c,2", reader.nextLine());
+            assertThrows(IOException.class, reader::nextLine);
+        }
+    }
+
+    @Test
+    public void keepsKeysParsedByTheCheck(@TempDir Path tempDir) throws IOException {
+        KeySpec keySpec = KeySpec.parse("2nr", ',');
+        Path textRun = Files.write(tempDir.resolve("out.txt"), List.of("b,10", "a,2"));
+        var prototype = new TextRunReader(new RunFileReader(), new FastLineReader(), List.of(textRun), keySpec);
+        try (var reader = (TextRunReader) prototype.create(textRun)) {
+            String line = reader.nextLine();
+            KeySpec.Key key = reader.key(keySpec, line);
+            assertSame(key, reader.key(keySpec, line));
+            assertEquals(line, key.line());
+
+            // another order or another line is parsed
+            assertNotSame(key, reader.key(KeySpec.parse("2nr", ','), line));
+            assertNotSame(key, reader.key(keySpec, new String(line)));
+            assertEquals("a,2", reader.nextLine());
+        }
+    }
+}
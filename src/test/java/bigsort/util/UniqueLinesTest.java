@@ -0,0 +1,40 @@
+package bigsort.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * UniqueLinesTest
+ */
+public class UniqueLinesTest {
+
+    @Test
+    public void compactsSortedLines() {
+        String[] lines = { "", "", "a", "a", "a", "b", "c", "c", "x" };
+        int size = UniqueLines.compact(lines, 8);
+        assertEquals(4, size);
+        assertArrayEquals(new String[] { "", "a", "b", "c", null, null, null, null, "x" }, lines);
+        assertEquals(0, UniqueLines.compact(new String[0], 0));
+    }
+
+    @Test
+    public void filtersSortedStream() {
+        List<String> lines = UniqueLines.filter(Stream.of("a", "a", "b", "b", "b", "c", "d", "d"))
+                .collect(Collectors.toList());
+        assertEquals(List.of("a", "b", "c", "d"), lines);
+    }
+
+    @Test
+    public void filtersSortedIterator() {
+        List<String> lines = new ArrayList<>();
+        UniqueLines.filter(List.of("", "", "a", "b", "b").iterator()).forEachRemaining(lines::add);
+        assertEquals(List.of("", "a", "b"), lines);
+    }
+}